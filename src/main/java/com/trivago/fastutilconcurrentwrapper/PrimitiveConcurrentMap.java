@@ -1,12 +1,37 @@
 package com.trivago.fastutilconcurrentwrapper;
 
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketTable;
+import com.trivago.fastutilconcurrentwrapper.support.LockMetrics;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
 import com.trivago.fastutilconcurrentwrapper.util.CFUtil;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableStampedLock;
+import com.trivago.fastutilconcurrentwrapper.util.ReaderBiasedReadWriteLock;
+import com.trivago.fastutilconcurrentwrapper.util.SpinLockWord;
+import com.trivago.fastutilconcurrentwrapper.util.SpinReadWriteLocks;
 import it.unimi.dsi.fastutil.Function;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import jakarta.validation.constraints.Positive;
+import org.jspecify.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import javax.management.ObjectName;
 
 /**
  @see it.unimi.dsi.fastutil.Function
@@ -14,74 +39,1147 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  @see org.jctools.maps.NonBlockingHashMapLong
  */
 public abstract class PrimitiveConcurrentMap<K,V> implements PrimitiveKeyMap {
-    private final CloseableReadWriteLock.Padded[] locks;
+    /** 16 ints = 64 bytes, same size as cache line: a bucket's size doesn't share a line with its neighbours */
+    private static final int SIZE_STRIDE = 16;
+    /** Current buckets and their locks: replaced by {@link #restripe} */
+    private volatile Layout layout;
+    private final PrimitiveMapBuilder.MapMode mapMode;
+    /** Shared: operations over many buckets (batches, iteration, size). Exclusive: {@link #restripe} */
+    private final CloseableReadWriteLock layoutLock = new CloseableReadWriteLock();
 
-    @SuppressWarnings({"resource", "ConstantValue"})
-		protected PrimitiveConcurrentMap (@Positive int numBuckets) {
+    protected PrimitiveConcurrentMap (@Positive int numBuckets) {
+        this(numBuckets, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }//new
+
+    protected PrimitiveConcurrentMap (@Positive int numBuckets, PrimitiveMapBuilder.MapMode mapMode) {
+        this(mapMode, null, numBuckets);
+    }//new
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} with the lock words in the subclass's buckets: the layout indexes
+     {@code buckets} itself ⇒ a bucket's lock and its data are one object. {@link #spinBuckets} supplies the buckets of a {@link #restripe}.
+     */
+    protected PrimitiveConcurrentMap (SpinLockWord[] buckets) {
+        this(PrimitiveMapBuilder.MapMode.COMPACT_SPIN, buckets, buckets.length);
+    }//new
+
+    private PrimitiveConcurrentMap (PrimitiveMapBuilder.MapMode mapMode, SpinLockWord @Nullable [] spinBuckets, int numBuckets) {
+        this.mapMode = mapMode;
+        this.layout = new Layout(checkNumBuckets(numBuckets), mapMode, null, this, spinBuckets);
+    }//new
+
+    private static int checkNumBuckets (int numBuckets) {
         if (numBuckets < 1 || numBuckets > 100_000_000)
             throw new IllegalArgumentException("numBuckets must be between 1 and 100_000_000, but: "+ numBuckets);
-        this.locks = new CloseableReadWriteLock.Padded[numBuckets];
-        for (int i = 0; i < numBuckets; i++)
-            locks[i] = new CloseableReadWriteLock.Padded();
-    }//new
+        return numBuckets;
+    }
+
+    /** Bucket locks of one bucket count: immutable, except {@link #retired} */
+    private static final class Layout {
+        final int numBuckets;
+        final CloseableReadWriteLock.Padded @Nullable [] locks;
+        /** {@link PrimitiveMapBuilder.MapMode#OPTIMISTIC} only */
+        final CloseableStampedLock.Padded @Nullable [] stampedLocks;
+        /** {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} only, unless the buckets hold the lock words */
+        final @Nullable SpinReadWriteLocks spinLocks;
+        /** {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} buckets that hold their own lock words: the subclass's bucket array itself */
+        final SpinLockWord @Nullable [] spinBuckets;
+        final boolean busyWaiting;
+        final boolean adaptive;
+        final BucketLock[] readers;
+        final BucketLock[] writers;
+        /** Opt-in: {@link #enableLockMetrics()} */
+        final @Nullable LockMetrics metrics;
+        /** Entry count per bucket, {@link #SIZE_STRIDE} apart: published by the write lock holder on unlock */
+        final AtomicIntegerArray sizes;
+        /** {@link #bucketSize}, {@link #mapAt} and {@link #syncCopy} of the buckets */
+        final PrimitiveConcurrentMap<?,?> map;
+        /** COPY_ON_WRITE and LEFT_RIGHT only: the bucket maps lock-free readers see, published on write unlock */
+        final @Nullable AtomicReferenceArray<Object> published;
+        /** {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} only */
+        final @Nullable LeftRight leftRight;
+        /** Set under all bucket write locks by {@link #restripe}: the keys have moved to a new layout ⇒ lock again */
+        volatile boolean retired;
+
+        /** @param spinBuckets {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} buckets with their own lock words, null: a {@link SpinReadWriteLocks} */
+        Layout (int numBuckets, PrimitiveMapBuilder.MapMode mapMode, @Nullable LockMetrics metrics, PrimitiveConcurrentMap<?,?> map,
+                SpinLockWord @Nullable [] spinBuckets) {
+            this(numBuckets, mapMode == PrimitiveMapBuilder.MapMode.BUSY_WAITING, mapMode == PrimitiveMapBuilder.MapMode.ADAPTIVE,
+                mapMode != PrimitiveMapBuilder.MapMode.OPTIMISTIC && mapMode != PrimitiveMapBuilder.MapMode.LOCK_FREE
+                    && mapMode != PrimitiveMapBuilder.MapMode.COMPACT_SPIN ? newLocks(numBuckets, CloseableReadWriteLock.Padded[]::new,
+                    mapMode == PrimitiveMapBuilder.MapMode.READER_BIASED ? ReaderBiasedReadWriteLock::new : CloseableReadWriteLock.Padded::new) : null,
+                mapMode == PrimitiveMapBuilder.MapMode.OPTIMISTIC ? newLocks(numBuckets, CloseableStampedLock.Padded[]::new, CloseableStampedLock.Padded::new) : null,
+                mapMode == PrimitiveMapBuilder.MapMode.COMPACT_SPIN && spinBuckets == null ? new SpinReadWriteLocks(numBuckets) : null, spinBuckets,
+                metrics, new AtomicIntegerArray(numBuckets * SIZE_STRIDE), map,
+                mapMode == PrimitiveMapBuilder.MapMode.COPY_ON_WRITE ? new AtomicReferenceArray<>(numBuckets) : null,
+                mapMode == PrimitiveMapBuilder.MapMode.LEFT_RIGHT ? new LeftRight(numBuckets) : null);
+        }//new
+
+        /** Same locks, sizes and published buckets, other metrics */
+        Layout (Layout same, @Nullable LockMetrics metrics) {
+            this(same.numBuckets, same.busyWaiting, same.adaptive, same.locks, same.stampedLocks, same.spinLocks, same.spinBuckets, metrics, same.sizes, same.map,
+                same.published, same.leftRight);
+        }//new
+
+        @SuppressWarnings("resource")
+        private Layout (int numBuckets, boolean busyWaiting, boolean adaptive, CloseableReadWriteLock.Padded @Nullable [] locks,
+                CloseableStampedLock.Padded @Nullable [] stampedLocks, @Nullable SpinReadWriteLocks spinLocks, SpinLockWord @Nullable [] spinBuckets,
+                @Nullable LockMetrics metrics,
+                AtomicIntegerArray sizes, PrimitiveConcurrentMap<?,?> map, @Nullable AtomicReferenceArray<Object> published, @Nullable LeftRight leftRight) {
+            this.numBuckets = numBuckets;
+            this.busyWaiting = busyWaiting;
+            this.adaptive = adaptive;
+            this.locks = locks;
+            this.stampedLocks = stampedLocks;
+            this.spinLocks = spinLocks;
+            this.spinBuckets = spinBuckets;
+            this.metrics = metrics;
+            this.sizes = sizes;
+            this.map = map;
+            this.published = leftRight != null ? leftRight.published : published;
+            this.leftRight = leftRight;
+            this.readers = new BucketLock[numBuckets];
+            this.writers = new BucketLock[numBuckets];
+            for (int i = 0; i < numBuckets; i++){
+                int bucket = i;
+                if (stampedLocks != null){
+                    var lock = stampedLocks[i];
+                    readers[i] = new BucketLock(this, i, lock);
+                    writers[i] = new BucketLock(this, i, metrics == null ? ()->{
+                        publishSize(bucket);
+                        lock.tryUnlockWrite();
+                    } : ()->{
+                        publishSize(bucket);
+                        metrics.holdEnd(bucket);
+                        lock.tryUnlockWrite();
+                    });
+                } else if (spinBuckets != null){
+                    var lock = spinBuckets[i];
+                    readers[i] = new BucketLock(this, i, lock::unlockRead);
+                    writers[i] = new BucketLock(this, i, metrics == null ? ()->{
+                        publishSize(bucket);
+                        lock.unlockWrite();
+                    } : ()->{
+                        publishSize(bucket);
+                        metrics.holdEnd(bucket);
+                        lock.unlockWrite();
+                    });
+                } else if (spinLocks != null){
+                    readers[i] = new BucketLock(this, i, ()->spinLocks.unlockRead(bucket));
+                    writers[i] = new BucketLock(this, i, metrics == null ? ()->{
+                        publishSize(bucket);
+                        spinLocks.unlockWrite(bucket);
+                    } : ()->{
+                        publishSize(bucket);
+                        metrics.holdEnd(bucket);
+                        spinLocks.unlockWrite(bucket);
+                    });
+                } else if (locks != null){
+                    var lock = locks[i];
+                    readers[i] = new BucketLock(this, i, lock);
+                    writers[i] = new BucketLock(this, i, metrics == null ? ()->{
+                        publish(bucket);
+                        lock.writeLock().unlock();
+                    } : ()->{
+                        publish(bucket);
+                        if (lock.getWriteHoldCount() == 1)
+                            metrics.holdEnd(bucket);
+                        lock.writeLock().unlock();
+                    });
+                }// else LOCK_FREE: subclass doesn't lock at all
+            }
+        }//new
+
+        /** Write lock must be held. An unchanged size is not stored again: its cache line stays shared with {@link #size()} readers */
+        void publishSize (int bucket) {
+            int i = bucket * SIZE_STRIDE, size = map.bucketSize(bucket);
+            if (sizes.getPlain(i) != size)
+                sizes.setRelease(i, size);
+        }
+
+        /**
+         Write lock must be held: {@link #publishSize}, and COPY_ON_WRITE/LEFT_RIGHT: when the outermost write lock is released,
+         the bucket map (the writer's copy) becomes the one lock-free readers see. A retired layout publishes nothing.
+         LEFT_RIGHT: then waits until the readers have left the other copy and brings it up to date for the next writer.
+         */
+        void publish (int bucket) {
+            publishSize(bucket);
+            if (published == null || locks[bucket].getWriteHoldCount() != 1 || retired)
+                return;
+            if (leftRight == null){
+                published.setRelease(bucket, map.mapAt(bucket));
+                return;
+            }
+            published.set(bucket, map.mapAt(bucket));// new readers read the written copy
+            leftRight.toggle(bucket);
+            leftRight.sync(map, bucket);
+        }
+
+        int size (int bucket) {
+            return sizes.getAcquire(bucket * SIZE_STRIDE);
+        }
+
+        private static <T> T[] newLocks (int numBuckets, IntFunction<T[]> array, Supplier<T> lock) {
+            T[] locks = array.apply(numBuckets);
+            for (int i = 0; i < numBuckets; i++)
+                locks[i] = lock.get();
+            return locks;
+        }
+
+        CloseableLock read (int bucket) {
+            if (metrics != null)
+                return meteredRead(bucket);
+            if (spinBuckets != null){
+                spinBuckets[bucket].read();
+                return readers[bucket];
+            }
+            if (spinLocks != null){
+                spinLocks.read(bucket);
+                return readers[bucket];
+            }
+            if (locks == null)
+                return stampedLocks[bucket].read();
+            if (adaptive)
+                return locks[bucket].adaptiveRead();
+            return busyWaiting ? locks[bucket].spinRead() : locks[bucket].read();
+        }
+
+        /** @return {@link #writers} lock: publishes the bucket's size on unlock */
+        CloseableLock write (int bucket) {
+            if (metrics != null)
+                return meteredWrite(bucket);
+            if (spinBuckets != null)
+                spinBuckets[bucket].write();
+            else if (spinLocks != null)
+                spinLocks.write(bucket);
+            else if (locks == null)
+                stampedLocks[bucket].write();
+            else if (adaptive)
+                locks[bucket].adaptiveWrite();
+            else if (busyWaiting)
+                locks[bucket].spinWrite();
+            else
+                locks[bucket].write();
+            return writers[bucket];
+        }
+
+        /** Non-blocking {@link #write}; BLOCKING, BUSY_WAITING, ADAPTIVE, READER_BIASED and COMPACT_SPIN only */
+        @Nullable CloseableLock tryWrite (int bucket) {
+            if (spinBuckets != null ? !spinBuckets[bucket].tryWrite() : spinLocks != null ? !spinLocks.tryWrite(bucket) : locks[bucket].tryWrite() == null)
+                return null;
+            if (metrics == null)
+                return writers[bucket];
+            metrics.acquired(bucket);
+            if (locks == null || locks[bucket].getWriteHoldCount() == 1)
+                metrics.holdStart(bucket);
+            return writers[bucket];
+        }
+
+        /** Non-blocking {@link #read}: fails only while the bucket is (or, COMPACT_SPIN, is about to be) written */
+        @Nullable CloseableLock tryRead (int bucket) {
+            if (spinBuckets != null ? !spinBuckets[bucket].tryRead() : spinLocks != null ? !spinLocks.tryRead(bucket) : locks[bucket].tryRead() == null)
+                return null;
+            if (metrics != null)
+                metrics.acquired(bucket);
+            return readers[bucket];
+        }
+
+        private CloseableLock meteredRead (int bucket) {
+            if (spinBuckets != null){
+                var lock = spinBuckets[bucket];
+                if (lock.tryRead())
+                    metrics.acquired(bucket);
+                else {
+                    long start = System.nanoTime();
+                    int spins = lock.read();
+                    metrics.contended(bucket, System.nanoTime() - start, spins);
+                }
+                return readers[bucket];
+            }
+            if (spinLocks != null){
+                if (spinLocks.tryRead(bucket))
+                    metrics.acquired(bucket);
+                else {
+                    long start = System.nanoTime();
+                    int spins = spinLocks.read(bucket);
+                    metrics.contended(bucket, System.nanoTime() - start, spins);
+                }
+                return readers[bucket];
+            }
+            if ((locks == null ? stampedLocks[bucket].tryRead() : locks[bucket].tryRead()) != null){
+                metrics.acquired(bucket);
+                return readers[bucket];
+            }
+            long start = System.nanoTime(), spins = 0;
+            if (locks == null)
+                stampedLocks[bucket].read();
+            else if (busyWaiting)
+                while (locks[bucket].tryRead() == null){
+                    spins++;
+                    Thread.onSpinWait();
+                }
+            else if (adaptive)
+                locks[bucket].adaptiveRead();
+            else
+                locks[bucket].read();
+            metrics.contended(bucket, System.nanoTime() - start, spins);
+            return readers[bucket];
+        }
+
+        private CloseableLock meteredWrite (int bucket) {
+            if (spinBuckets != null){
+                var lock = spinBuckets[bucket];
+                if (lock.tryWrite())
+                    metrics.acquired(bucket);
+                else {
+                    long start = System.nanoTime();
+                    int spins = lock.write();
+                    metrics.contended(bucket, System.nanoTime() - start, spins);
+                }
+                metrics.holdStart(bucket);
+                return writers[bucket];
+            }
+            if (spinLocks != null){
+                if (spinLocks.tryWrite(bucket))
+                    metrics.acquired(bucket);
+                else {
+                    long start = System.nanoTime();
+                    int spins = spinLocks.write(bucket);
+                    metrics.contended(bucket, System.nanoTime() - start, spins);
+                }
+                metrics.holdStart(bucket);
+                return writers[bucket];
+            }
+            if ((locks == null ? stampedLocks[bucket].tryWrite() : locks[bucket].tryWrite()) != null)
+                metrics.acquired(bucket);
+            else {
+                long start = System.nanoTime(), spins = 0;
+                if (locks == null)
+                    stampedLocks[bucket].write();
+                else if (busyWaiting)
+                    while (locks[bucket].tryWrite() == null){
+                        spins++;
+                        Thread.onSpinWait();
+                    }
+                else if (adaptive)
+                    locks[bucket].adaptiveWrite();
+                else
+                    locks[bucket].write();
+                metrics.contended(bucket, System.nanoTime() - start, spins);
+            }
+            if (locks == null || locks[bucket].getWriteHoldCount() == 1)
+                metrics.holdStart(bucket);
+            return writers[bucket];
+        }
+    }
+
+    /**
+     Held lock of the key's bucket: {@link #bucket()} stays valid until {@link #close()}, even if the map is {@link #restripe restriped}.
+     One instance per bucket and lock mode ⇒ no allocation.
+     */
+    protected static final class BucketLock implements CloseableLock {
+        private final Layout layout;
+        private final int bucket;
+        private final CloseableLock unlock;
+
+        BucketLock (Layout layout, int bucket, CloseableLock unlock) {
+            this.layout = layout;
+            this.bucket = bucket;
+            this.unlock = unlock;
+        }//new
+
+        public int bucket (){ return bucket; }
+
+        @Override
+        public void close () {
+            unlock.close();
+        }
+    }
 
-    /** Lock must be held! */
-    protected abstract Function<K,V> mapAt (int index);
+    /**
+     {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} state of a layout (Ramalhete, Correia: Left-Right): every bucket has two copies.
+     Readers announce themselves in the read indicator of the current version, then read the published copy.
+     The writer changes the other copy, publishes it, toggles the version and waits for the readers of both versions to leave
+     ⇒ nobody reads the old copy anymore, the writer applies the same change to it.
+     */
+    private static final class LeftRight {
+        static final byte NONE = 0, KEY = 1, ALL = 2;
+        final AtomicReferenceArray<Object> published;
+        /** Per bucket, {@link #SIZE_STRIDE} apart (a cache line per bucket): version, readers of version 0, readers of version 1 */
+        final AtomicIntegerArray versions;
+        /** Per bucket and version */
+        final BucketReader[] readers;
+        /** Under the bucket's write lock: {@link #KEY} ⇒ one key was changed, {@link #ALL} ⇒ a bulk write or a new bucket */
+        final byte[] changes;
+        final long[] keys;
+        final @Nullable Object[] objectKeys;
 
+        LeftRight (int numBuckets) {
+            this.published = new AtomicReferenceArray<>(numBuckets);
+            this.versions = new AtomicIntegerArray(numBuckets * SIZE_STRIDE);
+            this.readers = new BucketReader[numBuckets * 2];
+            for (int i = 0; i < readers.length; i++)
+                readers[i] = new BucketReader(this, i >> 1, (i >> 1) * SIZE_STRIDE + 1 + (i & 1));
+            this.changes = new byte[numBuckets];
+            Arrays.fill(changes, ALL);// the second copies are filled by the first unlock (e.g. after a restripe's move)
+            this.keys = new long[numBuckets];
+            this.objectKeys = new Object[numBuckets];
+        }//new
+
+        BucketReader arrive (int bucket) {
+            int version = versions.get(bucket * SIZE_STRIDE);
+            BucketReader reader = readers[bucket * 2 + version];
+            versions.getAndIncrement(reader.indicator);
+            return reader;
+        }
+
+        /** Write lock must be held */
+        void changed (int bucket, long key, @Nullable Object objectKey) {
+            if (changes[bucket] == NONE){
+                changes[bucket] = KEY;
+                keys[bucket] = key;
+                objectKeys[bucket] = objectKey;
+            } else if (keys[bucket] != key || objectKeys[bucket] != objectKey)
+                changes[bucket] = ALL;
+        }
+
+        /** The new copy is published: waits until no reader is left on the old one */
+        void toggle (int bucket) {
+            int i = bucket * SIZE_STRIDE, version = versions.get(i), next = version ^ 1;
+            drain(i + 1 + next);// late readers of the previous toggle
+            versions.set(i, next);
+            drain(i + 1 + version);
+        }
+
+        private void drain (int indicator) {
+            for (int spins = 0; versions.get(indicator) != 0; spins++){
+                if (spins < 100)
+                    Thread.onSpinWait();
+                else
+                    Thread.yield();
+            }
+        }
+
+        void sync (PrimitiveConcurrentMap<?,?> map, int bucket) {
+            map.syncCopy(bucket, changes[bucket] != KEY, keys[bucket], objectKeys[bucket]);
+            changes[bucket] = NONE;
+            objectKeys[bucket] = null;
+        }
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} lock-free reader of a bucket: {@link #map()} isn't changed until {@link #close()}.
+     One instance per bucket and version ⇒ no allocation.
+     */
+    protected static final class BucketReader implements CloseableLock {
+        private final LeftRight leftRight;
+        private final int bucket;
+        private final int indicator;
+
+        BucketReader (LeftRight leftRight, int bucket, int indicator) {
+            this.leftRight = leftRight;
+            this.bucket = bucket;
+            this.indicator = indicator;
+        }//new
+
+        /** The published copy of the bucket: read it, never change it */
+        public Object map (){ return leftRight.published.get(bucket); }
+
+        @Override
+        public void close () {
+            leftRight.versions.getAndDecrement(indicator);
+        }
+    }
+
+    /** Buckets (and locks): {@code [0, numBuckets())}. Stable under {@link #lockLayout()} */
+    protected int numBuckets (){ return layout.numBuckets; }
+
+    /**
+     The bucket as a fastutil map: used by the default {@link #bucketSize} and {@link #clear}, and published by COPY_ON_WRITE/LEFT_RIGHT.
+     Optional: buckets that aren't maps (sets, own tables) return {@code null} and override {@link #bucketSize} and {@link #clear}.
+     Lock must be held!
+     */
+    protected @Nullable Function<K,V> mapAt (int index){ return null; }
+
+    private Function<K,V> requireMapAt (int index) {
+        Function<K,V> map = mapAt(index);
+        if (map == null)
+            throw new IllegalStateException(getClass().getSimpleName() +" has no mapAt: override bucketSize and clear");
+        return map;
+    }
+
+    /**
+     Lock of the bucket by index: the index is only stable under {@link #lockLayout()}.
+     Single-key operations use {@link #readKey}/{@link #writeKey} instead.
+     */
     protected CloseableLock readAt (int lockIndex) {
-        return locks[lockIndex].read();
+        return layout.read(lockIndex);
     }
+    /**
+     Publishes the bucket's size for {@link #size()} on unlock (COPY_ON_WRITE: a copy of the bucket is changed and published;
+     LEFT_RIGHT: the whole bucket is copied into the other copy)
+     */
     protected CloseableLock writeAt (int lockIndex) {
-        return locks[lockIndex].write();
+        Layout l = layout;
+        CloseableLock lock = l.write(lockIndex);
+        copyOnWrite(l, lockIndex, lock);
+        if (l.leftRight != null)
+            l.leftRight.changes[lockIndex] = LeftRight.ALL;
+        return lock;
+    }
+
+    /** Read-locks the key's bucket of the current layout; waits for a {@link #restripe} in progress */
+    protected BucketLock readKey (long key){ return lockKey(CFUtil.hash(key), false); }
+    protected BucketLock readKey (int key){ return lockKey(CFUtil.hash(key), false); }
+    protected BucketLock readKey (Object key){ return lockKey(CFUtil.hash(key), false); }
+    protected BucketLock readKey (float key){ return lockKey(CFUtil.hash(Float.floatToIntBits(key)), false); }
+    protected BucketLock readKey (double key){ return lockKey(CFUtil.hash(Double.doubleToLongBits(key)), false); }
+
+    /** Write-locks the key's bucket of the current layout; waits for a {@link #restripe} in progress */
+    protected BucketLock writeKey (long key){ return changed(lockKey(CFUtil.hash(key), true), key, null); }
+    protected BucketLock writeKey (int key){ return changed(lockKey(CFUtil.hash(key), true), key, null); }
+    protected BucketLock writeKey (Object key){ return changed(lockKey(CFUtil.hash(key), true), 0, key); }
+    protected BucketLock writeKey (float key){ return changed(lockKey(CFUtil.hash(Float.floatToIntBits(key)), true), Float.floatToRawIntBits(key), null); }
+    protected BucketLock writeKey (double key){ return changed(lockKey(CFUtil.hash(Double.doubleToLongBits(key)), true), Double.doubleToRawLongBits(key), null); }
+
+    /**
+     {@link #readKey} of a key whose {@link CFUtil#hash} is already computed: for bucket tables that reuse it
+     (hash once per operation)
+     */
+    protected BucketLock readHash (int hash){ return lockKey(hash, false); }
+    /** {@link #writeKey(Object)} of a key whose {@link CFUtil#hash} is already computed */
+    protected BucketLock writeHash (int hash, @Nullable Object key){ return changed(lockKey(hash, true), 0, key); }
+
+    /** Bucket of a {@link CFUtil#hash} in the current layout ({@link #getBucket} without hashing): stable under {@link #lockLayout()} */
+    protected int bucketOfHash (int hash) {
+        return bucket(hash, numBuckets());
+    }
+
+    /** LEFT_RIGHT: the key is changed under the lock ⇒ {@link #syncCopy} */
+    private static BucketLock changed (BucketLock lock, long key, @Nullable Object objectKey) {
+        LeftRight lr = lock.layout.leftRight;
+        if (lr != null)
+            lr.changed(lock.bucket, key, objectKey);
+        return lock;
+    }
+
+    private BucketLock lockKey (int hash, boolean write) {
+        for (;;){
+            Layout l = layout;
+            int bucket = bucket(hash, l.numBuckets);
+            CloseableLock lock = write ? l.write(bucket) : l.read(bucket);
+            if (!l.retired){
+                if (!write)
+                    return l.readers[bucket];
+                copyOnWrite(l, bucket, lock);
+                return l.writers[bucket];
+            }
+            lock.close();// restriped while waiting: the key lives in another bucket now
+        }
+    }
+
+    /** COPY_ON_WRITE: the outermost write lock of a bucket gets a private copy of it, published on unlock */
+    private void copyOnWrite (Layout l, int bucket, CloseableLock lock) {
+        if (l.published == null || l.leftRight != null || l.locks[bucket].getWriteHoldCount() != 1)
+            return;
+        try {
+            copyBucket(bucket);
+        } catch (RuntimeException | Error e){
+            lock.close();// the unchanged bucket is published again
+            throw e;
+        }
+    }
+
+    private static int bucket (int hash, int numBuckets) {
+        return Math.abs(hash % numBuckets);// same as CFUtil.bucket
+    }
+
+    /** BLOCKING, BUSY_WAITING, ADAPTIVE, READER_BIASED and COMPACT_SPIN only: non-blocking {@link #writeKey} */
+    protected @Nullable BucketLock tryWriteKey (long key) {
+        int hash = CFUtil.hash(key);
+        for (;;){
+            Layout l = layout;
+            int bucket = bucket(hash, l.numBuckets);
+            CloseableLock lock = l.tryWrite(bucket);
+            if (lock == null)
+                return null;
+            if (!l.retired){
+                copyOnWrite(l, bucket, lock);
+                return changed(l.writers[bucket], key, null);
+            }
+            lock.close();
+        }
+    }
+
+    /** BLOCKING, BUSY_WAITING, ADAPTIVE, READER_BIASED and COMPACT_SPIN only: non-blocking {@link #readKey} */
+    protected @Nullable BucketLock tryReadKey (long key) {
+        int hash = CFUtil.hash(key);
+        for (;;){
+            Layout l = layout;
+            int bucket = bucket(hash, l.numBuckets);
+            CloseableLock lock = l.tryRead(bucket);
+            if (lock == null)
+                return null;
+            if (!l.retired)
+                return l.readers[bucket];
+            lock.close();
+        }
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#COPY_ON_WRITE} only: the key's bucket map as last published by a writer, without any lock.
+     Immutable: read it, never change it. Null while a {@link #restripe} hasn't moved the bucket yet ⇒ read under {@link #readKey}.
+     */
+    protected @Nullable Object publishedBucket (long key){ return publishedOfHash(CFUtil.hash(key)); }
+    protected @Nullable Object publishedBucket (int key){ return publishedOfHash(CFUtil.hash(key)); }
+    protected @Nullable Object publishedBucket (Object key){ return publishedOfHash(CFUtil.hash(key)); }
+    protected @Nullable Object publishedBucket (float key){ return publishedOfHash(CFUtil.hash(Float.floatToIntBits(key))); }
+    protected @Nullable Object publishedBucket (double key){ return publishedOfHash(CFUtil.hash(Double.doubleToLongBits(key))); }
+
+    private @Nullable Object publishedOfHash (int hash) {
+        Layout l = layout;
+        return l.published.getAcquire(bucket(hash, l.numBuckets));
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} only: announces a reader of the key's bucket, without any lock or wait;
+     read {@link BucketReader#map()} and close it. Null while a {@link #restripe} hasn't moved the bucket yet ⇒ read under {@link #readKey}.
+     */
+    protected @Nullable BucketReader arrive (long key){ return arriveHash(CFUtil.hash(key)); }
+    protected @Nullable BucketReader arrive (int key){ return arriveHash(CFUtil.hash(key)); }
+    protected @Nullable BucketReader arrive (Object key){ return arriveHash(CFUtil.hash(key)); }
+    protected @Nullable BucketReader arrive (float key){ return arriveHash(CFUtil.hash(Float.floatToIntBits(key))); }
+    protected @Nullable BucketReader arrive (double key){ return arriveHash(CFUtil.hash(Double.doubleToLongBits(key))); }
+
+    private @Nullable BucketReader arriveHash (int hash) {
+        Layout l = layout;
+        int bucket = bucket(hash, l.numBuckets);
+        BucketReader reader = l.leftRight.arrive(bucket);
+        if (l.published.get(bucket) != null)
+            return reader;
+        reader.close();
+        return null;
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} hook, called on the outermost write unlock once no reader is left on the
+     other copy of the bucket: applies the writer's change to it and swaps the copies (the next writer changes this one).
+     @param all the whole bucket was written (batch, clear, restore, restripe) ⇒ copy every entry
+     @param key the changed primitive key (float and double as raw bits), {@code objectKey}: the changed Object key
+     */
+    protected void syncCopy (int bucket, boolean all, long key, @Nullable Object objectKey) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" has no left-right buckets");
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#COPY_ON_WRITE} hook, called under the outermost write lock of the bucket:
+     replaces the bucket map with a copy (e.g. {@code maps[bucket] = maps[bucket].clone()}) that the writer changes;
+     readers keep the published one until the unlock.
+     */
+    protected void copyBucket (int bucket) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" has no copy-on-write buckets");
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#OPTIMISTIC} only: the key's bucket without locking,
+     for {@link #tryOptimisticRead(BucketLock)} + {@link #validate(BucketLock, long)}. Must not be closed!
+     */
+    protected BucketLock bucketOf (long key){ return readerOfHash(CFUtil.hash(key)); }
+    protected BucketLock bucketOf (int key){ return readerOfHash(CFUtil.hash(key)); }
+    protected BucketLock bucketOf (Object key){ return readerOfHash(CFUtil.hash(key)); }
+    protected BucketLock bucketOf (float key){ return readerOfHash(CFUtil.hash(Float.floatToIntBits(key))); }
+    protected BucketLock bucketOf (double key){ return readerOfHash(CFUtil.hash(Double.doubleToLongBits(key))); }
+
+    private BucketLock readerOfHash (int hash) {
+        Layout l = layout;
+        return l.readers[bucket(hash, l.numBuckets)];
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#OPTIMISTIC} only: the read must be confirmed with {@link #validate}.
+     @return 0 if the bucket is exclusively locked
+     @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+     */
+    protected long tryOptimisticRead (BucketLock bucket) {
+        return bucket.layout.stampedLocks[bucket.bucket].tryOptimisticRead();
+    }
+    /**
+     False after a concurrent write or {@link #restripe} (the retired layout's locks were write-locked)
+     @see java.util.concurrent.locks.StampedLock#validate(long)
+     */
+    protected boolean validate (BucketLock bucket, long stamp) {
+        return bucket.layout.stampedLocks[bucket.bucket].validate(stamp) && !bucket.layout.retired;
+    }
+
+    /**
+     Changes on every {@link #writeAt} of the bucket. Lock must be held!
+     @see CloseableReadWriteLock#modCount()
+     */
+    protected int modCount (int lockIndex) {
+        Layout l = layout;
+        if (l.spinBuckets != null)
+            return l.spinBuckets[lockIndex].modCount();
+        if (l.spinLocks != null)
+            return l.spinLocks.modCount(lockIndex);
+        return l.locks == null ? l.stampedLocks[lockIndex].modCount() : l.locks[lockIndex].modCount();
+    }
+
+    /**
+     Keeps {@link #numBuckets()} and the bucket indexes stable until closed: for operations over many buckets
+     (batches, iteration, size). Reentrant; {@link #restripe} waits for it.
+     */
+    protected CloseableLock lockLayout () {
+        return layoutLock.read();
+    }
+
+    /**
+     Every bucket of the current layout that holds the keys of {@code bucket} in a layout of {@code numBuckets} buckets
+     (a {@link #restripe} only multiplies the bucket count ⇒ {@code bucket}, {@code bucket + numBuckets}, …).
+     For spliterators created before a restripe.
+     */
+    @SuppressWarnings("try")
+    protected void forEachBucketOf (int bucket, int numBuckets, IntConsumer action) {
+        try (var __ = lockLayout()){
+            for (int b = bucket, n = numBuckets(); b < n; b += numBuckets)
+                action.accept(b);
+        }
+    }
+
+    /**
+     Changes the number of buckets (and locks) online: e.g. double them at peak traffic when the bucket locks are contended.
+     {@code newNumBuckets} must be a multiple of {@link #numBuckets()} ⇒ every bucket splits into new ones and no new bucket
+     has two sources:
+     <ol>
+     <li>every old bucket lock is taken in turn</li>
+     <li>the new buckets are created write-locked and become the current layout (no entry is moved yet)</li>
+     <li>entries are moved bucket by bucket; the new buckets of an old bucket are unlocked as soon as it is moved</li>
+     </ol>
+     Single-key operations only wait for their own bucket. Batch operations, iteration and size wait for the end of the move.
+     Must not be called under {@link #lockLayout()} (e.g. from a forEach action).
+     @throws UnsupportedOperationException LOCK_FREE maps and sets
+     */
+    @SuppressWarnings("try")
+    public void restripe (@Positive int newNumBuckets) {
+        if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE)
+            throw new UnsupportedOperationException("LOCK_FREE map can't be restriped");
+        try (var __ = layoutLock.write()){
+            Layout old = layout;
+            if (newNumBuckets == old.numBuckets)
+                return;
+            if (newNumBuckets < old.numBuckets || newNumBuckets % old.numBuckets != 0 || newNumBuckets > 100_000_000)
+                throw new IllegalArgumentException("newNumBuckets must be a multiple of %d up to 100_000_000, but: %d".formatted(old.numBuckets, newNumBuckets));
+            Object[][] oldBuckets = new Object[1][];
+            CloseableLock[] moving = new CloseableLock[newNumBuckets];
+            switchLayout(old, ()->{
+                oldBuckets[0] = newBuckets(newNumBuckets);
+                Layout next = new Layout(newNumBuckets, mapMode, old.metrics != null ? new LockMetrics(newNumBuckets) : null, this,
+                    mapMode == PrimitiveMapBuilder.MapMode.COMPACT_SPIN ? spinBuckets() : null);
+                for (int b = 0; b < newNumBuckets; b++)
+                    moving[b] = next.write(b);// nobody else sees them yet; closed after the move ⇒ publishes the new sizes
+                return next;
+            });
+            try {
+                for (int b = 0; b < old.numBuckets; b++){
+                    moveBucket(oldBuckets[0], b);
+                    for (int nb = b; nb < newNumBuckets; nb += old.numBuckets){
+                        moving[nb].close();
+                        moving[nb] = null;
+                    }
+                }
+            } finally {
+                for (CloseableLock lock : moving)
+                    if (lock != null)
+                        lock.close();
+            }
+        }
+    }
+
+    /**
+     Makes {@code next} the current layout under all bucket write locks of {@code old} ⇒ every operation on {@code old} has left,
+     waiting ones see it {@link Layout#retired} and lock again. Layout lock must be held exclusively!
+     @param next runs under the bucket write locks
+     */
+    private void switchLayout (Layout old, Supplier<Layout> next) {
+        CloseableLock[] held = new CloseableLock[old.numBuckets];
+        try {
+            for (int b = 0; b < old.numBuckets; b++)
+                held[b] = old.write(b);// waits for operations in progress on the bucket
+            Layout l = next.get();
+            old.retired = true;
+            layout = l;
+        } finally {
+            for (CloseableLock lock : held)
+                if (lock != null)
+                    lock.close();
+        }
+    }
+
+    /**
+     Opt-in per-bucket lock counters (see {@link LockMetrics}): two counter updates per lock acquisition,
+     {@link System#nanoTime()} for waits and write lock holds. Without metrics the lock path only checks a field.
+     A {@link #restripe} starts new metrics for the new buckets.
+     @return current metrics (the same if already enabled)
+     @throws UnsupportedOperationException LOCK_FREE maps have no locks
+     */
+    @SuppressWarnings("try")
+    public LockMetrics enableLockMetrics () {
+        if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE)
+            throw new UnsupportedOperationException("LOCK_FREE map has no locks");
+        try (var __ = layoutLock.write()){
+            Layout old = layout;
+            if (old.metrics == null)
+                switchLayout(old, ()->new Layout(old, new LockMetrics(old.numBuckets)));
+            return layout.metrics;
+        }
+    }
+
+    @SuppressWarnings("try")
+    public void disableLockMetrics () {
+        try (var __ = layoutLock.write()){
+            Layout old = layout;
+            if (old.metrics != null)
+                switchLayout(old, ()->new Layout(old, null));
+        }
+    }
+
+    /** @return current (live) metrics, null if not {@link #enableLockMetrics() enabled} */
+    public @Nullable LockMetrics lockMetrics (){ return layout.metrics; }
+
+    /**
+     {@link #enableLockMetrics()} and exposes them as {@code com.trivago.fastutilconcurrentwrapper:type=LockMetrics,name=<name>}
+     @see LockMetrics#unregisterMBean
+     */
+    public ObjectName registerLockMetricsMBean (String name) {
+        enableLockMetrics();
+        return LockMetrics.registerMBean(name, this::lockMetrics);
+    }
+
+    /**
+     {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} {@link #restripe} hook, called right after {@link #newBuckets}
+     (under all old bucket write locks): the new buckets if they hold their own lock words (write-locked right away),
+     null if the locks are a {@link SpinReadWriteLocks}.
+     @see #PrimitiveConcurrentMap(SpinLockWord[])
+     */
+    protected SpinLockWord @Nullable [] spinBuckets () {
+        return null;
+    }
+
+    /**
+     {@link #restripe} hook, called under all old bucket write locks: replaces the buckets with {@code numBuckets} empty ones.
+     @return the old buckets (for {@link #moveBucket})
+     */
+    protected Object[] newBuckets (int numBuckets) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" can't be restriped");
+    }
+
+    /**
+     {@link #restripe} hook: moves the entries of an old bucket into the new buckets ({@link #getBucket} is already the new layout).
+     The new buckets are locked by the caller.
+     */
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" can't be restriped");
+    }
+
+    /**
+     Binary snapshot of the entries, bucket by bucket (see {@link Snapshot}): every bucket is encoded under its read lock,
+     then written to the stream without the lock. Weakly consistent across buckets, like {@link #forEachAt}.
+     Must not be called under {@link #lockLayout()}. The stream is not closed.
+     */
+    @SuppressWarnings("try")
+    public void writeTo (OutputStream out) throws IOException {
+        try (var __ = lockLayout()){
+            Snapshot.write(out, numBuckets(), snapshotObjects(), (bucket, o)->{
+                try (var ___ = snapshotLock(bucket, false)){
+                    writeBucket(bucket, o);
+                }
+            });
+        }
+    }
+
+    /**
+     Puts the entries of a {@link #writeTo} snapshot into this map (usually a new or cleared one).
+     Buckets are rebuilt in parallel; with the same number of buckets every bucket is write-locked once
+     and filled directly, otherwise every entry goes through its key's lock.
+     Restoring a snapshot of another map type fails (or is garbage, if the entry sizes match).
+     @throws java.io.StreamCorruptedException not a snapshot or a corrupted one
+     */
+    @SuppressWarnings("try")
+    public void readFrom (InputStream in) throws IOException {
+        try (var __ = lockLayout()){
+            Snapshot.read(in, snapshotObjects(), true, (block, blocks, i)->{
+                if (blocks != numBuckets()){
+                    readBucket(i, -1);
+                    return;
+                }
+                try (var ___ = snapshotLock(block, true)){
+                    readBucket(i, block);
+                }
+            });
+        }
+    }
+
+    /** LOCK_FREE maps have no locks */
+    private CloseableLock snapshotLock (int bucket, boolean write) {
+        if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE)
+            return ()->{};
+        return write ? writeAt(bucket) : readAt(bucket);
+    }
+
+    /** Keys or values are objects ⇒ {@link #writeTo} uses Java serialization */
+    protected boolean snapshotObjects () {
+        return false;
     }
+
+    /** {@link #writeTo} hook, under the bucket's read lock: entry count, then the entries */
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" has no snapshot");
+    }
+
+    /**
+     {@link #readFrom} hook: the entries of a {@link #writeBucket}
+     @param bucket write-locked bucket that gets all the entries, or -1: the snapshot has other buckets ⇒ use the single-key operations
+     */
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +" has no snapshot");
+    }
+
+    /**
+     Walks the bucket's iterator under the bucket's read lock. No allocation per entry with a fastutil fast iterator.
+
+     Every {@code maxHold} entries the lock is released and re-acquired, so writers don't wait for the whole bucket.
+     If the bucket was modified meanwhile, a new iterator skips the entries already visited:
+     weakly consistent, an entry moved by a concurrent insert or remove can be missed or visited twice.
+
+     @param iterator bucket ⇒ new iterator (called under the lock)
+     @param maxHold {@link Integer#MAX_VALUE} ⇒ the lock is held for the whole bucket
+     */
+    protected <E> void forEachAt (int bucket, int maxHold, IntFunction<ObjectIterator<E>> iterator, Consumer<? super E> action) {
+        if (maxHold < 1)
+            throw new IllegalArgumentException("maxHold must be positive, but: "+ maxHold);
+        CloseableLock lock = readAt(bucket);
+        try {
+            ObjectIterator<E> it = iterator.apply(bucket);
+            for (int visited = 0; it.hasNext();){
+                action.accept(it.next());
+                if (++visited % maxHold == 0 && it.hasNext()){
+                    int modCount = modCount(bucket);
+                    lock.close();
+                    lock = readAt(bucket);// writers get their chance
+                    if (modCount(bucket) != modCount){
+                        it = iterator.apply(bucket);
+                        it.skip(visited);
+                    }
+                }
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     {@link #forEachAt(int, int, IntFunction, Consumer)} of a bucket with its own table: positions instead of an iterator.
+     If the bucket was modified while the lock was released, the walk goes on after the {@code visited}-th key.
+     @param table the bucket's table: stable under {@link #lockLayout()}
+     @param nullKey visits the key without a position (null or 0) if the table contains it
+     @param entry visits the entry at a position
+     */
+    protected void forEachAt (int bucket, int maxHold, BucketTable table, Runnable nullKey, IntConsumer entry) {
+        if (maxHold < 1)
+            throw new IllegalArgumentException("maxHold must be positive, but: "+ maxHold);
+        CloseableLock lock = readAt(bucket);
+        try {
+            if (table.containsNullKey())
+                nullKey.run();
+            for (int pos = 0, visited = 0; (pos = table.next(pos)) >= 0; pos++){
+                entry.accept(pos);
+                if (++visited % maxHold == 0){
+                    int modCount = modCount(bucket);
+                    lock.close();
+                    lock = readAt(bucket);// writers get their chance
+                    if (modCount(bucket) != modCount && (pos = table.skip(visited)) < 0)
+                        break;// keys could have moved
+                }
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     BLOCKING, BUSY_WAITING and ADAPTIVE only (READER_BIASED: the raw locks bypass the reader bias).
+     Unlike {@link #writeAt}, the raw write lock doesn't publish the bucket's size
+     (and doesn't copy a COPY_ON_WRITE bucket: don't change one under it)
+     */
     protected ReentrantReadWriteLock.ReadLock readLock (int lockIndex) {
-        return locks[lockIndex].readLock();
+        return layout.locks[lockIndex].readLock();
     }
     protected ReentrantReadWriteLock.WriteLock writeLock (int lockIndex) {
-        return locks[lockIndex].writeLock();
+        return layout.locks[lockIndex].writeLock();
     }
 
+    /**
+     Sum of the per-bucket sizes published by the writers: no locks, O(buckets) reads of mostly shared cache lines.
+     Exact when no write is in progress; otherwise every bucket is counted before or after its current write
+     (like {@link java.util.concurrent.ConcurrentHashMap#size()}).
+     @see #exactSize()
+     */
     @Override
 		public int size () {
-        int sum = 0;
-        for (int i = 0; i < locks.length; i++){
-            try (var __ = readAt(i)){
-                sum += mapAt(i).size();
-            }
-        }
-        return sum;
+        Layout l = layout;
+        long sum = 0;
+        for (int i = 0; i < l.numBuckets; i++)
+            sum += l.size(i);
+        return (int) Math.min(sum, Integer.MAX_VALUE);
     }
 
+    /** Lock-free like {@link #size()} */
     @Override
 		public boolean isEmpty () {
-        for (int i = 0; i < locks.length; i++) {
-            try (var __ = readAt(i)){
-                boolean nonEmpty = mapAt(i).size() > 0;
-                if (nonEmpty)
-                    return false;
+        Layout l = layout;
+        for (int i = 0; i < l.numBuckets; i++)
+            if (l.size(i) != 0)
+                return false;
+        return true;// all sub-maps are empty
+    }
+
+    /**
+     Point-in-time size: all bucket read locks are held at once (writers wait), then the buckets are counted.
+     For a consistency check; {@link #size()} is the cheap one.
+     */
+    @SuppressWarnings("try")
+    public int exactSize () {
+        try (var __ = lockLayout()){
+            int n = numBuckets();
+            CloseableLock[] held = new CloseableLock[n];
+            try {
+                for (int i = 0; i < n; i++)
+                    held[i] = readAt(i);// ascending like every multi-bucket lock holder ⇒ no deadlock
+                long sum = 0;
+                for (int i = 0; i < n; i++)
+                    sum += bucketSize(i);
+                return (int) Math.min(sum, Integer.MAX_VALUE);
+            } finally {
+                for (CloseableLock lock : held)
+                    if (lock != null)
+                        lock.close();
             }
         }
-        return true;// all sub-maps are empty
     }
 
+    /** Entries in the bucket: published by every write unlock for {@link #size()}. Write lock is held */
+    protected int bucketSize (int bucket) {
+        return requireMapAt(bucket).size();
+    }
+
+    @SuppressWarnings("try")
     @Override
     public void clear () {
-        for (int i = 0; i < locks.length; i++){
-            try (var __ = writeAt(i)){
-                mapAt(i).clear();
+        try (var __ = lockLayout()){
+            for (int i = 0; i < numBuckets(); i++){
+                try (var ___ = writeAt(i)){
+                    requireMapAt(i).clear();
+                }
             }
         }
     }
 
     protected int getBucket (long key) {
-			return CFUtil.bucket(key, locks.length);
+			return CFUtil.bucket(key, numBuckets());
     }
 
     protected int getBucket (int key) {
-			return CFUtil.bucket(key, locks.length);// Integer.hashCode(key) == key
+			return CFUtil.bucket(key, numBuckets());// Integer.hashCode(key) == key
     }
 
     protected int getBucket (Object key) {
-			return CFUtil.bucket(key, locks.length);
+			return CFUtil.bucket(key, numBuckets());
+    }
+
+    /** Same bits as fastutil's float keys: -0.0 ≠ 0.0, NaN = NaN */
+    protected int getBucket (float key) {
+			return CFUtil.bucket(Float.floatToIntBits(key), numBuckets());
+    }
+
+    protected int getBucket (double key) {
+			return CFUtil.bucket(Double.doubleToLongBits(key), numBuckets());
+    }
+
+    /** Batch keys grouped by bucket. Thread-local result: valid until the next groupByBucket in this thread */
+    protected BucketGroups groupByBucket (long[] keys) {
+        return groupByBucket(keys, false);
+    }
+
+    /** @param parallel the groups will be read by other threads ⇒ not thread-local */
+    protected BucketGroups groupByBucket (long[] keys, boolean parallel) {
+        BucketGroups g = parallel ? new BucketGroups(numBuckets(), keys.length) : BucketGroups.local(numBuckets(), keys.length);
+        int[] bucketOf = g.bucketOf();
+        for (int i = 0; i < keys.length; i++)
+            bucketOf[i] = getBucket(keys[i]);
+        return g.sort(keys.length);
+    }
+
+    /** @see #groupByBucket(long[]) */
+    protected BucketGroups groupByBucket (int[] keys) {
+        return groupByBucket(keys, false);
+    }
+
+    /** @see #groupByBucket(long[], boolean) */
+    protected BucketGroups groupByBucket (int[] keys, boolean parallel) {
+        BucketGroups g = parallel ? new BucketGroups(numBuckets(), keys.length) : BucketGroups.local(numBuckets(), keys.length);
+        int[] bucketOf = g.bucketOf();
+        for (int i = 0; i < keys.length; i++)
+            bucketOf[i] = getBucket(keys[i]);
+        return g.sort(keys.length);
+    }
+
+    /** @see #groupByBucket(long[]) */
+    protected BucketGroups groupByBucket (Object[] keys) {
+        return groupByBucket(keys, false);
+    }
+
+    /** @see #groupByBucket(long[], boolean) */
+    protected BucketGroups groupByBucket (Object[] keys, boolean parallel) {
+        BucketGroups g = parallel ? new BucketGroups(numBuckets(), keys.length) : BucketGroups.local(numBuckets(), keys.length);
+        int[] bucketOf = g.bucketOf();
+        for (int i = 0; i < keys.length; i++)
+            bucketOf[i] = getBucket(keys[i]);
+        return g.sort(keys.length);
+    }
+
+    /**
+     Keys of any type (e.g. {@code short[]}, {@code double[]}) grouped by bucket.
+     @param bucketOfKey key index ⇒ bucket
+     @see #groupByBucket(long[], boolean)
+     */
+    protected BucketGroups groupByBucket (int size, boolean parallel, IntUnaryOperator bucketOfKey) {
+        BucketGroups g = parallel ? new BucketGroups(numBuckets(), size) : BucketGroups.local(numBuckets(), size);
+        int[] bucketOf = g.bucketOf();
+        for (int i = 0; i < size; i++)
+            bucketOf[i] = bucketOfKey.applyAsInt(i);
+        return g.sort(size);
+    }
+
+    /**
+     Runs the action for every bucket that has keys in the batch.
+     @param parallel different buckets on different {@link java.util.concurrent.ForkJoinPool#commonPool()} workers
+     @return sum of the action results
+     */
+    protected int forEachBucket (BucketGroups g, boolean parallel, IntUnaryOperator action) {
+        if (parallel)
+            return IntStream.range(0, numBuckets()).parallel()
+                .filter(bucket->g.from(bucket) < g.to(bucket))
+                .map(action)
+                .sum();
+        int sum = 0;
+        for (int bucket = 0; bucket < numBuckets(); bucket++){
+            if (g.from(bucket) < g.to(bucket))
+                sum += action.applyAsInt(bucket);
+        }
+        return sum;
+    }
+
+    protected static void checkBatch (int keys, int values) {
+        if (values < keys)
+            throw new IllegalArgumentException("values array is shorter than keys: %d < %d".formatted(values, keys));
     }
 }
\ No newline at end of file
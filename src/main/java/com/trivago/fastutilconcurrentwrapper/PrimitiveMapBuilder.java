@@ -1,11 +1,21 @@
 package com.trivago.fastutilconcurrentwrapper;
 
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+
 public abstract class PrimitiveMapBuilder<T extends PrimitiveKeyMap,V> {
 	protected MapMode mapMode = MapMode.BUSY_WAITING;
 	protected int buckets = 8;
 	protected int initialCapacity = 100_000;
 	protected float loadFactor = 0.8f;
 	protected V defaultValue;
+	protected boolean offHeap;
+	protected @Nullable Path mappedFile;
+	protected boolean incrementalResize;
+	protected boolean fusedBuckets;
+	protected boolean hashOnce;
+	protected boolean stripedCounters;
 
 	protected PrimitiveMapBuilder () {
 	}
@@ -35,17 +45,148 @@ public abstract class PrimitiveMapBuilder<T extends PrimitiveKeyMap,V> {
 		return this;
 	}
 
+	/**
+	 Entries in direct memory instead of the Java heap: no GC scanning and copying of large maps.
+	 {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only.
+	 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOffHeapLongLongMap
+	 */
+	public final PrimitiveMapBuilder<T,V> withOffHeap (boolean offHeap) {
+		this.offHeap = offHeap;
+		return this;
+	}
+
+	/**
+	 Entries in a memory-mapped file, kept across restarts: an existing file is reopened.
+	 {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only.
+	 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentMappedLongLongMap#open
+	 */
+	public final PrimitiveMapBuilder<T,V> withMappedFile (@Nullable Path mappedFile) {
+		this.mappedFile = mappedFile;
+		return this;
+	}
+
+	/**
+	 Buckets grow step by step: a few old slots move to the new table with every write, instead of one rehash
+	 of the whole bucket under its write lock. {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only.
+	 Its tables are read under the bucket lock only: {@link MapMode#OPTIMISTIC} is rejected.
+	 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentIncrementalLongLongMap
+	 @see #withFusedBuckets
+	 */
+	public final PrimitiveMapBuilder<T,V> withIncrementalResize (boolean incrementalResize) {
+		this.incrementalResize = incrementalResize;
+		return this;
+	}
+
+	/**
+	 Incremental-resize buckets that hold their own {@link MapMode#COMPACT_SPIN} lock word: a bucket is one object
+	 (fewer cache misses per lookup). {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only,
+	 with {@link MapMode#COMPACT_SPIN} only.
+	 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentFusedLongLongMap
+	 */
+	public final PrimitiveMapBuilder<T,V> withFusedBuckets (boolean fusedBuckets) {
+		this.fusedBuckets = fusedBuckets;
+		return this;
+	}
+
+	/**
+	 Buckets are tables that reuse the key's bucket hash for its slot: {@code hashCode()} is called once per operation.
+	 {@link com.trivago.fastutilconcurrentwrapper.objkey.ConcurrentObjectLongMap} only.
+	 Its tables are read under the bucket lock only: {@link MapMode#OPTIMISTIC} is rejected.
+	 @see com.trivago.fastutilconcurrentwrapper.objkey.ConcurrentHashOnceObjectLongMap
+	 */
+	public final PrimitiveMapBuilder<T,V> withHashOnce (boolean hashOnce) {
+		this.hashOnce = hashOnce;
+		return this;
+	}
+
+	/**
+	 Counters ({@code addTo}) of keys updated by many threads at once move into striped {@link java.util.concurrent.atomic.LongAdder}
+	 cells. {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only, with fastutil buckets and
+	 {@link MapMode#BLOCKING}, {@link MapMode#BUSY_WAITING}, {@link MapMode#ADAPTIVE} or {@link MapMode#READER_BIASED}.
+	 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongCounterMap
+	 */
+	public final PrimitiveMapBuilder<T,V> withStripedCounters (boolean stripedCounters) {
+		this.stripedCounters = stripedCounters;
+		return this;
+	}
+
 	public abstract T build ();
 
+	/**
+	 @throws UnsupportedOperationException {@link #withOffHeap}, {@link #withMappedFile}, {@link #withIncrementalResize},
+	 {@link #withFusedBuckets}, {@link #withHashOnce} or {@link #withStripedCounters} was requested from a map
+	 whose buckets are always plain fastutil maps
+	 */
+	protected final void requireFastutilBuckets () {
+		if (offHeap || mappedFile != null)
+			throw new UnsupportedOperationException("Off-heap is implemented by ConcurrentLongLongMap only");
+		if (incrementalResize || fusedBuckets)
+			throw new UnsupportedOperationException("Incremental resize is implemented by ConcurrentLongLongMap only");
+		if (hashOnce)
+			throw new UnsupportedOperationException("Hash-once buckets are implemented by ConcurrentObjectLongMap only");
+		if (stripedCounters)
+			throw new UnsupportedOperationException("Striped counters are implemented by ConcurrentLongLongMap only");
+	}
+
 	public enum MapMode {
 		BUSY_WAITING,
-		BLOCKING
+		BLOCKING,
+		/**
+		 Bounded, self-tuning spinning on tryLock, then yield, then park:
+		 busy-waiting latency while the CPUs are idle, no burned CPUs when threads outnumber cores or a lock holder is descheduled.
+		 @see com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock#adaptiveWrite()
+		 */
+		ADAPTIVE,
+		/**
+		 Bucket locks are reader-biased (BRAVO): while a bucket isn't written, a reader publishes itself in a hashed
+		 per-thread slot instead of incrementing the lock's shared reader count ⇒ reads of a hot bucket don't bounce its
+		 cache line. A write revokes the bias and waits for the readers in their slots; write-heavy buckets fall back
+		 to {@link #BLOCKING} for a while.
+		 @see com.trivago.fastutilconcurrentwrapper.util.ReaderBiasedReadWriteLock
+		 */
+		READER_BIASED,
+		/**
+		 Bucket locks are words of one {@code long[]}, a cache line apart: no lock objects, no queue ⇒ a lock costs 64 bytes
+		 and one CAS. Waiters spin, then yield: for short critical sections and a few threads per core.
+		 A writer blocks new readers ⇒ no writer starvation. Locks are not reentrant (like {@link #OPTIMISTIC}).
+		 @see com.trivago.fastutilconcurrentwrapper.util.SpinReadWriteLocks
+		 */
+		COMPACT_SPIN,
+		/**
+		 Buckets are guarded by {@link java.util.concurrent.locks.StampedLock}:
+		 get/containsKey read optimistically (no write to the lock word) and fall back to the read lock on conflict.
+		 Best for read-mostly workloads. Locks are not reentrant.
+		 @see com.trivago.fastutilconcurrentwrapper.util.CloseableStampedLock
+		 */
+		OPTIMISTIC,
+		/**
+		 {@link com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap} only: CAS on {@code long[]} slots, no locks.
+		 Two values are reserved.
+		 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLockFreeLongLongMap
+		 */
+		LOCK_FREE,
+		/**
+		 Read-mostly data (e.g. reference data changed a few times a minute): get/containsKey are wait-free, they read
+		 the bucket's last published immutable copy without any lock. A writer takes the bucket write lock, clones the bucket,
+		 changes the clone (a batch changes it once per bucket) and publishes it on unlock ⇒ every write costs a bucket copy.
+		 fastutil maps only: not for sets, off-heap or incrementally resized maps.
+		 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentCopyOnWriteLongLongMap
+		 */
+		COPY_ON_WRITE,
+		/**
+		 Left-Right: every bucket is kept twice. get/containsKey are wait-free: they announce themselves in the bucket's
+		 read indicator and read the published copy. A writer changes the other copy in place, publishes it, waits until
+		 the readers have left the old copy and applies the same change to it ⇒ no copy per write, but twice the memory
+		 and a write waits for in-flight reads. Batches copy the changed buckets whole. fastutil maps only.
+		 @see com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLeftRightLongIntMap
+		 */
+		LEFT_RIGHT
 	}
 
 	@Override
 	public String toString () {
-		return "PrimitiveMapBuilder{mapMode=%s, buckets=%d, initialCapacity=%d, loadFactor=%s, def=%s}".formatted(
-			mapMode, buckets, initialCapacity, loadFactor, defaultValue
+		return "PrimitiveMapBuilder{mapMode=%s, buckets=%d, initialCapacity=%d, loadFactor=%s, def=%s, offHeap=%s, mappedFile=%s, incrementalResize=%s, fusedBuckets=%s, hashOnce=%s, stripedCounters=%s}".formatted(
+			mapMode, buckets, initialCapacity, loadFactor, defaultValue, offHeap, mappedFile, incrementalResize, fusedBuckets, hashOnce, stripedCounters
 		);
 	}
 }
\ No newline at end of file
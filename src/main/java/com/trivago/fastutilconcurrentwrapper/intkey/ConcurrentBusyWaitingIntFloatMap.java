@@ -1,131 +1,10 @@
 package com.trivago.fastutilconcurrentwrapper.intkey;
 
-import it.unimi.dsi.fastutil.ints.Int2FloatFunction;
-
-import java.util.concurrent.locks.Lock;
-import java.util.function.BiFunction;
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
 
+/** {@link PrimitiveMapBuilder.MapMode#BUSY_WAITING}: bucket locks are acquired by spinning on tryLock (see readAt/writeAt) */
 public class ConcurrentBusyWaitingIntFloatMap extends ConcurrentIntFloatMap {
     public ConcurrentBusyWaitingIntFloatMap (int numBuckets, int initialCapacity, float loadFactor, float defaultValue) {
-        super(numBuckets, initialCapacity, loadFactor, defaultValue);
-    }
-
-    @Override
-		public boolean containsKey(int key) {
-        int bucket = getBucket(key);
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].containsKey(key);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public float get (int key) {
-        int bucket = getBucket(key);
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].getOrDefault(key, defaultValue);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public float put(int key, float value) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].put(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public float remove(int key) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public boolean remove(int key, float value) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public float computeIfAbsent(int key, Int2FloatFunction mappingFunction) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfAbsent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-		public float computeIfPresent(int key, BiFunction<Integer, Float, Float> mappingFunction) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfPresent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
+        super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BUSY_WAITING);
+    }//new
 }
\ No newline at end of file
@@ -2,89 +2,349 @@ package com.trivago.fastutilconcurrentwrapper.intkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.IntFloatConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.IntFloatToFloatFunction;
+import it.unimi.dsi.fastutil.floats.FloatBinaryOperator;
+import it.unimi.dsi.fastutil.floats.FloatConsumer;
+import it.unimi.dsi.fastutil.ints.AbstractInt2FloatMap;
 import it.unimi.dsi.fastutil.ints.Int2FloatFunction;
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
 import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentIntFloatMap extends PrimitiveConcurrentMap<Integer,Float> {
-    protected final Int2FloatOpenHashMap[] maps;
+    protected Int2FloatOpenHashMap[] maps;
     protected final float defaultValue;
+    private final float loadFactor;
 
-    public ConcurrentIntFloatMap(
+    public ConcurrentIntFloatMap (
         int numBuckets,
         int initialCapacity,
         float loadFactor,
         float defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    protected ConcurrentIntFloatMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        float defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Int2FloatOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Int2FloatOpenHashMap(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
     }
 
     @Override protected Int2FloatOpenHashMap mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Int2FloatOpenHashMap newMap (int expected, float loadFactor) {
+        return new Int2FloatOpenHashMap(expected, loadFactor);
+    }
+
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Int2FloatOpenHashMap[] old = maps;
+        maps = new Int2FloatOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Int2FloatOpenHashMap) oldBuckets[oldBucket]).int2FloatEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getIntKey())].put(e.getIntKey(), e.getFloatValue());
+        }
+    }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Int2FloatOpenHashMap map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.int2FloatEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeInt(e.getIntKey());
+            out.writeFloat(e.getFloatValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Int2FloatOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            int key = in.readInt();
+            float value = in.readFloat();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey (int key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public float get(int key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (int[] keys, float[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Int2FloatOpenHashMap map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public float put(int key, float value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public float getDefaultValue (){ return defaultValue; }
 
     public float remove(int key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(int key, float value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (int[] keys, float[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (int[] keys, float[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Int2FloatOpenHashMap map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (int[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (int[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Int2FloatOpenHashMap map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public float computeIfAbsent(int key, Int2FloatFunction mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public float computeIfPresent(int key, BiFunction<Integer, Float, Float> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
         }
     }
 
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public float computeFloat (int key, IntFloatToFloatFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Int2FloatOpenHashMap map = maps[lock.bucket()];
+            float newValue = remappingFunction.applyAsFloat(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public float computeIfPresentFloat (int key, IntFloatToFloatFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Int2FloatOpenHashMap map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            float newValue = remappingFunction.applyAsFloat(key, map.get(key));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public float mergeFloat (int key, float value, FloatBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeFloat(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Int2FloatOpenHashMap#addTo
+     */
+    public float addTo (int key, float increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (IntFloatConsumer action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (IntFloatConsumer action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(IntFloatConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, IntFloatConsumer action) {
+        forEachAt(bucket, maxHold, b->maps[b].int2FloatEntrySet().fastIterator(), e->action.accept(e.getIntKey(), e.getFloatValue()));
+    }
+
+    /** @see #forEach(IntFloatConsumer) */
+    public void forEachKey (IntConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (IntConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(IntFloatConsumer) */
+    public void forEachValue (FloatConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (FloatConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public IntStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.intStream(new BucketSpliterator.OfInt(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public DoubleStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.doubleStream(new BucketSpliterator.OfDouble(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractInt2FloatMap.BasicEntry}) @see #keys() */
+    public Stream<Int2FloatMap.Entry> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Int2FloatMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractInt2FloatMap.BasicEntry(key, value))))), false);
+    }
+
     public static PrimitiveMapBuilder<ConcurrentIntFloatMap,Float> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentIntFloatMap build () {
+                requireFastutilBuckets();
                 float def = super.defaultValue != null ? super.defaultValue : 0;
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingIntFloatMap(buckets, initialCapacity, loadFactor, def);
                     case BLOCKING -> new ConcurrentIntFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentIntFloatMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticIntFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteIntFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightIntFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
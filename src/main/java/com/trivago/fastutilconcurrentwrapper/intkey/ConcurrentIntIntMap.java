@@ -2,89 +2,346 @@ package com.trivago.fastutilconcurrentwrapper.intkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.IntIntConsumer;
+import it.unimi.dsi.fastutil.ints.AbstractInt2IntMap;
 import it.unimi.dsi.fastutil.ints.Int2IntFunction;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentIntIntMap extends PrimitiveConcurrentMap<Integer,Integer> {
-    protected final Int2IntOpenHashMap[] maps;
+    protected Int2IntOpenHashMap[] maps;
     protected final int defaultValue;
+    private final float loadFactor;
 
-    public ConcurrentIntIntMap(
+    public ConcurrentIntIntMap (
         int numBuckets,
         int initialCapacity,
         float loadFactor,
         int defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    protected ConcurrentIntIntMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        int defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Int2IntOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Int2IntOpenHashMap(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
     }
 
     @Override protected Int2IntOpenHashMap mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Int2IntOpenHashMap newMap (int expected, float loadFactor) {
+        return new Int2IntOpenHashMap(expected, loadFactor);
+    }
+
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Int2IntOpenHashMap[] old = maps;
+        maps = new Int2IntOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Int2IntOpenHashMap) oldBuckets[oldBucket]).int2IntEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getIntKey())].put(e.getIntKey(), e.getIntValue());
+        }
+    }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Int2IntOpenHashMap map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.int2IntEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeInt(e.getIntKey());
+            out.writeInt(e.getIntValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Int2IntOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            int key = in.readInt();
+            int value = in.readInt();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(int key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public int get (int key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (int[] keys, int[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Int2IntOpenHashMap map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public int put(int key, int value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public int getDefaultValue (){ return defaultValue; }
 
     public int remove (int key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(int key, int value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (int[] keys, int[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (int[] keys, int[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Int2IntOpenHashMap map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (int[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (int[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Int2IntOpenHashMap map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public int computeIfAbsent(int key, Int2IntFunction mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public int computeIfPresent(int key, BiFunction<Integer, Integer, Integer> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
         }
     }
 
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public int computeInt (int key, IntBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            Int2IntOpenHashMap map = maps[lock.bucket()];
+            int newValue = remappingFunction.applyAsInt(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public int computeIfPresentInt (int key, IntBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            Int2IntOpenHashMap map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            int newValue = remappingFunction.applyAsInt(key, map.get(key));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public int mergeInt (int key, int value, IntBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeInt(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Int2IntOpenHashMap#addTo
+     */
+    public int addTo (int key, int increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (IntIntConsumer action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (IntIntConsumer action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(IntIntConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, IntIntConsumer action) {
+        forEachAt(bucket, maxHold, b->maps[b].int2IntEntrySet().fastIterator(), e->action.accept(e.getIntKey(), e.getIntValue()));
+    }
+
+    /** @see #forEach(IntIntConsumer) */
+    public void forEachKey (IntConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (IntConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(IntIntConsumer) */
+    public void forEachValue (IntConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (IntConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public IntStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.intStream(new BucketSpliterator.OfInt(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public IntStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.intStream(new BucketSpliterator.OfInt(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractInt2IntMap.BasicEntry}) @see #keys() */
+    public Stream<Int2IntMap.Entry> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Int2IntMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractInt2IntMap.BasicEntry(key, value))))), false);
+    }
+
     public static PrimitiveMapBuilder<ConcurrentIntIntMap,Integer> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentIntIntMap build () {
+                requireFastutilBuckets();
                 int def = super.defaultValue != null ? super.defaultValue : 0;
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingIntIntMap(buckets, initialCapacity, loadFactor, def);
                     case BLOCKING -> new ConcurrentIntIntMap(buckets, initialCapacity, loadFactor, def);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentIntIntMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticIntIntMap(buckets, initialCapacity, loadFactor, def);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteIntIntMap(buckets, initialCapacity, loadFactor, def);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightIntIntMap(buckets, initialCapacity, loadFactor, def);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
@@ -2,14 +2,31 @@ package com.trivago.fastutilconcurrentwrapper.intkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.IntLongConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.IntLongToLongFunction;
+import it.unimi.dsi.fastutil.ints.AbstractInt2LongMap;
 import it.unimi.dsi.fastutil.ints.Int2LongFunction;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
 import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentIntLongMap extends PrimitiveConcurrentMap<Integer,Long> {
-	protected final Int2LongOpenHashMap[] maps;
+	protected Int2LongOpenHashMap[] maps;
 	protected final long defaultValue;
+	private final float loadFactor;
 
 	public ConcurrentIntLongMap (
 		int numBuckets,
@@ -17,75 +34,318 @@ public class ConcurrentIntLongMap extends PrimitiveConcurrentMap<Integer,Long> {
 		float loadFactor,
 		long defaultValue
 	){
-		super(numBuckets);
+		this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}
+
+	protected ConcurrentIntLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	){
+		super(numBuckets, mapMode);
 
 		this.maps = new Int2LongOpenHashMap[numBuckets];
 		this.defaultValue = defaultValue;
+		this.loadFactor = loadFactor;
 		for (int i = 0; i < numBuckets; i++)
-				maps[i] = new Int2LongOpenHashMap(initialCapacity, loadFactor);
+				maps[i] = newMap(initialCapacity, loadFactor);
 	}
 
 	@Override protected Int2LongOpenHashMap mapAt (int index){ return maps[index]; }
 
+	/** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+	protected Int2LongOpenHashMap newMap (int expected, float loadFactor) {
+		return new Int2LongOpenHashMap(expected, loadFactor);
+	}
+
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		Int2LongOpenHashMap[] old = maps;
+		maps = new Int2LongOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+		return old;
+	}
+
+	@Override
+	protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+		for (var it = ((Int2LongOpenHashMap) oldBuckets[oldBucket]).int2LongEntrySet().fastIterator(); it.hasNext(); ){
+			var e = it.next();
+			maps[getBucket(e.getIntKey())].put(e.getIntKey(), e.getLongValue());
+		}
+	}
+
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		Int2LongOpenHashMap map = maps[bucket];
+		out.writeInt(map.size());
+		for (var it = map.int2LongEntrySet().fastIterator(); it.hasNext(); ){
+			var e = it.next();
+			out.writeInt(e.getIntKey());
+			out.writeLong(e.getLongValue());
+		}
+	}
+
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		Int2LongOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+		for (int i = 0, n = in.readInt(); i < n; i++){
+			int key = in.readInt();
+			long value = in.readLong();
+			if (map != null)
+				map.put(key, value);
+			else
+				put(key, value);
+		}
+	}
+
 	public boolean containsKey (int key) {
-		int bucket = getBucket(key);
-		try (var __ = readAt(bucket)){
-			return maps[bucket].containsKey(key);
+		try (var lock = readKey(key)){
+			return maps[lock.bucket()].containsKey(key);
 		}
 	}
 
 	public long get (int intKey) {
-		int bucket = getBucket(intKey);
-		try (var __ = readAt(bucket)){
-			return maps[bucket].getOrDefault(intKey, defaultValue);
+		try (var lock = readKey(intKey)){
+			return maps[lock.bucket()].getOrDefault(intKey, defaultValue);
+		}
+	}
+
+	/**
+	 Batch {@link #get}: {@code out[i] = get(keys[i])}.
+	 Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+	 */
+	@SuppressWarnings("try")
+	public void getAll (int[] keys, long[] out) {
+		checkBatch(keys.length, out.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys);
+			for (int bucket = 0; bucket < maps.length; bucket++){
+				int from = g.from(bucket), to = g.to(bucket);
+				if (from == to)
+					continue;
+				try (var ___ = readAt(bucket)){
+					Int2LongOpenHashMap map = maps[bucket];
+					for (int i = from; i < to; i++){
+						int k = g.keyIndex(i);
+						out[k] = map.getOrDefault(keys[k], defaultValue);
+					}
+				}
+			}
 		}
 	}
 
 	public long put (int intKey, long value) {
-		int bucket = getBucket(intKey);
-		try (var __ = writeAt(bucket)){
-			return maps[bucket].put(intKey, value);
+		try (var lock = writeKey(intKey)){
+			return maps[lock.bucket()].put(intKey, value);
 		}
 	}
 
 	public long getDefaultValue (){ return defaultValue; }
 
 	public long remove (int intKey) {
-		int bucket = getBucket(intKey);
-		try (var __ = writeAt(bucket)){
-			return maps[bucket].remove(intKey);
+		try (var lock = writeKey(intKey)){
+			return maps[lock.bucket()].remove(intKey);
 		}
 	}
 
 	public boolean remove (int key, long value) {
-		int bucket = getBucket(key);
-		try (var __ = writeAt(bucket)){
-			return maps[bucket].remove(key, value);
+		try (var lock = writeKey(key)){
+			return maps[lock.bucket()].remove(key, value);
+		}
+	}
+
+	/** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+	public void putAll (int[] keys, long[] values) {
+		putAll(keys, values, false);
+	}
+
+	/** @param parallel different buckets are written by different ForkJoin workers */
+	@SuppressWarnings("try")
+	public void putAll (int[] keys, long[] values, boolean parallel) {
+		checkBatch(keys.length, values.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					Int2LongOpenHashMap map = maps[bucket];
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						int k = g.keyIndex(i);
+						map.put(keys[k], values[k]);
+					}
+				}
+				return 0;
+			});
+		}
+	}
+
+	/**
+	 Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+	 @return number of removed keys
+	 */
+	public int removeAll (int[] keys) {
+		return removeAll(keys, false);
+	}
+
+	/** @param parallel different buckets are written by different ForkJoin workers */
+	@SuppressWarnings("try")
+	public int removeAll (int[] keys, boolean parallel) {
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			return forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					Int2LongOpenHashMap map = maps[bucket];
+					int size = map.size();
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+						map.remove(keys[g.keyIndex(i)]);
+					return size - map.size();
+				}
+			});
 		}
 	}
 
 	public long computeIfAbsent (int key, Int2LongFunction mappingFunction) {
-		int bucket = getBucket(key);
-		try (var __ = writeAt(bucket)){
-			return maps[bucket].computeIfAbsent(key, mappingFunction);
+		try (var lock = writeKey(key)){
+			return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
 		}
 	}
 
 	public long computeIfPresent(int key, BiFunction<Integer, Long, Long> mappingFunction) {
-		int bucket = getBucket(key);
-		try (var __ = writeAt(bucket)){
-			return maps[bucket].computeIfPresent(key, mappingFunction);
+		try (var lock = writeKey(key)){
+			return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
 		}
 	}
 
+	/**
+	 Primitive {@link java.util.Map#compute} without boxing.
+	 An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+	 @return new value
+	 */
+	public long computeLong (int key, IntLongToLongFunction remappingFunction) {
+		try (var lock = writeKey(key)){
+			Int2LongOpenHashMap map = maps[lock.bucket()];
+			long newValue = remappingFunction.applyAsLong(key, map.getOrDefault(key, defaultValue));
+			map.put(key, newValue);
+			return newValue;
+		}
+	}
+
+	/**
+	 Primitive {@link #computeIfPresent} without boxing.
+	 @return new value or {@link #getDefaultValue()} if the key is absent
+	 */
+	public long computeIfPresentLong (int key, IntLongToLongFunction remappingFunction) {
+		try (var lock = writeKey(key)){
+			Int2LongOpenHashMap map = maps[lock.bucket()];
+			if (!map.containsKey(key))
+				return defaultValue;
+			long newValue = remappingFunction.applyAsLong(key, map.get(key));
+			map.put(key, newValue);
+			return newValue;
+		}
+	}
+
+	/**
+	 Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+	 @return new value
+	 */
+	public long mergeLong (int key, long value, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			return maps[lock.bucket()].mergeLong(key, value, remappingFunction);
+		}
+	}
+
+	/**
+	 Adds the increment to the key's value (to 0 if the key is absent).
+	 @return previous value, 0 if the key was absent
+	 @see Int2LongOpenHashMap#addTo
+	 */
+	public long addTo (int key, long increment) {
+		try (var lock = writeKey(key)){
+			return maps[lock.bucket()].addTo(key, increment);
+		}
+	}
+
+	/**
+	 Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+	 The action must not modify this map.
+	 */
+	public void forEach (IntLongConsumer action) {
+		forEach(action, Integer.MAX_VALUE);
+	}
+
+	/** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+	@SuppressWarnings("try")
+	public void forEach (IntLongConsumer action, int maxHold) {
+		try (var __ = lockLayout()){
+			for (int bucket = 0; bucket < numBuckets(); bucket++)
+				forEachAt(bucket, maxHold, action);
+		}
+	}
+
+	/** One bucket of {@link #forEach(IntLongConsumer, int)} */
+	protected void forEachAt (int bucket, int maxHold, IntLongConsumer action) {
+		forEachAt(bucket, maxHold, b->maps[b].int2LongEntrySet().fastIterator(), e->action.accept(e.getIntKey(), e.getLongValue()));
+	}
+
+	/** @see #forEach(IntLongConsumer) */
+	public void forEachKey (IntConsumer action) {
+		forEachKey(action, Integer.MAX_VALUE);
+	}
+
+	public void forEachKey (IntConsumer action, int maxHold) {
+		forEach((key, value)->action.accept(key), maxHold);
+	}
+
+	/** @see #forEach(IntLongConsumer) */
+	public void forEachValue (LongConsumer action) {
+		forEachValue(action, Integer.MAX_VALUE);
+	}
+
+	public void forEachValue (LongConsumer action, int maxHold) {
+		forEach((key, value)->action.accept(value), maxHold);
+	}
+
+	/**
+	 Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+	 Weakly consistent: every bucket is copied under its read lock.
+	 */
+	public IntStream keys () {
+		int numBuckets = numBuckets();
+		return StreamSupport.intStream(new BucketSpliterator.OfInt(numBuckets, size(), BucketSpliterator.KEYS,
+			(sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+	}
+
+	/** @see #keys() */
+	public LongStream values () {
+		int numBuckets = numBuckets();
+		return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.VALUES,
+			(sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+	}
+
+	/** Immutable entries ({@link AbstractInt2LongMap.BasicEntry}) @see #keys() */
+	public Stream<Int2LongMap.Entry> entries () {
+		int numBuckets = numBuckets();
+		return StreamSupport.stream(new BucketSpliterator.OfRef<Int2LongMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+			(sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractInt2LongMap.BasicEntry(key, value))))), false);
+	}
+
 	public static PrimitiveMapBuilder<ConcurrentIntLongMap,Long> newBuilder () {
 		return new PrimitiveMapBuilder<>(){
 			@Override
 			public ConcurrentIntLongMap build () {
+				requireFastutilBuckets();
 				long def = super.defaultValue != null ? super.defaultValue : 0;
 				return switch (mapMode){
 					case BUSY_WAITING -> new ConcurrentBusyWaitingIntLongMap(buckets, initialCapacity, loadFactor, def);
 					case BLOCKING -> new ConcurrentIntLongMap(buckets, initialCapacity, loadFactor, def);
+					case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentIntLongMap(buckets, initialCapacity, loadFactor, def, mapMode);
+					case OPTIMISTIC -> new ConcurrentOptimisticIntLongMap(buckets, initialCapacity, loadFactor, def);
+					case COPY_ON_WRITE -> new ConcurrentCopyOnWriteIntLongMap(buckets, initialCapacity, loadFactor, def);
+					case LEFT_RIGHT -> new ConcurrentLeftRightIntLongMap(buckets, initialCapacity, loadFactor, def);
+					case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
 				};
 			}
 		};
@@ -0,0 +1,195 @@
+package com.trivago.fastutilconcurrentwrapper.intkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ Striped concurrent set: fastutil {@link IntOpenHashSet} per bucket, guarded by the bucket lock.
+ No value per key ⇒ 4 bytes per entry less than {@link ConcurrentIntIntMap} with a dummy value.
+*/
+public class ConcurrentIntSet extends PrimitiveConcurrentMap<Integer,Boolean> {
+	protected final IntOpenHashSet[] sets;
+
+	public ConcurrentIntSet (int numBuckets, int initialCapacity, float loadFactor) {
+		this(numBuckets, initialCapacity, loadFactor, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}//new
+
+	public ConcurrentIntSet (int numBuckets, int initialCapacity, float loadFactor, PrimitiveMapBuilder.MapMode mapMode) {
+		super(numBuckets, mapMode);
+		if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE)
+			throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
+		if (mapMode == PrimitiveMapBuilder.MapMode.COPY_ON_WRITE || mapMode == PrimitiveMapBuilder.MapMode.LEFT_RIGHT)
+			throw new UnsupportedOperationException(mapMode +" is implemented by the maps only");
+		this.sets = new IntOpenHashSet[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			sets[i] = new IntOpenHashSet(initialCapacity, loadFactor);
+	}//new
+
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		IntOpenHashSet set = sets[bucket];
+		out.writeInt(set.size());
+		for (IntIterator it = set.iterator(); it.hasNext(); )
+			out.writeInt(it.nextInt());
+	}
+
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		IntOpenHashSet set = bucket >= 0 ? sets[bucket] : null;
+		for (int i = 0, n = in.readInt(); i < n; i++){
+			int key = in.readInt();
+			if (set != null)
+				set.add(key);
+			else
+				add(key);
+		}
+	}
+
+	@SuppressWarnings("try")
+	public boolean contains (int key) {
+		int bucket = getBucket(key);
+		try (var __ = readAt(bucket)){
+			return sets[bucket].contains(key);
+		}
+	}
+
+	/** @return true if the key was added (wasn't in the set) */
+	@SuppressWarnings("try")
+	public boolean add (int key) {
+		int bucket = getBucket(key);
+		try (var __ = writeAt(bucket)){
+			return sets[bucket].add(key);
+		}
+	}
+
+	/** @return true if the key was removed */
+	@SuppressWarnings("try")
+	public boolean remove (int key) {
+		int bucket = getBucket(key);
+		try (var __ = writeAt(bucket)){
+			return sets[bucket].remove(key);
+		}
+	}
+
+	/**
+	 Batch {@link #contains}: {@code out[i] = contains(keys[i])}.
+	 Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+	 */
+	@SuppressWarnings("try")
+	public void contains (int[] keys, boolean[] out) {
+		checkBatch(keys.length, out.length);
+		BucketGroups g = groupByBucket(keys);
+		for (int bucket = 0; bucket < sets.length; bucket++){
+			int from = g.from(bucket), to = g.to(bucket);
+			if (from == to)
+				continue;
+			try (var __ = readAt(bucket)){
+				IntOpenHashSet set = sets[bucket];
+				for (int i = from; i < to; i++){
+					int k = g.keyIndex(i);
+					out[k] = set.contains(keys[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 Batch {@link #add}: one write lock hold per bucket
+	 @return number of added keys
+	 */
+	public int addAll (int[] keys) {
+		return addAll(keys, false);
+	}
+
+	/** @param parallel different buckets are written by different ForkJoin workers */
+	@SuppressWarnings("try")
+	public int addAll (int[] keys, boolean parallel) {
+		BucketGroups g = groupByBucket(keys, parallel);
+		return forEachBucket(g, parallel, bucket->{
+			try (var __ = writeAt(bucket)){
+				IntOpenHashSet set = sets[bucket];
+				int size = set.size();
+				for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+					set.add(keys[g.keyIndex(i)]);
+				return set.size() - size;
+			}
+		});
+	}
+
+	/**
+	 Batch {@link #remove}: one write lock hold per bucket
+	 @return number of removed keys
+	 */
+	public int removeAll (int[] keys) {
+		return removeAll(keys, false);
+	}
+
+	/** @param parallel different buckets are written by different ForkJoin workers */
+	@SuppressWarnings("try")
+	public int removeAll (int[] keys, boolean parallel) {
+		BucketGroups g = groupByBucket(keys, parallel);
+		return forEachBucket(g, parallel, bucket->{
+			try (var __ = writeAt(bucket)){
+				IntOpenHashSet set = sets[bucket];
+				int size = set.size();
+				for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+					set.remove(keys[g.keyIndex(i)]);
+				return size - set.size();
+			}
+		});
+	}
+
+	/**
+	 Bucket by bucket under the bucket's read lock: a consistent view of every bucket, not of the whole set.
+	 The action must not modify this set (the read lock is held).
+	 @param parallel different buckets on different {@link java.util.concurrent.ForkJoinPool#commonPool()} workers ⇒ action must be thread-safe
+	 */
+	@SuppressWarnings("try")
+	public void forEach (IntConsumer action, boolean parallel) {
+		IntStream buckets = IntStream.range(0, sets.length);
+		(parallel ? buckets.parallel() : buckets).forEach(bucket->{
+			try (var __ = readAt(bucket)){
+				sets[bucket].forEach(action);
+			}
+		});
+	}
+
+	public void forEach (IntConsumer action) {
+		forEach(action, false);
+	}
+
+	@Override
+	protected int bucketSize (int bucket) {
+		return sets[bucket].size();
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void clear () {
+		for (int i = 0; i < sets.length; i++){
+			try (var __ = writeAt(i)){
+				sets[i].clear();
+			}
+		}
+	}
+
+	/** {@link PrimitiveMapBuilder#withDefaultValue} is ignored */
+	public static PrimitiveMapBuilder<ConcurrentIntSet,Void> newBuilder () {
+		return new PrimitiveMapBuilder<>(){
+			@Override
+			public ConcurrentIntSet build () {
+				requireFastutilBuckets();
+				return new ConcurrentIntSet(buckets, initialCapacity, loadFactor, mapMode);
+			}
+		};
+	}
+}
\ No newline at end of file
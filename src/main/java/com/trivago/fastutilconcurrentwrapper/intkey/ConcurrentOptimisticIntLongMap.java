@@ -0,0 +1,70 @@
+package com.trivago.fastutilconcurrentwrapper.intkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.OptimisticProbe;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+
+/**
+ {@link PrimitiveMapBuilder.MapMode#OPTIMISTIC}: {@link #get} and {@link #containsKey} read the bucket without locking
+ and {@link #validate} the stamp afterwards; on a concurrent write they retry under the read lock.
+ The buckets are {@link Table}s: their lookup probes at most capacity slots of the key array as read ⇒ it also ends
+ on a bucket being rehashed (grown, or shrunk by {@code remove}) or cleared, where fastutil's own lookup can spin.
+ @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+*/
+public class ConcurrentOptimisticIntLongMap extends ConcurrentIntLongMap {
+	public ConcurrentOptimisticIntLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.OPTIMISTIC);
+	}//new
+
+	@Override
+	protected Int2LongOpenHashMap newMap (int expected, float loadFactor) {
+		return new Table(expected, loadFactor);
+	}
+
+	@Override
+	public boolean containsKey (int key) {
+		var stripe = bucketOf(key);
+		long stamp = tryOptimisticRead(stripe);
+		if (stamp != 0){
+			try {
+				int slot = ((Table) maps[stripe.bucket()]).slot(key);
+				if (slot != OptimisticProbe.TORN && validate(stripe, stamp))
+					return slot >= 0;
+			} catch (RuntimeException ignore){}// torn read of a concurrently rehashed bucket
+		}
+		return super.containsKey(key);
+	}
+
+	@Override
+	public long get (int key) {
+		var stripe = bucketOf(key);
+		long stamp = tryOptimisticRead(stripe);
+		if (stamp != 0){
+			try {
+				var map = (Table) maps[stripe.bucket()];
+				int slot = map.slot(key);
+				if (slot != OptimisticProbe.TORN){
+					long result = slot >= 0 ? map.valueAt(slot) : defaultValue;
+					if (validate(stripe, stamp))
+						return result;
+				}
+			} catch (RuntimeException ignore){}// torn read of a concurrently rehashed bucket
+		}
+		return super.get(key);
+	}
+
+	/** Bucket map with the bounded lookup of {@link OptimisticProbe} */
+	static final class Table extends Int2LongOpenHashMap {
+		Table (int expected, float loadFactor){ super(expected, loadFactor); }//new
+
+		int slot (int k){ return OptimisticProbe.slot(key, containsNullKey, k); }
+
+		/** @param slot found by {@link #slot}: out of bounds if the value array has been replaced by a smaller one */
+		long valueAt (int slot){ return value[slot]; }
+	}
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.trivago.fastutilconcurrentwrapper.intkey;
 
 import com.trivago.fastutilconcurrentwrapper.objkey.SynchronizedObj2ObjLinkedHashMap;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock;
 import it.unimi.dsi.fastutil.ints.Int2ObjectFunction;
@@ -15,7 +16,11 @@ import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectSortedSet;
 import org.jspecify.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -31,13 +36,24 @@ import java.util.function.ObjIntConsumer;
 */
 public class SynchronizedInt2ObjLinkedHashMap<V> implements Int2ObjectSortedMap<V> {
 	protected final Int2ObjectLinkedOpenHashMap<V> m;
-	protected final CloseableReadWriteLock lock = new CloseableReadWriteLock();
+	protected final CloseableReadWriteLock lock;
+
+	/** @param lock e.g. a {@link com.trivago.fastutilconcurrentwrapper.util.ReaderBiasedReadWriteLock} for read-mostly maps */
+	public SynchronizedInt2ObjLinkedHashMap (int expected, float f, CloseableReadWriteLock lock) {
+		this(new Int2ObjectLinkedOpenHashMap<>(expected, f), lock);
+	}//new
+
+	/** @param m empty map of a subclass: e.g. one exposing its table */
+	protected SynchronizedInt2ObjLinkedHashMap (Int2ObjectLinkedOpenHashMap<V> m, CloseableReadWriteLock lock) {
+		this.m = m;
+		this.lock = Objects.requireNonNull(lock);
+	}//new
 
 	public SynchronizedInt2ObjLinkedHashMap (int expected, float f) {
-		m = new Int2ObjectLinkedOpenHashMap<>(expected, f);
+		this(expected, f, new CloseableReadWriteLock());
 	}//new
 
-	public SynchronizedInt2ObjLinkedHashMap (){ m = new Int2ObjectLinkedOpenHashMap<>(); }//new
+	public SynchronizedInt2ObjLinkedHashMap (){ m = new Int2ObjectLinkedOpenHashMap<>(); lock = new CloseableReadWriteLock(); }//new
 
 	protected CloseableLock read () {
 		return lock.read();
@@ -55,6 +71,38 @@ public class SynchronizedInt2ObjLinkedHashMap<V> implements Int2ObjectSortedMap<
 		try (var __ = read()){ return m.isEmpty(); }
 	}
 
+	/**
+	 Binary snapshot (see {@link Snapshot}) in iteration order: one block, encoded under the read lock.
+	 Values (and object keys) by Java serialization. The stream is not closed.
+	 */
+	@SuppressWarnings("try")
+	public void writeTo (OutputStream out) throws IOException {
+		Snapshot.write(out, 1, true, (block, o)->{
+			try (var __ = read()){
+				o.writeInt(m.size());
+				for (var it = m.int2ObjectEntrySet().fastIterator(); it.hasNext(); ){
+					var e = it.next();
+					o.writeInt(e.getIntKey());
+					o.writeObject(e.getValue());
+				}
+			}
+		});
+	}
+
+	/** {@link #put}s the entries of a {@link #writeTo} snapshot in their order: restored sequentially */
+	@SuppressWarnings("try")
+	public void readFrom (InputStream in) throws IOException {
+		Snapshot.read(in, true, false, (block, blocks, i)->{
+			for (int j = 0, n = i.readInt(); j < n; j++){
+				int key = i.readInt();
+				V value = Snapshot.readObject(i);
+				try (var __ = write()){
+					m.put(key, value);
+				}
+			}
+		});
+	}
+
 	public int[] keyArray () {
 		try (var __ = read()){ return m.keySet().toIntArray(); }
 	}
@@ -1,131 +1,10 @@
 package com.trivago.fastutilconcurrentwrapper.longkey;
 
-import it.unimi.dsi.fastutil.longs.Long2IntFunction;
-
-import java.util.concurrent.locks.Lock;
-import java.util.function.BiFunction;
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
 
+/** {@link PrimitiveMapBuilder.MapMode#BUSY_WAITING}: bucket locks are acquired by spinning on tryLock (see readAt/writeAt) */
 public class ConcurrentBusyWaitingLongIntMap extends ConcurrentLongIntMap {
     public ConcurrentBusyWaitingLongIntMap (int numBuckets, int initialCapacity, float loadFactor, int defaultValue) {
-        super(numBuckets, initialCapacity, loadFactor, defaultValue);
-    }
-
-    @Override
-    public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].containsKey(key);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public int get(long key) {
-        int bucket = getBucket(key);
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].getOrDefault(key, defaultValue);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public int put(long key, int value) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].put(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public int remove(long key) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public boolean remove(long key, int value) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public int computeIfAbsent(long key, Long2IntFunction mappingFunction) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfAbsent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public int computeIfPresent(long key, BiFunction<Long, Integer, Integer> mappingFunction) {
-        int bucket = getBucket(key);
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfPresent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
+        super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BUSY_WAITING);
+    }//new
 }
\ No newline at end of file
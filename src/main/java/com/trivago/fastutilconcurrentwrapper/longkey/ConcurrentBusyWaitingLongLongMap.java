@@ -1,138 +1,10 @@
 package com.trivago.fastutilconcurrentwrapper.longkey;
 
-import it.unimi.dsi.fastutil.longs.Long2LongFunction;
-
-import java.util.concurrent.locks.Lock;
-import java.util.function.BiFunction;
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
 
+/** {@link PrimitiveMapBuilder.MapMode#BUSY_WAITING}: bucket locks are acquired by spinning on tryLock (see readAt/writeAt) */
 public class ConcurrentBusyWaitingLongLongMap extends ConcurrentLongLongMap {
     public ConcurrentBusyWaitingLongLongMap (int numBuckets, int initialCapacity, float loadFactor, long defaultValue) {
-        super(numBuckets, initialCapacity, loadFactor, defaultValue);
-    }
-
-    @Override
-    public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].containsKey(key);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public long get(long key) {
-        int bucket = getBucket(key);
-
-        Lock readLock = readLock(bucket);
-
-        while (true) {
-            if (readLock.tryLock()) {
-                try {
-                    return maps[bucket].getOrDefault(key, defaultValue);
-                } finally {
-                    readLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public long put(long key, long value) {
-        int bucket = getBucket(key);
-
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].put(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public long remove(long key) {
-        int bucket = getBucket(key);
-
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public boolean remove(long key, long value) {
-        int bucket = getBucket(key);
-
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].remove(key, value);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public long computeIfAbsent(long key, Long2LongFunction mappingFunction) {
-        int bucket = getBucket(key);
-
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfAbsent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
-
-    @Override
-    public long computeIfPresent(long key, BiFunction<Long, Long, Long> mappingFunction) {
-        int bucket = getBucket(key);
-
-        Lock writeLock = writeLock(bucket);
-
-        while (true) {
-            if (writeLock.tryLock()) {
-                try {
-                    return maps[bucket].computeIfPresent(key, mappingFunction);
-                } finally {
-                    writeLock.unlock();
-                }
-            }
-            Thread.onSpinWait();
-        }
-    }
+        super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BUSY_WAITING);
+    }//new
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
+
+/**
+ {@link PrimitiveMapBuilder.MapMode#COPY_ON_WRITE}: {@link #get} and {@link #containsKey} read the bucket's published
+ immutable copy without any lock (wait-free). Every write clones its bucket under the write lock and publishes the clone on unlock.
+ @see java.util.concurrent.CopyOnWriteArrayList
+*/
+public class ConcurrentCopyOnWriteLongFloatMap extends ConcurrentLongFloatMap {
+	public ConcurrentCopyOnWriteLongFloatMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		float defaultValue
+	){
+		super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.COPY_ON_WRITE);
+		for (int i = 0; i < numBuckets; i++)
+			writeAt(i).close();// publishes the empty buckets
+	}//new
+
+	@Override
+	protected void copyBucket (int bucket) {
+		maps[bucket] = maps[bucket].clone();
+	}
+
+	@Override
+	public boolean containsKey (long key) {
+		var map = (Long2FloatOpenHashMap) publishedBucket(key);
+		return map != null ? map.containsKey(key) : super.containsKey(key);
+	}
+
+	@Override
+	public float get (long key) {
+		var map = (Long2FloatOpenHashMap) publishedBucket(key);
+		return map != null ? map.getOrDefault(key, defaultValue) : super.get(key);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.util.SpinLockWord;
+import com.trivago.fastutilconcurrentwrapper.util.SpinReadWriteLocks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ {@link ConcurrentIncrementalLongLongMap} whose bucket is one object: its {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} lock word,
+ size, mask and the {@code long[]} of adjacent key/value slots.
+ A lookup of {@link ConcurrentLongLongMap} goes lock → Sync, then map → key[] and value[]; here it goes bucket → slots:
+ one or two dependent cache misses instead of four or five (for big maps, where nothing but the bucket arrays stays cached).
+ The layout indexes this bucket array itself: the lock word is a field of the bucket ({@link SpinLockWord}), no lock array in between.
+
+ Spin locks: not reentrant, for short critical sections (like {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN}).
+
+ @see SpinLockWord
+ @see SpinReadWriteLocks
+*/
+public class ConcurrentFusedLongLongMap extends ConcurrentIncrementalLongLongMap {
+	public ConcurrentFusedLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		this(buckets(numBuckets, initialCapacity, checkLoadFactor(loadFactor)), loadFactor, defaultValue);
+	}//new
+
+	private ConcurrentFusedLongLongMap (Bucket[] buckets, float loadFactor, long defaultValue) {
+		super(buckets, loadFactor, defaultValue);
+	}//new
+
+	private static Bucket[] buckets (int numBuckets, int initialCapacity, float loadFactor) {
+		if (numBuckets < 1 || numBuckets > 100_000_000)
+			throw new IllegalArgumentException("numBuckets must be between 1 and 100_000_000, but: "+ numBuckets);
+		Bucket[] buckets = new Bucket[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			buckets[i] = new Bucket(initialCapacity, loadFactor);
+		return buckets;
+	}
+
+	/** A table and the lock word that guards it */
+	static final class Bucket extends Table implements SpinLockWord {
+		private static final VarHandle LOCK;
+		static {
+			try {
+				LOCK = MethodHandles.lookup().findVarHandle(Bucket.class, "lock", long.class);
+			} catch (ReflectiveOperationException e){
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private volatile long lock;
+
+		Bucket (int expectedSize, float loadFactor){ super(expectedSize, loadFactor); }//new
+
+		@Override public long word (){ return lock; }
+		@Override public boolean casWord (long expected, long word){ return LOCK.compareAndSet(this, expected, word); }
+		@Override public void addWord (long delta){ LOCK.getAndAddRelease(this, delta); }
+	}
+
+	@Override
+	Table[] newTables (int numBuckets) {
+		Bucket[] buckets = new Bucket[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			buckets[i] = new Bucket(expectedSize(i, numBuckets), loadFactor);
+		return buckets;
+	}
+
+	/** The new buckets are their locks: {@link #newBuckets} has just installed them */
+	@Override
+	protected SpinLockWord[] spinBuckets () {
+		return (Bucket[]) tables;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,319 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.util.SpinLockWord;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.jspecify.annotations.Nullable;
+
+/**
+ On-heap open addressing table per bucket that grows without a pause: a full table becomes the "old" one,
+ every later write of the bucket moves {@link #MIGRATE_STEP} old slots into the new table (twice as large).
+ A grow costs a few slots per write instead of a rehash of the whole bucket under its write lock ⇒
+ readers of a bucket with millions of keys aren't stalled by it.
+
+ - Slots {@code [key, value]} are adjacent in one {@code long[]}: a lookup touches one cache line.
+ - Reads look into the new table, then into the old one; they never move anything (they hold the read lock only).
+ - A write moves its key out of the old table first ⇒ every key is in one table only, old slots are never rewritten
+ (a moved key is marked in a bitmap), probing in the old table stays valid.
+ - If a table fills up before the old one is drained, the rest of the old one is moved at once.
+ - Allocating (zeroing) the new array is still done under the write lock: it is a sequential fill, not a rehash.
+
+ @see it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap
+ @see ConcurrentOffHeapLongLongMap
+*/
+public class ConcurrentIncrementalLongLongMap extends TableLongLongMap<ConcurrentIncrementalLongLongMap.Table> {
+	/** Old slots moved by every write of a growing bucket */
+	public static final int MIGRATE_STEP = 16;
+	/** Slots of one table: a {@code long[]} of {@code 2 × capacity + 2} */
+	public static final int MAX_CAPACITY = 1 << 29;
+
+	public ConcurrentIncrementalLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}//new
+
+	/** @throws UnsupportedOperationException OPTIMISTIC, LOCK_FREE, COPY_ON_WRITE and LEFT_RIGHT mapMode */
+	public ConcurrentIncrementalLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	){
+		super(numBuckets, loadFactor, defaultValue, mapMode);
+		if (mapMode == PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+			throw new UnsupportedOperationException(mapMode +" has no optimistic read of incremental tables");
+		if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE)
+			throw new UnsupportedOperationException(mapMode +" has its own table: incremental resize is not supported");
+		if (mapMode == PrimitiveMapBuilder.MapMode.COPY_ON_WRITE || mapMode == PrimitiveMapBuilder.MapMode.LEFT_RIGHT)
+			throw new UnsupportedOperationException(mapMode +" needs fastutil buckets: incremental resize is not supported");
+		this.tables = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			tables[i] = new Table(initialCapacity, loadFactor);
+	}//new
+
+	/** {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} tables that hold their own lock words */
+	<B extends Table & SpinLockWord> ConcurrentIncrementalLongLongMap (B[] buckets, float loadFactor, long defaultValue) {
+		super(loadFactor, defaultValue, buckets);
+		this.tables = buckets;
+	}//new
+
+	/**
+	 One bucket: the current table and, while growing, the old one. Lock must be held!
+	 Iteration uses "positions": {@code [0, n)} current slots, then {@code [n, n + old capacity)} old slots.
+	 */
+	static class Table implements LongLongTable {
+		/** key, value, key, value…: {@link #n} slots, then the value of the 0 key */
+		long[] slots;
+		/** Capacity: a power of 2 */
+		int n;
+		private int mask;
+		private int maxFill;
+		/** Keys in {@link #slots} except 0 */
+		int used;
+		boolean containsZeroKey;
+
+		/** Previous slots, until every key has moved out; null if not growing */
+		long @Nullable [] old;
+		private int oldN;
+		private int oldMask;
+		/** Old slots below are moved */
+		private int cursor;
+		/** Old slots at or above the cursor whose key has moved (was written) */
+		private long @Nullable [] moved;
+		/** Keys still in the old table */
+		int oldUsed;
+
+		final int initialCapacity;
+		private final float loadFactor;
+
+		Table (int expectedSize, float loadFactor) {
+			this.loadFactor = loadFactor;
+			this.initialCapacity = Math.min(HashCommon.arraySize(Math.max(expectedSize, 2), loadFactor), MAX_CAPACITY);
+			allocate(initialCapacity);
+		}//new
+
+		private void allocate (int capacity) {
+			slots = new long[2 * capacity + 2];
+			n = capacity;
+			mask = capacity - 1;
+			maxFill = Math.min(HashCommon.maxFill(capacity, loadFactor), capacity - 1);
+		}
+
+		@Override public int size (){ return used + oldUsed + (containsZeroKey ? 1 : 0); }
+		@Override public boolean containsNullKey (){ return containsZeroKey; }
+
+		boolean growing (){ return old != null; }
+
+		long key (int slot){ return slots[slot << 1]; }
+		@Override public long value (int slot){ return slots[(slot << 1) + 1]; }
+		@Override public void setValue (int slot, long value){ slots[(slot << 1) + 1] = value; }
+		@Override public long zeroValue (){ return value(n); }
+
+		private void set (int slot, long key, long value) {
+			slots[slot << 1] = key;
+			slots[(slot << 1) + 1] = value;
+		}
+
+		/** Current table only. @return slot of the key, or {@code -freeSlot - 1} if absent */
+		int find (long key) {
+			if (key == 0)
+				return containsZeroKey ? n : -n - 1;
+			int slot = (int) HashCommon.mix(key) & mask;
+			for (long k; (k = key(slot)) != 0; slot = (slot + 1) & mask)
+				if (k == key)
+					return slot;
+			return -slot - 1;
+		}
+
+		/** @return old slot of the key if it is still there, else -1 */
+		private int findOld (long key) {
+			int slot = (int) HashCommon.mix(key) & oldMask;
+			for (long k; (k = old[slot << 1]) != 0; slot = (slot + 1) & oldMask)
+				if (k == key)
+					return slot >= cursor && (moved[slot >>> 6] & (1L << slot)) == 0 ? slot : -1;
+			return -1;
+		}
+
+		/** Read: both tables, nothing moves */
+		@Override
+		public long getOrDefault (long key, long defaultValue) {
+			int slot = find(key);
+			if (slot >= 0)
+				return value(slot);
+			if (old != null && key != 0){
+				int oldSlot = findOld(key);
+				if (oldSlot >= 0)
+					return old[(oldSlot << 1) + 1];
+			}
+			return defaultValue;
+		}
+
+		@Override
+		public boolean containsKey (long key) {
+			return find(key) >= 0 || old != null && key != 0 && findOld(key) >= 0;
+		}
+
+		/**
+		 Write: moves a step of the old table and the key itself into the current table, then {@link #find}s it.
+		 Slot operations ({@link #insert}, {@link #setValue}, {@link #removeAt}) need this instead of {@link #find}.
+		 */
+		@Override
+		public int locate (long key) {
+			if (old != null){
+				migrate(MIGRATE_STEP);
+				if (old != null && key != 0){
+					int oldSlot = findOld(key);
+					if (oldSlot >= 0){
+						moved[oldSlot >>> 6] |= 1L << oldSlot;
+						oldUsed--;
+						return place(key, old[(oldSlot << 1) + 1]);
+					}
+				}
+			}
+			return find(key);
+		}
+
+		/** Moves up to {@code count} old slots */
+		private void migrate (int count) {
+			int end = Math.min(cursor + count, oldN);
+			for (int slot = cursor; slot < end; slot++){
+				long key = old[slot << 1];
+				if (key != 0 && (moved[slot >>> 6] & (1L << slot)) == 0){
+					place(key, old[(slot << 1) + 1]);
+					oldUsed--;
+				}
+			}
+			cursor = end;
+			if (cursor == oldN){
+				old = null;
+				moved = null;
+			}
+		}
+
+		/** Moves a key of the old table: it is absent from the current one, which has room (the total is below maxFill) */
+		private int place (long key, long value) {
+			int slot = (int) HashCommon.mix(key) & mask;
+			while (key(slot) != 0)
+				slot = (slot + 1) & mask;
+			set(slot, key, value);
+			used++;
+			return slot;
+		}
+
+		/** @param free {@code -locate(key) - 1} */
+		@Override
+		public void insert (int free, long key, long value) {
+			if (key == 0){
+				containsZeroKey = true;
+				setValue(n, value);
+				return;
+			}
+			if (used + oldUsed >= maxFill){
+				if (n >= MAX_CAPACITY)
+					throw new IllegalStateException("Bucket is full (%d keys): use more buckets".formatted(used + oldUsed));
+				grow();
+				free = -find(key) - 1;
+			}
+			set(free, key, value);
+			used++;
+		}
+
+		/** The current table becomes the old one; a (rare) unfinished grow is completed first */
+		private void grow () {
+			if (old != null)
+				migrate(oldN);
+			long zeroValue = value(n);
+			old = slots;
+			oldN = n;
+			oldMask = mask;
+			oldUsed = used;
+			cursor = 0;
+			moved = new long[(oldN + 63) >>> 6];
+			allocate(n * 2);
+			used = 0;
+			setValue(n, zeroValue);
+		}
+
+		/** Current table only: the key was {@link #locate}d */
+		@Override
+		public void removeAt (int slot) {
+			if (slot == n){
+				containsZeroKey = false;
+				return;
+			}
+			used--;
+			// shift back the keys that can't be found anymore: see Long2LongOpenHashMap#shiftKeys
+			for (int pos = slot, last;;){
+				pos = ((last = pos) + 1) & mask;
+				long curr;
+				for (;;){
+					if ((curr = key(pos)) == 0){
+						set(last, 0, 0);
+						return;
+					}
+					int home = (int) HashCommon.mix(curr) & mask;
+					if (last <= pos ? last >= home || home > pos : last >= home && home > pos)
+						break;
+					pos = (pos + 1) & mask;
+				}
+				set(last, curr, value(pos));
+			}
+		}
+
+		/** First position with a key from {@code pos} on (the 0 key has none), -1 if none */
+		@Override
+		public int next (int pos) {
+			for (; pos < n; pos++)
+				if (key(pos) != 0)
+					return pos;
+			if (old == null)
+				return -1;
+			for (int slot = Math.max(pos - n, cursor); slot < oldN; slot++)
+				if (old[slot << 1] != 0 && (moved[slot >>> 6] & (1L << slot)) == 0)
+					return n + slot;
+			return -1;
+		}
+
+		@Override public long keyAt (int pos){ return pos < n ? key(pos) : old[(pos - n) << 1]; }
+		@Override public long valueAt (int pos){ return pos < n ? value(pos) : old[((pos - n) << 1) + 1]; }
+
+		/** Back to the initial capacity */
+		@Override
+		public void clear () {
+			allocate(initialCapacity);
+			used = 0;
+			containsZeroKey = false;
+			old = null;
+			moved = null;
+			oldUsed = 0;
+		}
+	}
+
+	@Override
+	Table[] newTables (int numBuckets) {
+		Table[] t = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			t[i] = new Table(expectedSize(i, numBuckets), loadFactor);
+		return t;
+	}
+
+	/** Buckets that are moving keys into a grown table (diagnostics) */
+	@SuppressWarnings("try")
+	public int growingBuckets () {
+		int count = 0;
+		try (var __ = lockLayout()){
+			for (int i = 0; i < tables.length; i++){
+				try (var ___ = readAt(i)){
+					if (tables[i].growing())
+						count++;
+				}
+			}
+		}
+		return count;
+	}
+}
\ No newline at end of file
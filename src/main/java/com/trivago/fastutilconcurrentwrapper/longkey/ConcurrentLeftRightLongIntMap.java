@@ -0,0 +1,74 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.jspecify.annotations.Nullable;
+
+/**
+ {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT}: {@link #get} and {@link #containsKey} read the published copy of the bucket
+ without any lock (wait-free). A writer changes {@link #maps} in place; on unlock it becomes the published copy and the
+ change is applied to the other one ({@link #copies}) as soon as its last reader has left.
+*/
+public class ConcurrentLeftRightLongIntMap extends ConcurrentLongIntMap {
+	/** The published copy of every bucket: the same entries as {@link #maps} when no write is in progress */
+	protected Long2IntOpenHashMap[] copies;
+
+	public ConcurrentLeftRightLongIntMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		int defaultValue
+	){
+		super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.LEFT_RIGHT);
+		this.copies = new Long2IntOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			copies[i] = maps[i].clone();
+		for (int i = 0; i < numBuckets; i++)
+			writeAt(i).close();// publishes the empty buckets
+	}//new
+
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		Object[] old = super.newBuckets(numBuckets);
+		copies = new Long2IntOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			copies[i] = maps[i].clone();
+		return old;
+	}
+
+	@Override
+	protected void syncCopy (int bucket, boolean all, long key, @Nullable Object objectKey) {
+		Long2IntOpenHashMap written = maps[bucket], copy = copies[bucket];
+		if (all){
+			copy.clear();
+			copy.putAll(written);
+		} else {
+			if (written.containsKey(key))
+				copy.put(key, written.getOrDefault(key, defaultValue));
+			else
+				copy.remove(key);
+		}
+		maps[bucket] = copy;
+		copies[bucket] = written;
+	}
+
+	@Override
+	public boolean containsKey (long key) {
+		var reader = arrive(key);
+		if (reader == null)
+			return super.containsKey(key);
+		try (reader){
+			return ((Long2IntOpenHashMap) reader.map()).containsKey(key);
+		}
+	}
+
+	@Override
+	public int get (long key) {
+		var reader = arrive(key);
+		if (reader == null)
+			return super.get(key);
+		try (reader){
+			return ((Long2IntOpenHashMap) reader.map()).getOrDefault(key, defaultValue);
+		}
+	}
+}
\ No newline at end of file
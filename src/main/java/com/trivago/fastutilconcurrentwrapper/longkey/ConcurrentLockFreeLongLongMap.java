@@ -0,0 +1,557 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.util.LongLongConsumer;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2LongFunction;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ {@link PrimitiveMapBuilder.MapMode#LOCK_FREE}: open addressing (linear probing) over {@code long[]} slots
+ {@code [key, value, key, value…]}; every change is a single VarHandle CAS on a value. No locks, no boxing.
+
+ - A key stays in its slot until the table is migrated ⇒ a reader never sees a value of another key.
+ - {@link #remove} leaves a tombstone; tombstones are dropped by the next migration.
+ - Migration (grow or purge) is done by the thread that crossed the threshold, slot by slot:
+ each copied slot is frozen with {@link #MOVED}, other threads keep working on not yet frozen slots.
+ - {@link #NO_VALUE} and {@link #MOVED} are reserved: they can't be stored as values.
+ - {@code mappingFunction} of compute* can be called by several racing threads; only one result wins.
+
+ @see org.jctools.maps.NonBlockingHashMapLong
+*/
+public class ConcurrentLockFreeLongLongMap extends ConcurrentLongLongMap {
+	/** Reserved value: empty slot or tombstone */
+	public static final long NO_VALUE = Long.MIN_VALUE;
+	/** Reserved value: the slot has been copied into the next table */
+	public static final long MOVED = Long.MIN_VALUE + 1;
+
+	static final int MAX_CAPACITY = 1 << 29;// slots ⇒ long[1 << 30]
+	static final int ABSENT = -1;
+	static final int FULL = -2;
+
+	private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle TABLES = MethodHandles.arrayElementVarHandle(Table[].class);
+	private static final VarHandle NEXT;
+	static {
+		try {
+			NEXT = MethodHandles.lookup().findVarHandle(Table.class, "next", Table.class);
+		} catch (ReflectiveOperationException e){
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Table[] tables;
+	/** 0 marks an empty slot ⇒ the 0 key lives in its own single-slot table */
+	private final Table zeroKey = new Table(1, 0.5f);
+	private final float loadFactor;
+	private final LongAdder size = new LongAdder();
+
+	public ConcurrentLockFreeLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		super(numBuckets, defaultValue, PrimitiveMapBuilder.MapMode.LOCK_FREE);
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("Load factor must be greater than 0 and smaller than 1, but: "+ loadFactor);
+		this.loadFactor = loadFactor;
+		this.tables = new Table[numBuckets];
+		int capacity = Math.min(HashCommon.arraySize(Math.max(initialCapacity, 2), loadFactor), MAX_CAPACITY);
+		for (int i = 0; i < numBuckets; i++)
+			tables[i] = new Table(capacity, loadFactor);
+	}//new
+
+	static final class Table {
+		/** key, value, key, value… */
+		final long[] slots;
+		final int mask;
+		final int threshold;
+		/** Claimed key slots, including tombstones */
+		final AtomicInteger used = new AtomicInteger();
+		volatile Table next;
+		volatile boolean migrated;
+
+		Table (int capacity, float loadFactor){
+			slots = new long[capacity << 1];
+			for (int i = 1; i < slots.length; i += 2)
+				slots[i] = NO_VALUE;
+			mask = capacity - 1;
+			threshold = Math.min(HashCommon.maxFill(capacity, loadFactor), capacity - 1);
+		}//new
+
+		/** @return index of the key's value in {@link #slots}, {@link #ABSENT} or {@link #FULL} */
+		int indexOf (long key, boolean claim) {
+			if (key == 0)
+				return 1;// zeroKey
+			int pos = (int) HashCommon.mix(key) & mask;
+			for (int probes = 0; probes <= mask; probes++, pos = (pos + 1) & mask){
+				int ki = pos << 1;
+				long k = (long) SLOTS.getAcquire(slots, ki);
+				if (k == 0){
+					if (!claim)
+						return ABSENT;
+					if (SLOTS.compareAndSet(slots, ki, 0L, key)){
+						used.incrementAndGet();
+						return ki + 1;
+					}
+					k = (long) SLOTS.getAcquire(slots, ki);// somebody else has claimed the slot
+				}
+				if (k == key)
+					return ki + 1;
+			}
+			return FULL;
+		}
+	}
+
+	private Table table (long key, int bucket) {
+		return key == 0 ? zeroKey : (Table) TABLES.getAcquire(tables, bucket);
+	}
+
+	private static void checkValue (long value) {
+		if (value == NO_VALUE || value == MOVED)
+			throw new IllegalArgumentException("Reserved value can't be stored: "+ value);
+	}
+
+	/** @return value or {@link #NO_VALUE} */
+	private static long find (Table t, long key) {
+		for (; t != null; t = t.next){
+			int i = t.indexOf(key, false);
+			if (i == ABSENT)
+				return NO_VALUE;
+			if (i != FULL){
+				long v = (long) SLOTS.getAcquire(t.slots, i);
+				if (v != MOVED)
+					return v;
+			}
+		}
+		return NO_VALUE;
+	}
+
+	/** Without size accounting. @return previous value or {@link #NO_VALUE} */
+	private long store (int bucket, Table t, long key, long value) {
+		while (true){
+			int i = t.indexOf(key, true);
+			if (i == FULL){
+				t = nextOf(bucket, t);
+				continue;
+			}
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, value);
+				if (witness == v){
+					if (v == NO_VALUE)
+						inserted(bucket, t);
+					return v;
+				}
+				v = witness;
+			}
+			t = t.next;// frozen by migration
+		}
+	}
+
+	/** Without size accounting. @return previous value or {@link #NO_VALUE} */
+	private static long erase (Table t, long key) {
+		for (; t != null; t = t.next){
+			int i = t.indexOf(key, false);
+			if (i == ABSENT)
+				return NO_VALUE;
+			if (i == FULL)
+				continue;
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				if (v == NO_VALUE)
+					return NO_VALUE;
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, NO_VALUE);
+				if (witness == v)
+					return v;
+				v = witness;
+			}
+		}
+		return NO_VALUE;
+	}
+
+	private void inserted (int bucket, Table t) {
+		if (t.next == null && t.used.get() > t.threshold)
+			resize(bucket, t);
+	}
+
+	private Table nextOf (int bucket, Table t) {
+		if (t.next == null)
+			resize(bucket, t);
+		return t.next;
+	}
+
+	/** Grows (or just purges tombstones) and migrates the bucket's table in the calling thread */
+	private void resize (int bucket, Table t) {
+		if (t.next != null)
+			return;
+		int live = 0;
+		for (int i = 1; i < t.slots.length; i += 2){
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			if (v != NO_VALUE && v != MOVED)
+				live++;
+		}
+		int capacity = t.mask + 1;
+		if (live >= t.threshold >> 1){
+			if (capacity >= MAX_CAPACITY && live >= t.threshold)
+				throw new IllegalStateException("LOCK_FREE bucket is full: %d entries, capacity %d".formatted(live, capacity));
+			capacity = Math.min(capacity << 1, MAX_CAPACITY);
+		}
+		if (!NEXT.compareAndSet(t, null, new Table(capacity, loadFactor)))
+			return;// somebody else migrates
+		for (int i = 1; i < t.slots.length; i += 2)
+			transfer(bucket, t, i);
+		t.migrated = true;
+		for (Table root; (root = (Table) TABLES.getAcquire(tables, bucket)).migrated;)
+			TABLES.compareAndSet(tables, bucket, root, root.next);
+	}
+
+	/** Copies the slot into the next table and freezes it */
+	private void transfer (int bucket, Table t, int i) {
+		boolean copied = false;
+		long v = (long) SLOTS.getAcquire(t.slots, i);
+		while (v != MOVED){
+			long key = (long) SLOTS.getAcquire(t.slots, i - 1);
+			if (v != NO_VALUE){
+				store(bucket, t.next, key, v);
+				copied = true;
+			} else if (copied){
+				erase(t.next, key);// removed while being copied
+				copied = false;
+			}
+			long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, MOVED);
+			if (witness == v)
+				return;
+			v = witness;
+		}
+	}
+
+	@Override
+	public boolean containsKey (long key) {
+		return find(table(key, getBucket(key)), key) != NO_VALUE;
+	}
+
+	@Override
+	public long get (long key) {
+		long v = find(table(key, getBucket(key)), key);
+		return v != NO_VALUE ? v : defaultValue;
+	}
+
+	/** Nothing to group: there are no locks */
+	@Override
+	public void getAll (long[] keys, long[] out) {
+		checkBatch(keys.length, out.length);
+		for (int i = 0; i < keys.length; i++)
+			out[i] = get(keys[i]);
+	}
+
+	/** @throws IllegalArgumentException if value is {@link #NO_VALUE} or {@link #MOVED} */
+	@Override
+	public long put (long key, long value) {
+		checkValue(value);
+		int bucket = getBucket(key);
+		long v = store(bucket, table(key, bucket), key, value);
+		if (v != NO_VALUE)
+			return v;
+		size.increment();
+		return 0;// fastutil defRetValue
+	}
+
+	@Override
+	public long remove (long key) {
+		long v = erase(table(key, getBucket(key)), key);
+		if (v == NO_VALUE)
+			return 0;
+		size.decrement();
+		return v;
+	}
+
+	@Override
+	public boolean remove (long key, long value) {
+		for (Table t = table(key, getBucket(key)); t != null; t = t.next){
+			int i = t.indexOf(key, false);
+			if (i == ABSENT)
+				return false;
+			if (i == FULL)
+				continue;
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				if (v == NO_VALUE || v != value)
+					return false;
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, NO_VALUE);
+				if (witness == v){
+					size.decrement();
+					return true;
+				}
+				v = witness;
+			}
+		}
+		return false;
+	}
+
+	/** @param parallel if a key repeats in the batch, any of its values can win */
+	@Override
+	public void putAll (long[] keys, long[] values, boolean parallel) {
+		checkBatch(keys.length, values.length);
+		if (parallel){
+			IntStream.range(0, keys.length).parallel()
+				.forEach(i->put(keys[i], values[i]));
+		} else {
+			for (int i = 0; i < keys.length; i++)
+				put(keys[i], values[i]);
+		}
+	}
+
+	@Override
+	public int removeAll (long[] keys, boolean parallel) {
+		if (parallel)
+			return (int) Arrays.stream(keys).parallel().filter(this::erase).count();
+		int removed = 0;
+		for (long key : keys){
+			if (erase(key))
+				removed++;
+		}
+		return removed;
+	}
+
+	private boolean erase (long key) {
+		if (erase(table(key, getBucket(key)), key) == NO_VALUE)
+			return false;
+		size.decrement();
+		return true;
+	}
+
+	@Override
+	public long computeIfAbsent (long key, Long2LongFunction mappingFunction) {
+		int bucket = getBucket(key);
+		long value = NO_VALUE;// computed at most once per call
+		for (Table t = table(key, bucket);;){
+			int i = t.indexOf(key, true);
+			if (i == FULL){
+				t = nextOf(bucket, t);
+				continue;
+			}
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				if (v != NO_VALUE)
+					return v;
+				if (value == NO_VALUE){
+					value = mappingFunction.get(key);
+					checkValue(value);
+				}
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, NO_VALUE, value);
+				if (witness == NO_VALUE){
+					size.increment();
+					inserted(bucket, t);
+					return value;
+				}
+				v = witness;
+			}
+			t = t.next;
+		}
+	}
+
+	@Override
+	public long computeIfPresent (long key, BiFunction<Long,Long,Long> mappingFunction) {
+		for (Table t = table(key, getBucket(key)); t != null; t = t.next){
+			int i = t.indexOf(key, false);
+			if (i == ABSENT)
+				return 0;
+			if (i == FULL)
+				continue;
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				if (v == NO_VALUE)
+					return 0;
+				Long result = mappingFunction.apply(key, v);
+				long newValue = result != null ? result : NO_VALUE;
+				if (result != null)
+					checkValue(newValue);
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, newValue);
+				if (witness == v){
+					if (result != null)
+						return newValue;
+					size.decrement();
+					return 0;
+				}
+				v = witness;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public long computeLong (long key, LongBinaryOperator remappingFunction) {
+		return upsert(key, 0, remappingFunction, false);
+	}
+
+	@Override
+	public long mergeLong (long key, long value, LongBinaryOperator remappingFunction) {
+		checkValue(value);
+		return upsert(key, value, remappingFunction, true);
+	}
+
+	@Override
+	public long addTo (long key, long increment) {
+		return upsert(key, increment, Long::sum, true) - increment;
+	}
+
+	/** compute: {@code f(key, oldValue or defaultValue)}; merge: {@code absent ? value : f(oldValue, value)} */
+	private long upsert (long key, long value, LongBinaryOperator f, boolean merge) {
+		int bucket = getBucket(key);
+		for (Table t = table(key, bucket);;){
+			int i = t.indexOf(key, true);
+			if (i == FULL){
+				t = nextOf(bucket, t);
+				continue;
+			}
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				long newValue;
+				if (merge)
+					newValue = v != NO_VALUE ? f.applyAsLong(v, value) : value;
+				else
+					newValue = f.applyAsLong(key, v != NO_VALUE ? v : defaultValue);
+				checkValue(newValue);
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, newValue);
+				if (witness == v){
+					if (v == NO_VALUE){
+						size.increment();
+						inserted(bucket, t);
+					}
+					return newValue;
+				}
+				v = witness;
+			}
+			t = t.next;
+		}
+	}
+
+	@Override
+	public long computeIfPresentLong (long key, LongBinaryOperator remappingFunction) {
+		for (Table t = table(key, getBucket(key)); t != null; t = t.next){
+			int i = t.indexOf(key, false);
+			if (i == ABSENT)
+				return defaultValue;
+			if (i == FULL)
+				continue;
+			long v = (long) SLOTS.getAcquire(t.slots, i);
+			while (v != MOVED){
+				if (v == NO_VALUE)
+					return defaultValue;
+				long newValue = remappingFunction.applyAsLong(key, v);
+				checkValue(newValue);
+				long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, newValue);
+				if (witness == v)
+					return newValue;
+				v = witness;
+			}
+		}
+		return defaultValue;
+	}
+
+	/** Weakly consistent like {@link #forEachAt}: the bucket is collected first (no locks to hold) */
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		var entries = new LongArrayList();
+		forEachAt(bucket, Integer.MAX_VALUE, (key, value)->{
+			entries.add(key);
+			entries.add(value);
+		});
+		out.writeInt(entries.size() / 2);
+		for (int i = 0; i < entries.size(); i++)
+			out.writeLong(entries.getLong(i));
+	}
+
+	/** No bucket locks ⇒ always {@link #put} */
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		for (int i = 0, n = in.readInt(); i < n; i++){
+			long key = in.readLong();
+			put(key, in.readLong());
+		}
+	}
+
+	/**
+	 Weakly consistent, without locks ⇒ maxHold is ignored.
+	 A key that is being migrated is reported from the oldest table where it isn't frozen yet; the 0 key with bucket 0.
+	 */
+	@Override
+	protected void forEachAt (int bucket, int maxHold, LongLongConsumer action) {
+		if (maxHold < 1)
+			throw new IllegalArgumentException("maxHold must be positive, but: "+ maxHold);
+		if (bucket == 0){
+			long zero = find(zeroKey, 0);
+			if (zero != NO_VALUE)
+				action.accept(0, zero);
+		}
+		Table first = (Table) TABLES.getAcquire(tables, bucket);
+		for (Table t = first; t != null; t = t.next){
+			for (int i = 1; i < t.slots.length; i += 2){
+				long key = (long) SLOTS.getAcquire(t.slots, i - 1);
+				long v = (long) SLOTS.getAcquire(t.slots, i);
+				if (key != 0 && v != NO_VALUE && v != MOVED && !inOlderTable(first, t, key))
+					action.accept(key, v);
+			}
+		}
+	}
+
+	/** @return true if the key is not frozen in a table before {@code t}: it is reported from there */
+	private static boolean inOlderTable (Table first, Table t, long key) {
+		for (Table older = first; older != t; older = older.next){
+			int i = older.indexOf(key, false);
+			if (i >= 0 && (long) SLOTS.getAcquire(older.slots, i) != MOVED)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size () {
+		return (int) Math.max(0, Math.min(size.sum(), Integer.MAX_VALUE));
+	}
+
+	/** No locks to hold: same as {@link #size()} */
+	@Override
+	public int exactSize () {
+		return size();
+	}
+
+	@Override
+	public boolean isEmpty () {
+		return size.sum() <= 0;
+	}
+
+	@Override
+	public void clear () {
+		remove(0);
+		for (int bucket = 0; bucket < tables.length; bucket++){
+			for (Table t = (Table) TABLES.getAcquire(tables, bucket); t != null; t = t.next){
+				for (int i = 1; i < t.slots.length; i += 2){
+					long v = (long) SLOTS.getAcquire(t.slots, i);
+					while (v != MOVED && v != NO_VALUE){
+						long witness = (long) SLOTS.compareAndExchange(t.slots, i, v, NO_VALUE);
+						if (witness == v){
+							size.decrement();
+							break;
+						}
+						v = witness;
+					}
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
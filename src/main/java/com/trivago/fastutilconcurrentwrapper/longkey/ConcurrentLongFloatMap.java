@@ -2,14 +2,31 @@ package com.trivago.fastutilconcurrentwrapper.longkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.LongFloatConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.LongFloatToFloatFunction;
+import it.unimi.dsi.fastutil.floats.FloatBinaryOperator;
+import it.unimi.dsi.fastutil.floats.FloatConsumer;
+import it.unimi.dsi.fastutil.longs.AbstractLong2FloatMap;
 import it.unimi.dsi.fastutil.longs.Long2FloatFunction;
+import it.unimi.dsi.fastutil.longs.Long2FloatMap;
 import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentLongFloatMap extends PrimitiveConcurrentMap<Long,Float> {
-    protected final Long2FloatOpenHashMap[] maps;
+    protected Long2FloatOpenHashMap[] maps;
     protected final float defaultValue;
+    private final float loadFactor;
 
     public ConcurrentLongFloatMap (
         int numBuckets,
@@ -17,74 +34,317 @@ public class ConcurrentLongFloatMap extends PrimitiveConcurrentMap<Long,Float> {
         float loadFactor,
         float defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    protected ConcurrentLongFloatMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        float defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Long2FloatOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Long2FloatOpenHashMap(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
     }
 
     public float getDefaultValue (){ return defaultValue; }
 
     @Override protected Long2FloatOpenHashMap mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Long2FloatOpenHashMap newMap (int expected, float loadFactor) {
+        return new Long2FloatOpenHashMap(expected, loadFactor);
+    }
+
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Long2FloatOpenHashMap[] old = maps;
+        maps = new Long2FloatOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Long2FloatOpenHashMap) oldBuckets[oldBucket]).long2FloatEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getLongKey())].put(e.getLongKey(), e.getFloatValue());
+        }
+    }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Long2FloatOpenHashMap map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.long2FloatEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeLong(e.getLongKey());
+            out.writeFloat(e.getFloatValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Long2FloatOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            long key = in.readLong();
+            float value = in.readFloat();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public float get(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (long[] keys, float[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Long2FloatOpenHashMap map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public float put(long key, float value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public float remove(long key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(long key, float value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (long[] keys, float[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (long[] keys, float[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2FloatOpenHashMap map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (long[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (long[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2FloatOpenHashMap map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public float computeIfAbsent(long key, Long2FloatFunction mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public float computeIfPresent(int key, BiFunction<Long, Float, Float> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
         }
     }
 
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public float computeFloat (long key, LongFloatToFloatFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2FloatOpenHashMap map = maps[lock.bucket()];
+            float newValue = remappingFunction.applyAsFloat(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public float computeIfPresentFloat (long key, LongFloatToFloatFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2FloatOpenHashMap map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            float newValue = remappingFunction.applyAsFloat(key, map.get(key));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public float mergeFloat (long key, float value, FloatBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeFloat(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Long2FloatOpenHashMap#addTo
+     */
+    public float addTo (long key, float increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (LongFloatConsumer action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (LongFloatConsumer action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(LongFloatConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, LongFloatConsumer action) {
+        forEachAt(bucket, maxHold, b->maps[b].long2FloatEntrySet().fastIterator(), e->action.accept(e.getLongKey(), e.getFloatValue()));
+    }
+
+    /** @see #forEach(LongFloatConsumer) */
+    public void forEachKey (LongConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(LongFloatConsumer) */
+    public void forEachValue (FloatConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (FloatConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public LongStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public DoubleStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.doubleStream(new BucketSpliterator.OfDouble(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractLong2FloatMap.BasicEntry}) @see #keys() */
+    public Stream<Long2FloatMap.Entry> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Long2FloatMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractLong2FloatMap.BasicEntry(key, value))))), false);
+    }
+
     public static PrimitiveMapBuilder<ConcurrentLongFloatMap,Float> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentLongFloatMap build () {
+                requireFastutilBuckets();
                 float def = super.defaultValue != null ? super.defaultValue : 0;
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingLongFloatMap(buckets, initialCapacity, loadFactor, def);
                     case BLOCKING -> new ConcurrentLongFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentLongFloatMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticLongFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteLongFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightLongFloatMap(buckets, initialCapacity, loadFactor, def);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
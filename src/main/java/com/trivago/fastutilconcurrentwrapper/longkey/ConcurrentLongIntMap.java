@@ -2,14 +2,31 @@ package com.trivago.fastutilconcurrentwrapper.longkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.LongIntConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.LongIntToIntFunction;
+import it.unimi.dsi.fastutil.longs.AbstractLong2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntFunction;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentLongIntMap extends PrimitiveConcurrentMap<Long,Integer> {
-    protected final Long2IntOpenHashMap[] maps;
+    protected Long2IntOpenHashMap[] maps;
     protected final int defaultValue;
+    private final float loadFactor;
 
     public ConcurrentLongIntMap (
         int numBuckets,
@@ -17,74 +34,317 @@ public class ConcurrentLongIntMap extends PrimitiveConcurrentMap<Long,Integer> {
         float loadFactor,
         int defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    protected ConcurrentLongIntMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        int defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Long2IntOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Long2IntOpenHashMap(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
     }
 
     @Override protected Long2IntOpenHashMap mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Long2IntOpenHashMap newMap (int expected, float loadFactor) {
+        return new Long2IntOpenHashMap(expected, loadFactor);
+    }
+
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Long2IntOpenHashMap[] old = maps;
+        maps = new Long2IntOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Long2IntOpenHashMap) oldBuckets[oldBucket]).long2IntEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getLongKey())].put(e.getLongKey(), e.getIntValue());
+        }
+    }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Long2IntOpenHashMap map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.long2IntEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeLong(e.getLongKey());
+            out.writeInt(e.getIntValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Long2IntOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            long key = in.readLong();
+            int value = in.readInt();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public int get(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (long[] keys, int[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Long2IntOpenHashMap map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public int put (long key, int value) {
-        int bucket = getBucket(key);
-        try (var __  = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public int getDefaultValue (){ return defaultValue; }
 
     public int remove(long key) {
-        int bucket = getBucket(key);
-        try (var __  = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(long key, int value) {
-        int bucket = getBucket(key);
-        try (var __  = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (long[] keys, int[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (long[] keys, int[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2IntOpenHashMap map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (long[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (long[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2IntOpenHashMap map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public int computeIfAbsent(long key, Long2IntFunction mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __  = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public int computeIfPresent(long key, BiFunction<Long, Integer, Integer> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __  = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
         }
     }
 
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public int computeInt (long key, LongIntToIntFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2IntOpenHashMap map = maps[lock.bucket()];
+            int newValue = remappingFunction.applyAsInt(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public int computeIfPresentInt (long key, LongIntToIntFunction remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2IntOpenHashMap map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            int newValue = remappingFunction.applyAsInt(key, map.get(key));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public int mergeInt (long key, int value, IntBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeInt(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Long2IntOpenHashMap#addTo
+     */
+    public int addTo (long key, int increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (LongIntConsumer action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (LongIntConsumer action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(LongIntConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, LongIntConsumer action) {
+        forEachAt(bucket, maxHold, b->maps[b].long2IntEntrySet().fastIterator(), e->action.accept(e.getLongKey(), e.getIntValue()));
+    }
+
+    /** @see #forEach(LongIntConsumer) */
+    public void forEachKey (LongConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(LongIntConsumer) */
+    public void forEachValue (IntConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (IntConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public LongStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public IntStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.intStream(new BucketSpliterator.OfInt(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractLong2IntMap.BasicEntry}) @see #keys() */
+    public Stream<Long2IntMap.Entry> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Long2IntMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractLong2IntMap.BasicEntry(key, value))))), false);
+    }
+
     public static PrimitiveMapBuilder<ConcurrentLongIntMap,Integer> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentLongIntMap build() {
+                requireFastutilBuckets();
                 int def = super.defaultValue != null ? super.defaultValue : 0;
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingLongIntMap(buckets, initialCapacity, loadFactor, def);
                     case BLOCKING -> new ConcurrentLongIntMap(buckets, initialCapacity, loadFactor, def);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentLongIntMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticLongIntMap(buckets, initialCapacity, loadFactor, def);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteLongIntMap(buckets, initialCapacity, loadFactor, def);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightLongIntMap(buckets, initialCapacity, loadFactor, def);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
@@ -0,0 +1,409 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.util.LongLongConsumer;
+import it.unimi.dsi.fastutil.longs.Long2LongFunction;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ Counters: {@link #add}/{@link #addTo} of a contended key don't serialize on the bucket write lock.
+
+ A key starts as a plain counter in the bucket map. When its adds keep waiting for adds of the same key
+ (write-write contention: {@link #STRIPE_AFTER} times, no add of another key of the bucket in between), the key is moved
+ into striped {@link LongAdder} cells (per-CPU, like {@link LongAdder} itself), which are updated under the shared read lock.
+ An add that waits for readers or for a write of another key doesn't count. {@link #sum}/{@link #get} fold the cells.
+ A striped key goes back into the bucket map when the bucket's adds of striped keys no longer wait
+ ({@link #UNSTRIPE_AFTER} uncontended ones), and on every other write.
+
+ Locks must be reentrant and have a non-blocking write: {@link PrimitiveMapBuilder.MapMode#BLOCKING},
+ {@link PrimitiveMapBuilder.MapMode#BUSY_WAITING}, {@link PrimitiveMapBuilder.MapMode#ADAPTIVE} or
+ {@link PrimitiveMapBuilder.MapMode#READER_BIASED}.
+
+ @see java.util.concurrent.atomic.LongAdder
+ @see java.util.concurrent.ConcurrentHashMap#addCount
+ @see PrimitiveMapBuilder#withStripedCounters
+*/
+public class ConcurrentLongLongCounterMap extends ConcurrentLongLongMap {
+	/** Adds of a key that waited for an add of the same key (no add of another key in between): then the key is striped */
+	public static final int STRIPE_AFTER = 4;
+	/** Uncontended adds of a bucket's striped keys: then the key added is a plain counter again */
+	public static final int UNSTRIPE_AFTER = 256;
+
+	/** Striped (contended) keys; guarded by the bucket lock as {@link #maps}, cells are updated under the read lock */
+	protected Long2ObjectOpenHashMap<LongAdder>[] striped;
+	/** Per bucket, under its write lock: key of the last add of a plain counter */
+	protected long[] lastAdded;
+	/** Per bucket, under its write lock: adds that waited for an add of the same key, since an add of another key */
+	protected int[] misses;
+	/** Per bucket, under its write lock: uncontended adds of striped keys */
+	protected int[] calm;
+
+	public ConcurrentLongLongCounterMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}//new
+
+	public ConcurrentLongLongCounterMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	){
+		super(numBuckets, initialCapacity, loadFactor, defaultValue, mapMode);
+		if (!counterMode(mapMode))
+			throw new UnsupportedOperationException(mapMode +" has no reentrant bucket locks with a non-blocking write: counters need them");
+		newCounters(numBuckets);
+	}//new
+
+	/** Modes of {@link ConcurrentLongLongCounterMap}: reentrant locks with a non-blocking write */
+	private static boolean counterMode (PrimitiveMapBuilder.MapMode mapMode) {
+		return switch (mapMode){
+			case BLOCKING, BUSY_WAITING, ADAPTIVE, READER_BIASED -> true;
+			default -> false;
+		};
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private void newCounters (int numBuckets) {
+		striped = new Long2ObjectOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			striped[i] = new Long2ObjectOpenHashMap<>();
+		lastAdded = new long[numBuckets];
+		misses = new int[numBuckets];
+		calm = new int[numBuckets];
+	}
+
+	/** Fastest {@link #addTo}: nothing is returned ⇒ striped cells are not summed */
+	public void add (long key, long increment) {
+		add(key, increment, false);
+	}
+
+	/**
+	 Adds the increment to the key's counter (to 0 if the key is absent).
+	 @return previous value; for a striped key it is exact only without concurrent updates (see {@link LongAdder#sum})
+	 */
+	@Override
+	public long addTo (long key, long increment) {
+		return add(key, increment, true);
+	}
+
+	private long add (long key, long increment, boolean previous) {
+		BucketLock writeLock = tryWriteKey(key);
+		if (writeLock != null){
+			try (writeLock){
+				int bucket = writeLock.bucket();
+				LongAdder cells = striped[bucket].get(key);
+				if (cells == null)
+					return addPlain(bucket, key, increment);
+				if (++calm[bucket] < UNSTRIPE_AFTER)
+					return add(cells, increment, previous);
+				calm[bucket] = 0;
+				unstripe(bucket, key);
+				return addPlain(bucket, key, increment);
+			}
+		}
+		BucketLock readLock = tryReadKey(key);
+		boolean written = readLock == null;// else only readers hold the bucket: that's no reason to stripe
+		try (var lock = written ? readKey(key) : readLock){// contended: striped keys are updated under the shared lock
+			LongAdder cells = striped[lock.bucket()].get(key);
+			if (cells != null)
+				return add(cells, increment, previous);
+		}
+		try (var lock = writeKey(key)){// not striped yet: striped if adds of the key keep waiting for each other
+			int bucket = lock.bucket();
+			if (striped[bucket].containsKey(key) || written && waitedForSameKey(bucket, key))
+				return add(stripe(bucket, key), increment, previous);
+			return addPlain(bucket, key, increment);
+		}
+	}
+
+	/** Write lock must be held. An add of another key ends the bucket's row of {@link #misses} */
+	private long addPlain (int bucket, long key, long increment) {
+		if (lastAdded[bucket] != key){
+			lastAdded[bucket] = key;
+			misses[bucket] = 0;
+		}
+		return maps[bucket].addTo(key, increment);
+	}
+
+	/**
+	 Write lock must be held; the add waited for a writer of the bucket.
+	 @return the writer was an add of the same key, {@link #STRIPE_AFTER} times with no add of another key in between
+	 */
+	private boolean waitedForSameKey (int bucket, long key) {
+		if (lastAdded[bucket] != key)
+			return false;
+		if (++misses[bucket] < STRIPE_AFTER)
+			return false;
+		misses[bucket] = 0;
+		calm[bucket] = 0;
+		return true;
+	}
+
+	private static long add (LongAdder cells, long increment, boolean previous) {
+		long sum = previous ? cells.sum() : 0;
+		cells.add(increment);
+		return sum;
+	}
+
+	/** Write lock must be held */
+	private LongAdder stripe (int bucket, long key) {
+		LongAdder cells = striped[bucket].get(key);
+		if (cells == null){
+			cells = new LongAdder();
+			Long2LongOpenHashMap map = maps[bucket];
+			if (map.containsKey(key))
+				cells.add(map.remove(key));
+			striped[bucket].put(key, cells);
+		}
+		return cells;
+	}
+
+	/** Striped keys become plain counters again: {@link #restripe} moves only the bucket maps */
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		for (int i = 0; i < striped.length; i++){
+			for (var it = striped[i].long2ObjectEntrySet().fastIterator(); it.hasNext();){
+				var e = it.next();
+				maps[i].put(e.getLongKey(), e.getValue().sum());
+			}
+		}
+		newCounters(numBuckets);
+		return super.newBuckets(numBuckets);
+	}
+
+	/** Write lock must be held. Moves the striped key back into the bucket map */
+	private void unstripe (int bucket, long key) {
+		LongAdder cells = striped[bucket].remove(key);
+		if (cells != null)
+			maps[bucket].put(key, cells.sum());
+	}
+
+	/** @return counter value, 0 if the key is absent */
+	public long sum (long key) {
+		try (var lock = readKey(key)){
+			int bucket = lock.bucket();
+			LongAdder cells = striped[bucket].get(key);
+			return cells != null ? cells.sum() : maps[bucket].get(key);
+		}
+	}
+
+	@Override
+	public boolean containsKey (long key) {
+		try (var lock = readKey(key)){
+			int bucket = lock.bucket();
+			return striped[bucket].containsKey(key) || maps[bucket].containsKey(key);
+		}
+	}
+
+	@Override
+	public long get (long key) {
+		try (var lock = readKey(key)){
+			int bucket = lock.bucket();
+			LongAdder cells = striped[bucket].get(key);
+			return cells != null ? cells.sum() : maps[bucket].getOrDefault(key, defaultValue);
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void getAll (long[] keys, long[] out) {
+		checkBatch(keys.length, out.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys);
+			for (int bucket = 0; bucket < maps.length; bucket++){
+				int from = g.from(bucket), to = g.to(bucket);
+				if (from == to)
+					continue;
+				try (var ___ = readAt(bucket)){
+					Long2LongOpenHashMap map = maps[bucket];
+					Long2ObjectOpenHashMap<LongAdder> cellsMap = striped[bucket];
+					for (int i = from; i < to; i++){
+						int k = g.keyIndex(i);
+						LongAdder cells = cellsMap.get(keys[k]);
+						out[k] = cells != null ? cells.sum() : map.getOrDefault(keys[k], defaultValue);
+					}
+				}
+			}
+		}
+	}
+
+	/** Striped keys are written with their {@link LongAdder#sum}: the snapshot is the same as of a plain map */
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		Long2LongOpenHashMap map = maps[bucket];
+		Long2ObjectOpenHashMap<LongAdder> cells = striped[bucket];
+		out.writeInt(map.size() + cells.size());
+		for (var it = map.long2LongEntrySet().fastIterator(); it.hasNext(); ){
+			var e = it.next();
+			out.writeLong(e.getLongKey());
+			out.writeLong(e.getLongValue());
+		}
+		for (var it = cells.long2ObjectEntrySet().fastIterator(); it.hasNext(); ){
+			var e = it.next();
+			out.writeLong(e.getLongKey());
+			out.writeLong(e.getValue().sum());
+		}
+	}
+
+	/** A bucket with striped keys: {@link #put} moves them back */
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		super.readBucket(in, bucket >= 0 && !striped[bucket].isEmpty() ? -1 : bucket);
+	}
+
+	@Override
+	public long put (long key, long value) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.put(key, value);// reentrant
+		}
+	}
+
+	@Override
+	public long remove (long key) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.remove(key);
+		}
+	}
+
+	@Override
+	public boolean remove (long key, long value) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.remove(key, value);
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void putAll (long[] keys, long[] values, boolean parallel) {
+		checkBatch(keys.length, values.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						int k = g.keyIndex(i);
+						striped[bucket].remove(keys[k]);
+						maps[bucket].put(keys[k], values[k]);
+					}
+				}
+				return 0;
+			});
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public int removeAll (long[] keys, boolean parallel) {
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			return forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					int size = maps[bucket].size() + striped[bucket].size();
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						long key = keys[g.keyIndex(i)];
+						striped[bucket].remove(key);
+						maps[bucket].remove(key);
+					}
+					return size - maps[bucket].size() - striped[bucket].size();
+				}
+			});
+		}
+	}
+
+	@Override
+	public long computeIfAbsent (long key, Long2LongFunction mappingFunction) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.computeIfAbsent(key, mappingFunction);
+		}
+	}
+
+	@Override
+	public long computeIfPresent (long key, BiFunction<Long,Long,Long> mappingFunction) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.computeIfPresent(key, mappingFunction);
+		}
+	}
+
+	@Override
+	public long computeLong (long key, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.computeLong(key, remappingFunction);
+		}
+	}
+
+	@Override
+	public long computeIfPresentLong (long key, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.computeIfPresentLong(key, remappingFunction);
+		}
+	}
+
+	@Override
+	public long mergeLong (long key, long value, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			int bucket = lock.bucket();
+			unstripe(bucket, key);
+			return super.mergeLong(key, value, remappingFunction);
+		}
+	}
+
+	/** Plain counters of the bucket, then its striped counters (under the read lock) */
+	@SuppressWarnings("try")
+	@Override
+	protected void forEachAt (int bucket, int maxHold, LongLongConsumer action) {
+		super.forEachAt(bucket, maxHold, action);
+		try (var __ = readAt(bucket)){
+			for (var it = striped[bucket].long2ObjectEntrySet().fastIterator(); it.hasNext();){
+				var e = it.next();
+				action.accept(e.getLongKey(), e.getValue().sum());
+			}
+		}
+	}
+
+	@Override
+	protected int bucketSize (int bucket) {
+		return maps[bucket].size() + striped[bucket].size();
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void clear () {
+		try (var __ = lockLayout()){
+			for (int i = 0; i < maps.length; i++){
+				try (var ___ = writeAt(i)){
+					maps[i].clear();
+					striped[i].clear();
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
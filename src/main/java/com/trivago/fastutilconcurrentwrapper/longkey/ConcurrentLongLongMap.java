@@ -2,89 +2,391 @@ package com.trivago.fastutilconcurrentwrapper.longkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.util.LongLongConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.SpinLockWord;
+import it.unimi.dsi.fastutil.longs.AbstractLong2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongFunction;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.UncheckedIOException;
 import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentLongLongMap extends PrimitiveConcurrentMap<Long,Long> {
-    protected final Long2LongOpenHashMap[] maps;
+    protected Long2LongOpenHashMap[] maps;
     protected final long defaultValue;
+    private final float loadFactor;
 
-    public ConcurrentLongLongMap(
+    public ConcurrentLongLongMap (
         int numBuckets,
         int initialCapacity,
         float loadFactor,
         long defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    protected ConcurrentLongLongMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        long defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Long2LongOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
-        for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Long2LongOpenHashMap(initialCapacity, loadFactor);
+        this.loadFactor = loadFactor;
+        for (int i = 0; i < maps.length; i++)
+            maps[i] = newMap(initialCapacity, loadFactor);
+    }
+
+    /** For subclasses with their own bucket storage: no {@link #maps}, every operation must be overridden */
+    protected ConcurrentLongLongMap (
+        int numBuckets,
+        long defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
+        this.maps = new Long2LongOpenHashMap[0];
+        this.defaultValue = defaultValue;
+        this.loadFactor = 0;
+    }
+
+    /** For subclasses whose own buckets hold the {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} lock words: no {@link #maps} */
+    protected ConcurrentLongLongMap (
+        long defaultValue,
+        SpinLockWord[] buckets
+    ){
+        super(buckets);
+        this.maps = new Long2LongOpenHashMap[0];
+        this.defaultValue = defaultValue;
+        this.loadFactor = 0;
     }
 
     @Override protected final Long2LongOpenHashMap mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Long2LongOpenHashMap newMap (int expected, float loadFactor) {
+        return new Long2LongOpenHashMap(expected, loadFactor);
+    }
+
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Long2LongOpenHashMap[] old = maps;
+        maps = new Long2LongOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Long2LongOpenHashMap) oldBuckets[oldBucket]).long2LongEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getLongKey())].put(e.getLongKey(), e.getLongValue());
+        }
+    }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Long2LongOpenHashMap map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.long2LongEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeLong(e.getLongKey());
+            out.writeLong(e.getLongValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Long2LongOpenHashMap map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            long key = in.readLong();
+            long value = in.readLong();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public long get (long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (long[] keys, long[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Long2LongOpenHashMap map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public long put(long key, long value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public long getDefaultValue (){ return defaultValue; }
 
     public long remove(long key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(long key, long value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (long[] keys, long[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (long[] keys, long[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2LongOpenHashMap map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (long[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (long[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2LongOpenHashMap map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public long computeIfAbsent(long key, Long2LongFunction mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public long computeIfPresent(long key, BiFunction<Long, Long, Long> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public long computeLong (long key, LongBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2LongOpenHashMap map = maps[lock.bucket()];
+            long newValue = remappingFunction.applyAsLong(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public long computeIfPresentLong (long key, LongBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            Long2LongOpenHashMap map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            long newValue = remappingFunction.applyAsLong(key, map.get(key));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public long mergeLong (long key, long value, LongBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeLong(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Long2LongOpenHashMap#addTo
+     */
+    public long addTo (long key, long increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (LongLongConsumer action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (LongLongConsumer action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
         }
     }
 
+    /** One bucket of {@link #forEach(LongLongConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, LongLongConsumer action) {
+        forEachAt(bucket, maxHold, b->maps[b].long2LongEntrySet().fastIterator(), e->action.accept(e.getLongKey(), e.getLongValue()));
+    }
+
+    /** @see #forEach(LongLongConsumer) */
+    public void forEachKey (LongConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(LongLongConsumer) */
+    public void forEachValue (LongConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public LongStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public LongStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractLong2LongMap.BasicEntry}) @see #keys() */
+    public Stream<Long2LongMap.Entry> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Long2LongMap.Entry>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractLong2LongMap.BasicEntry(key, value))))), false);
+    }
+
     public static PrimitiveMapBuilder<ConcurrentLongLongMap,Long> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentLongLongMap build() {
                 long def = super.defaultValue != null ? super.defaultValue : 0;
+                if ((offHeap || mappedFile != null) && (incrementalResize || fusedBuckets))
+                    throw new UnsupportedOperationException("Incremental resize is on-heap only");
+                if (fusedBuckets && mapMode != PrimitiveMapBuilder.MapMode.COMPACT_SPIN)
+                    throw new UnsupportedOperationException("Fused buckets hold COMPACT_SPIN lock words, not "+ mapMode);
+                if (stripedCounters && (offHeap || mappedFile != null || incrementalResize || fusedBuckets))
+                    throw new UnsupportedOperationException("Striped counters are kept beside fastutil buckets only");
+                if (mappedFile != null){
+                    try {
+                        return ConcurrentMappedLongLongMap.open(mappedFile, buckets, initialCapacity, loadFactor, def, mapMode);
+                    } catch (IOException e){
+                        throw new UncheckedIOException("Can't open "+ mappedFile, e);
+                    }
+                }
+                if (offHeap)
+                    return new ConcurrentOffHeapLongLongMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                if (fusedBuckets)
+                    return new ConcurrentFusedLongLongMap(buckets, initialCapacity, loadFactor, def);
+                if (stripedCounters)
+                    return new ConcurrentLongLongCounterMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                if (incrementalResize)
+                    return new ConcurrentIncrementalLongLongMap(buckets, initialCapacity, loadFactor, def, mapMode);
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingLongLongMap(buckets, initialCapacity, loadFactor, def);
                     case BLOCKING -> new ConcurrentLongLongMap(buckets, initialCapacity, loadFactor, def);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentLongLongMap(buckets, initialCapacity, loadFactor, def, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticLongLongMap(buckets, initialCapacity, loadFactor, def);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteLongLongMap(buckets, initialCapacity, loadFactor, def);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightLongLongMap(buckets, initialCapacity, loadFactor, def);
+                    case LOCK_FREE -> new ConcurrentLockFreeLongLongMap(buckets, initialCapacity, loadFactor, def);
                 };
             }
         };
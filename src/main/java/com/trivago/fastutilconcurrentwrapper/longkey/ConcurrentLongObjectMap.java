@@ -2,89 +2,312 @@ package com.trivago.fastutilconcurrentwrapper.longkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
+import com.trivago.fastutilconcurrentwrapper.util.LongObjConsumer;
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectFunction;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentLongObjectMap<V> extends PrimitiveConcurrentMap<Long,V> {
-    protected final Long2ObjectOpenHashMap<V>[] maps;
+    protected Long2ObjectOpenHashMap<V>[] maps;
     protected final V defaultValue;
+    private final float loadFactor;
 
-    @SuppressWarnings("unchecked")
-		public ConcurrentLongObjectMap (
+    public ConcurrentLongObjectMap (
         int numBuckets,
         int initialCapacity,
         float loadFactor,
         V defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    @SuppressWarnings({"rawtypes","unchecked"})
+    protected ConcurrentLongObjectMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        V defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Long2ObjectOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Long2ObjectOpenHashMap<>(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
     }
 
     @Override protected final Long2ObjectOpenHashMap<V> mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Long2ObjectOpenHashMap<V> newMap (int expected, float loadFactor) {
+        return new Long2ObjectOpenHashMap<>(expected, loadFactor);
+    }
+
+    @SuppressWarnings({"rawtypes","unchecked"})
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Long2ObjectOpenHashMap<V>[] old = maps;
+        maps = new Long2ObjectOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Long2ObjectOpenHashMap<V>) oldBuckets[oldBucket]).long2ObjectEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getLongKey())].put(e.getLongKey(), e.getValue());
+        }
+    }
+
+    @Override
+    protected boolean snapshotObjects (){ return true; }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Long2ObjectOpenHashMap<V> map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.long2ObjectEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeLong(e.getLongKey());
+            out.writeObject(e.getValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Long2ObjectOpenHashMap<V> map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            long key = in.readLong();
+            V value = Snapshot.<V>readObject(in);
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public V get (long key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (long[] keys, V[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Long2ObjectOpenHashMap<V> map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public V put (long key, V value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public V getDefaultValue (){ return defaultValue; }
 
     public V remove (long key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key);
         }
     }
 
     public boolean remove(long key, V value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (long[] keys, V[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (long[] keys, V[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2ObjectOpenHashMap<V> map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (long[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (long[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Long2ObjectOpenHashMap<V> map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.remove(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public V computeIfAbsent (long key, Long2ObjectFunction<V> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public V computeIfPresent (long key, BiFunction<Long,V,V> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
         }
     }
 
+    /**
+     {@link java.util.Map#merge} without boxing of the key.
+     @return new value or null if the function has removed the entry
+     */
+    public V merge (long key, V value, BiFunction<? super V,? super V,? extends V> remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].merge(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (LongObjConsumer<? super V> action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (LongObjConsumer<? super V> action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(LongObjConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, LongObjConsumer<? super V> action) {
+        forEachAt(bucket, maxHold, b->maps[b].long2ObjectEntrySet().fastIterator(), e->action.accept(e.getLongKey(), e.getValue()));
+    }
+
+    /** @see #forEach(LongObjConsumer) */
+    public void forEachKey (LongConsumer action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(LongObjConsumer) */
+    public void forEachValue (Consumer<? super V> action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (Consumer<? super V> action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public LongStream keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public Stream<V> values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<V>(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractLong2ObjectMap.BasicEntry}) @see #keys() */
+    public Stream<Long2ObjectMap.Entry<V>> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Long2ObjectMap.Entry<V>>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractLong2ObjectMap.BasicEntry<>(key, value))))), false);
+    }
+
     public static <V> PrimitiveMapBuilder<ConcurrentLongObjectMap<V>,V> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentLongObjectMap<V> build() {
+                requireFastutilBuckets();
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
                     case BLOCKING -> new ConcurrentLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightLongObjectMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
@@ -0,0 +1,283 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.io.SafeCloseable;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ {@link ConcurrentOffHeapLongLongMap} whose bucket tables are regions of one memory-mapped file:
+ a restarted process {@link #open reopens} the file and serves reads at once, the OS page cache keeps the data warm.
+
+ File: a header page, then the tables (page aligned). A grown table gets a new region; the old one is reused by the next
+ table of the same size. The directory (where the tables are) is written by {@link #close()}.
+
+ Not crash safe: a file that wasn't {@link #close() closed} (e.g. the process was killed) can't be opened, rebuild it.
+ The file is in native byte order ⇒ not portable between little and big endian machines.
+
+ @see FileChannel#map
+*/
+public class ConcurrentMappedLongLongMap extends ConcurrentOffHeapLongLongMap implements SafeCloseable {
+	private final MappedFile file;
+
+	private ConcurrentMappedLongLongMap (MappedFile file, int numBuckets, float loadFactor, long defaultValue, PrimitiveMapBuilder.MapMode mapMode, Table[] tables) {
+		super(numBuckets, loadFactor, defaultValue, mapMode, file, bucket->tables[bucket]);
+		this.file = file;
+		for (int i = 0; i < numBuckets; i++)
+			writeAt(i).close();// publishes the sizes of the reopened tables
+	}//new
+
+	/**
+	 Opens the map file or creates a new one.
+	 An existing file keeps its bucket count, load factor and default value: the arguments are only used for a new file.
+	 @throws IOException the file can't be opened or mapped, is not a map file, or wasn't closed
+	 */
+	public static ConcurrentMappedLongLongMap open (
+		Path path,
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	) throws IOException {
+		var file = new MappedFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+		try {
+			if (file.channel.size() == 0){
+				if (numBuckets < 1 || numBuckets > MappedFile.MAX_BUCKETS)
+					throw new IllegalArgumentException("numBuckets must be between 1 and %d, but: %d".formatted(MappedFile.MAX_BUCKETS, numBuckets));
+				file.writeHeader(numBuckets, loadFactor, defaultValue, false);
+				var tables = new Table[numBuckets];
+				for (int i = 0; i < numBuckets; i++)
+					tables[i] = new Table(initialCapacity, loadFactor, file);
+				return new ConcurrentMappedLongLongMap(file, numBuckets, loadFactor, defaultValue, mapMode, tables);
+			}
+			Table[] tables = file.readTables();
+			file.writeHeader(tables.length, file.loadFactor, file.defaultValue, false);// open ⇒ not clean until closed
+			return new ConcurrentMappedLongLongMap(file, tables.length, file.loadFactor, file.defaultValue, mapMode, tables);
+		} catch (IOException | RuntimeException e){
+			file.channel.close();
+			throw e;
+		}
+	}
+
+	/** @throws IllegalArgumentException more than {@link MappedFile#MAX_BUCKETS}: the directory wouldn't fit into one buffer */
+	@Override
+	public void restripe (int newNumBuckets) {
+		if (newNumBuckets > MappedFile.MAX_BUCKETS)
+			throw new IllegalArgumentException("newNumBuckets must be up to %d in a map file, but: %d".formatted(MappedFile.MAX_BUCKETS, newNumBuckets));
+		super.restripe(newNumBuckets);
+	}
+
+	/** Writes the changed pages to the disk (they are written by the OS anyway): a shorter {@link #close()} */
+	@SuppressWarnings("try")
+	public void flush () {
+		try (var __ = lockLayout()){
+			for (int i = 0; i < numBuckets(); i++){
+				try (var ___ = readAt(i)){
+					((MappedByteBuffer) tables[i].slots).force();
+				}
+			}
+		}
+	}
+
+	/**
+	 Writes the directory, forces everything to the disk and unmaps the file.
+	 Waits for the operations in progress; the map must not be used afterwards.
+	 @throws UncheckedIOException the file is not closed cleanly
+	 */
+	@SuppressWarnings("try")
+	@Override
+	public void close () {
+		try (var __ = lockLayout()){
+			CloseableLock[] held = new CloseableLock[numBuckets()];
+			try {
+				for (int i = 0; i < held.length; i++)
+					held[i] = writeAt(i);
+				file.close(tables);
+			} catch (IOException e){
+				throw new UncheckedIOException("Can't close the map file", e);
+			} finally {
+				for (CloseableLock lock : held)
+					if (lock != null)
+						lock.close();
+			}
+		}
+	}
+
+	/** Page aligned regions of one file. Allocations come from different buckets ⇒ synchronized */
+	static final class MappedFile implements Allocator {
+		/** "FCWLLMAP" */
+		static final long MAGIC = 0x4643574C4C4D4150L;
+		static final int VERSION = 1;
+		static final int PAGE = 4096;
+		/** Per bucket: offset, capacity, initial capacity, used, 0 key */
+		static final int DIRECTORY_ENTRY = 8 + 4 * 4;
+		/** Directory, free list and its count: one buffer (up to 2 GB) */
+		static final int MAX_BUCKETS = 10_000_000;
+
+		final FileChannel channel;
+		float loadFactor;
+		long defaultValue;
+		/** Tables are allocated from here */
+		private long end = PAGE;
+		/** Offsets of the mapped tables */
+		private final Map<ByteBuffer,Long> offsets = new IdentityHashMap<>();
+		/** Region size ⇒ offsets of free regions */
+		private final Int2ObjectOpenHashMap<LongArrayList> free = new Int2ObjectOpenHashMap<>();
+
+		MappedFile (FileChannel channel){ this.channel = channel; }//new
+
+		static int align (int bytes){ return (bytes + PAGE - 1) & -PAGE; }
+
+		@Override
+		public synchronized ByteBuffer allocate (int bytes) {
+			int size = align(bytes);
+			LongArrayList regions = free.get(size);
+			boolean reused = regions != null && !regions.isEmpty();
+			long offset = reused ? regions.popLong() : end;
+			ByteBuffer buffer = map(offset, bytes);
+			if (reused)
+				for (int i = 0; i < bytes; i += 8)
+					buffer.putLong(i, 0);
+			else
+				end += size;
+			offsets.put(buffer, offset);
+			return buffer;
+		}
+
+		private ByteBuffer map (long offset, int bytes) {
+			try {
+				return channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);// grows the file
+			} catch (IOException e){
+				throw new UncheckedIOException("Can't map %d bytes at %d".formatted(bytes, offset), e);
+			}
+		}
+
+		@Override
+		public synchronized void free (ByteBuffer buffer) {
+			Long offset = offsets.remove(buffer);
+			if (offset != null)
+				free.computeIfAbsent(align(buffer.capacity()), size->new LongArrayList()).add(offset.longValue());
+			ConcurrentOffHeapLongLongMap.free(buffer);// unmap
+		}
+
+		void writeHeader (int numBuckets, float loadFactor, long defaultValue, boolean clean) throws IOException {
+			this.loadFactor = loadFactor;
+			this.defaultValue = defaultValue;
+			ByteBuffer h = ByteBuffer.allocate(40).order(ByteOrder.nativeOrder())
+				.putLong(MAGIC).putInt(VERSION).putInt(clean ? 1 : 0)
+				.putInt(numBuckets).putFloat(loadFactor).putLong(defaultValue).putLong(end)
+				.flip();
+			write(h, 0);
+			channel.force(true);
+		}
+
+		private void write (ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining())
+				position += channel.write(buffer, position);
+		}
+
+		private ByteBuffer read (int bytes, long position) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+			while (buffer.hasRemaining())
+				if (channel.read(buffer, position + buffer.position()) < 0)
+					throw new IOException("Truncated map file: %d bytes expected at %d".formatted(bytes, position));
+			return buffer.flip();
+		}
+
+		/** Header, directory and free list of a closed file */
+		synchronized Table[] readTables () throws IOException {
+			ByteBuffer h = read(40, 0);
+			if (h.getLong() != MAGIC)
+				throw new IOException("Not a map file (or other byte order)");
+			int version = h.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported map file version: "+ version);
+			if (h.getInt() != 1)
+				throw new IOException("Map file was not closed (crash?): rebuild it");
+			int numBuckets = h.getInt();
+			loadFactor = h.getFloat();
+			defaultValue = h.getLong();
+			end = h.getLong();
+			if (numBuckets < 1 || numBuckets > MAX_BUCKETS || end < PAGE || end > channel.size())
+				throw new IOException("Corrupted map file header: numBuckets=%d, end=%d".formatted(numBuckets, end));
+
+			ByteBuffer dir = read(directoryBytes(numBuckets, 0), end);// the directory is the last thing in the file
+			var tables = new Table[numBuckets];
+			try {
+				for (int i = 0; i < numBuckets; i++){
+					long offset = dir.getLong();
+					int capacity = dir.getInt(), initialCapacity = dir.getInt(), used = dir.getInt();
+					boolean containsZeroKey = dir.getInt() != 0;
+					if (offset < PAGE || offset >= end || capacity < 1 || capacity > MAX_CAPACITY)
+						throw new IOException("Corrupted map file directory: bucket %d at %d, capacity %d".formatted(i, offset, capacity));
+					ByteBuffer slots = map(offset, Table.bytes(capacity));
+					offsets.put(slots, offset);
+					tables[i] = new Table(slots, capacity, initialCapacity, used, containsZeroKey, loadFactor, this);
+				}
+			} catch (IOException | RuntimeException e){
+				for (Table t : tables)
+					if (t != null)
+						ConcurrentOffHeapLongLongMap.free(t.slots);
+				throw e;
+			}
+			int freeRegions = dir.getInt();
+			if (freeRegions < 0)
+				throw new IOException("Corrupted map file directory: %d free regions".formatted(freeRegions));
+			ByteBuffer list = read(directoryBytes(numBuckets, freeRegions) - dir.capacity(), end + dir.capacity());
+			for (int i = 0; i < freeRegions; i++){
+				long offset = list.getLong();
+				free.computeIfAbsent(list.getInt(), size->new LongArrayList()).add(offset);
+			}
+			return tables;
+		}
+
+		/**
+		 Directory entries, the free region count and the free regions: computed in {@code long}
+		 @throws IOException more than a buffer can hold
+		 */
+		static int directoryBytes (int numBuckets, int freeRegions) throws IOException {
+			long bytes = (long) numBuckets * DIRECTORY_ENTRY + 4 + (long) freeRegions * 12;
+			if (bytes > Integer.MAX_VALUE - 8)
+				throw new IOException("Map file directory too large: %d buckets, %d free regions".formatted(numBuckets, freeRegions));
+			return (int) bytes;
+		}
+
+		/** All bucket write locks must be held */
+		synchronized void close (Table[] tables) throws IOException {
+			if (!channel.isOpen())
+				return;
+			int freeRegions = 0;
+			for (LongArrayList regions : free.values())
+				freeRegions += regions.size();
+			ByteBuffer dir = ByteBuffer.allocate(directoryBytes(tables.length, freeRegions)).order(ByteOrder.nativeOrder());
+			for (Table t : tables){
+				((MappedByteBuffer) t.slots).force();
+				dir.putLong(offsets.get(t.slots)).putInt(t.n).putInt(t.initialCapacity).putInt(t.used).putInt(t.containsZeroKey ? 1 : 0);
+			}
+			dir.putInt(freeRegions);
+			for (var e : free.int2ObjectEntrySet())
+				for (long offset : e.getValue())
+					dir.putLong(offset).putInt(e.getIntKey());
+			write(dir.flip(), end);
+			channel.truncate(end + dir.capacity());
+			for (Table t : tables)
+				t.release();
+			offsets.clear();
+			writeHeader(tables.length, loadFactor, defaultValue, true);
+			channel.close();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,311 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntFunction;
+
+/**
+ Entries live in direct memory ({@link ByteBuffer#allocateDirect}), one open addressing table per bucket:
+ linear probing over 16-byte slots {@code [key, value]}, accessed through a {@link VarHandle} view in native byte order.
+ A map of hundreds of millions of entries adds almost nothing to the Java heap ⇒ no GC scanning or copying of it.
+
+ - Every access is under the bucket lock ⇒ plain memory access. {@link PrimitiveMapBuilder.MapMode#OPTIMISTIC},
+ {@link PrimitiveMapBuilder.MapMode#LOCK_FREE}, {@link PrimitiveMapBuilder.MapMode#COPY_ON_WRITE} and
+ {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT} are not supported: a read without the lock could touch freed memory.
+ - 0 marks a free slot ⇒ the value of the 0 key is kept after the last slot.
+ - {@link #remove} shifts the following keys back (like fastutil): no tombstones.
+ - A table is limited to {@link #MAX_CAPACITY} slots (1 GiB): use more buckets for more keys.
+ - Old memory is freed at once on grow, {@link #clear} and {@link #restripe} (by the GC if {@code sun.misc.Unsafe} is not accessible).
+
+ @see it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap
+*/
+public class ConcurrentOffHeapLongLongMap extends TableLongLongMap<ConcurrentOffHeapLongLongMap.Table> {
+	/** Slots of one bucket ⇒ 1 GiB of direct memory */
+	public static final int MAX_CAPACITY = 1 << 26;
+
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	/** {@code sun.misc.Unsafe#invokeCleaner(ByteBuffer)}: frees a direct buffer now instead of after a GC; null if not accessible */
+	private static final @Nullable MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+	/** Direct memory, freed at once by {@link #free} */
+	static final Allocator DIRECT = new Allocator(){
+		@Override public ByteBuffer allocate (int bytes){ return ByteBuffer.allocateDirect(bytes); }
+		@Override public void free (ByteBuffer buffer){ ConcurrentOffHeapLongLongMap.free(buffer); }
+	};
+
+	private final Allocator allocator;
+
+	public ConcurrentOffHeapLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}//new
+
+	/** @throws UnsupportedOperationException OPTIMISTIC, LOCK_FREE, COPY_ON_WRITE or LEFT_RIGHT mapMode */
+	public ConcurrentOffHeapLongLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	){
+		this(numBuckets, loadFactor, defaultValue, mapMode, DIRECT, bucket->new Table(initialCapacity, loadFactor, DIRECT));
+	}//new
+
+	/** @param table bucket ⇒ its table */
+	ConcurrentOffHeapLongLongMap (
+		int numBuckets,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode,
+		Allocator allocator,
+		IntFunction<Table> table
+	){
+		super(numBuckets, loadFactor, defaultValue, mapMode);
+		if (mapMode == PrimitiveMapBuilder.MapMode.OPTIMISTIC || mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE
+				|| mapMode == PrimitiveMapBuilder.MapMode.COPY_ON_WRITE || mapMode == PrimitiveMapBuilder.MapMode.LEFT_RIGHT)
+			throw new UnsupportedOperationException(mapMode +" is not supported off-heap: reads without the lock could touch freed memory");
+		this.allocator = allocator;
+		this.tables = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			tables[i] = table.apply(i);
+	}//new
+
+	/** Memory of the bucket tables */
+	interface Allocator {
+		/** @return zeroed memory */
+		ByteBuffer allocate (int bytes);
+
+		/** The buffer must not be used anymore */
+		void free (ByteBuffer buffer);
+	}
+
+	private static @Nullable MethodHandle invokeCleaner () {
+		try {
+			Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafe.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return MethodHandles.lookup()
+				.findVirtual(unsafe, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+				.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e){
+			return null;// the GC frees the buffers
+		}
+	}
+
+	static void free (ByteBuffer buffer) {
+		if (INVOKE_CLEANER != null){
+			try {
+				INVOKE_CLEANER.invokeExact(buffer);
+			} catch (Throwable ignore){// the GC frees it
+			}
+		}
+	}
+
+	/** One bucket. Lock must be held! */
+	static final class Table implements LongLongTable {
+		/** key, value, key, value…: {@link #n} slots, then the value of the 0 key */
+		ByteBuffer slots;
+		/** Capacity: a power of 2 */
+		int n;
+		private int mask;
+		private int maxFill;
+		/** Keys except 0 */
+		int used;
+		boolean containsZeroKey;
+		final int initialCapacity;
+		private final float loadFactor;
+		private final Allocator allocator;
+
+		Table (int expectedSize, float loadFactor, Allocator allocator) {
+			this.loadFactor = loadFactor;
+			this.allocator = allocator;
+			this.initialCapacity = Math.min(HashCommon.arraySize(Math.max(expectedSize, 2), loadFactor), MAX_CAPACITY);
+			allocate(initialCapacity);
+		}//new
+
+		/** An existing table, e.g. of a reopened file */
+		Table (ByteBuffer slots, int capacity, int initialCapacity, int used, boolean containsZeroKey, float loadFactor, Allocator allocator) {
+			if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY || slots.capacity() < bytes(capacity) || used < 0 || used >= capacity)
+				throw new IllegalArgumentException("Corrupted table: capacity=%d, used=%d, bytes=%d".formatted(capacity, used, slots.capacity()));
+			this.slots = slots;
+			this.n = capacity;
+			this.mask = capacity - 1;
+			this.maxFill = Math.min(HashCommon.maxFill(capacity, loadFactor), capacity - 1);
+			this.used = used;
+			this.containsZeroKey = containsZeroKey;
+			this.initialCapacity = initialCapacity;
+			this.loadFactor = loadFactor;
+			this.allocator = allocator;
+		}//new
+
+		/** Slots and the 0 key's value */
+		static int bytes (int capacity){ return (capacity + 1) << 4; }
+
+		private void allocate (int capacity) {
+			slots = allocator.allocate(bytes(capacity));
+			n = capacity;
+			mask = capacity - 1;
+			maxFill = Math.min(HashCommon.maxFill(capacity, loadFactor), capacity - 1);
+		}
+
+		@Override public int size (){ return containsZeroKey ? used + 1 : used; }
+		@Override public boolean containsNullKey (){ return containsZeroKey; }
+
+		/** Direct memory in use */
+		long bytes (){ return slots.capacity(); }
+
+		long key (int slot){ return (long) LONGS.get(slots, slot << 4); }
+		@Override public long value (int slot){ return (long) LONGS.get(slots, (slot << 4) + 8); }
+		@Override public void setValue (int slot, long value){ LONGS.set(slots, (slot << 4) + 8, value); }
+		@Override public long zeroValue (){ return value(n); }
+		@Override public long keyAt (int pos){ return key(pos); }
+		@Override public long valueAt (int pos){ return value(pos); }
+
+		private void set (int slot, long key, long value) {
+			LONGS.set(slots, slot << 4, key);
+			setValue(slot, value);
+		}
+
+		/** @return slot of the key, or {@code -freeSlot - 1} if absent */
+		int find (long key) {
+			if (key == 0)
+				return containsZeroKey ? n : -n - 1;
+			int slot = (int) HashCommon.mix(key) & mask;
+			for (long k; (k = key(slot)) != 0; slot = (slot + 1) & mask)
+				if (k == key)
+					return slot;
+			return -slot - 1;
+		}
+
+		@Override public boolean containsKey (long key){ return find(key) >= 0; }
+		/** Nothing moves: {@link #find} */
+		@Override public int locate (long key){ return find(key); }
+
+		/** @param free {@code -find(key) - 1} */
+		@Override
+		public void insert (int free, long key, long value) {
+			if (key == 0){
+				containsZeroKey = true;
+				setValue(n, value);
+				return;
+			}
+			if (used >= maxFill){
+				if (n >= MAX_CAPACITY)
+					throw new IllegalStateException("Off-heap bucket is full (%d keys): use more buckets".formatted(used));
+				rehash(n * 2);
+				free = -find(key) - 1;
+			}
+			set(free, key, value);
+			used++;
+		}
+
+		private void rehash (int capacity) {
+			ByteBuffer old = slots;
+			int oldN = n;
+			long zeroValue = value(oldN);
+			allocate(capacity);
+			for (int i = 0; i < oldN; i++){
+				long key = (long) LONGS.get(old, i << 4);
+				if (key == 0)
+					continue;
+				int slot = (int) HashCommon.mix(key) & mask;
+				while (key(slot) != 0)
+					slot = (slot + 1) & mask;
+				set(slot, key, (long) LONGS.get(old, (i << 4) + 8));
+			}
+			setValue(n, zeroValue);
+			allocator.free(old);
+		}
+
+		@Override
+		public void removeAt (int slot) {
+			if (slot == n){
+				containsZeroKey = false;
+				return;
+			}
+			used--;
+			// shift back the keys that can't be found anymore: see Long2LongOpenHashMap#shiftKeys
+			for (int pos = slot, last;;){
+				pos = ((last = pos) + 1) & mask;
+				long curr;
+				for (;;){
+					if ((curr = key(pos)) == 0){
+						set(last, 0, 0);
+						return;
+					}
+					int home = (int) HashCommon.mix(curr) & mask;
+					if (last <= pos ? last >= home || home > pos : last >= home && home > pos)
+						break;
+					pos = (pos + 1) & mask;
+				}
+				set(last, curr, value(pos));
+			}
+		}
+
+		@Override
+		public long getOrDefault (long key, long defaultValue) {
+			int slot = find(key);
+			return slot >= 0 ? value(slot) : defaultValue;
+		}
+
+		/** First used slot from {@code slot} on (the 0 key is not in a slot), -1 if none */
+		@Override
+		public int next (int slot) {
+			for (; slot < n; slot++)
+				if (key(slot) != 0)
+					return slot;
+			return -1;
+		}
+
+		/** Back to the initial capacity: the memory is freed */
+		@Override
+		public void clear () {
+			allocator.free(slots);
+			allocate(initialCapacity);
+			used = 0;
+			containsZeroKey = false;
+		}
+
+		/** The table must not be used anymore */
+		@Override
+		public void release () {
+			allocator.free(slots);
+			slots = null;
+		}
+	}
+
+	@Override
+	Table[] newTables (int numBuckets) {
+		Table[] t = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			t[i] = new Table(expectedSize(i, numBuckets), loadFactor, allocator);
+		return t;
+	}
+
+	/** Direct memory held by the buckets, in bytes */
+	@SuppressWarnings("try")
+	public long offHeapBytes () {
+		long sum = 0;
+		try (var __ = lockLayout()){
+			for (int i = 0; i < tables.length; i++){
+				try (var ___ = readAt(i)){
+					sum += tables[i].bytes();
+				}
+			}
+		}
+		return sum;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.support.BucketTable;
+import com.trivago.fastutilconcurrentwrapper.util.LongLongConsumer;
+
+/**
+ Open addressing table of a {@link TableLongLongMap} bucket: 0 marks a free slot ⇒ the 0 key is kept apart
+ (its slot is the capacity). Lock must be held!
+*/
+interface LongLongTable extends BucketTable {
+	/** Read: nothing moves */
+	boolean containsKey (long key);
+
+	/** Read: nothing moves */
+	long getOrDefault (long key, long defaultValue);
+
+	/**
+	 Write lookup: slot operations ({@link #value}, {@link #setValue}, {@link #insert}, {@link #removeAt}) need it.
+	 @return slot of the key, or {@code -freeSlot - 1} if absent
+	 */
+	int locate (long key);
+
+	long value (int slot);
+
+	void setValue (int slot, long value);
+
+	/** @param free {@code -locate(key) - 1} */
+	void insert (int free, long key, long value);
+
+	/** The key was {@link #locate}d */
+	void removeAt (int slot);
+
+	/** The 0 key's value: valid if {@link #containsNullKey()} */
+	long zeroValue ();
+
+	long keyAt (int pos);
+
+	long valueAt (int pos);
+
+	/** @return previous value, 0 if absent */
+	default long put (long key, long value) {
+		int slot = locate(key);
+		if (slot < 0){
+			insert(-slot - 1, key, value);
+			return 0;
+		}
+		long prev = value(slot);
+		setValue(slot, value);
+		return prev;
+	}
+
+	/** @return removed value, 0 if absent */
+	default long remove (long key) {
+		int slot = locate(key);
+		if (slot < 0)
+			return 0;
+		long prev = value(slot);
+		removeAt(slot);
+		return prev;
+	}
+
+	/** The 0 key first */
+	default void forEach (LongLongConsumer action) {
+		if (containsNullKey())
+			action.accept(0, zeroValue());
+		for (int pos = 0; (pos = next(pos)) >= 0; pos++)
+			action.accept(keyAt(pos), valueAt(pos));
+	}
+}
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.trivago.fastutilconcurrentwrapper.longkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveKeyMap;
+import com.trivago.fastutilconcurrentwrapper.support.LockMetrics;
 import com.trivago.fastutilconcurrentwrapper.support.SmartIterator;
 import com.trivago.fastutilconcurrentwrapper.support.SmartLongIterator;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
 import com.trivago.fastutilconcurrentwrapper.util.CFUtil;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
 import com.trivago.fastutilconcurrentwrapper.util.PaddedLock;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.LongSet;
@@ -13,6 +16,9 @@ import it.unimi.dsi.fastutil.objects.ObjectSet;
 import org.jctools.maps.NonBlockingHashMapLong;
 import org.jspecify.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
@@ -25,6 +31,7 @@ import java.util.function.Function;
 import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
+import javax.management.ObjectName;
 
 /**
  Similar to {@link ConcurrentLongObjectMap}, but backed with NonBlockingHashMapLong ⇒ non-blocking reads 🚀
@@ -42,6 +49,8 @@ public class StripedNonBlockingHashMapLong<E> implements ConcurrentMap<Long,E>,
 	final NonBlockingHashMapLong<E> m;
 	/** @see com.google.common.util.concurrent.Striped#lock(int) */
 	final PaddedLock[] s;
+	/** Opt-in: {@link #enableLockMetrics()} */
+	private volatile @Nullable Metered metered;
 
 	@SuppressWarnings("resource")
 	public StripedNonBlockingHashMapLong (int initialSize, boolean optForSpace, int stripes) {
@@ -54,12 +63,77 @@ public class StripedNonBlockingHashMapLong<E> implements ConcurrentMap<Long,E>,
 	}//new
 
 	/** @see com.google.common.util.concurrent.Striped#get(Object) */
-	protected PaddedLock write (long key) {
-		var lock = s[CFUtil.bucket(key, s.length)];
+	protected CloseableLock write (long key) {
+		int stripe = CFUtil.bucket(key, s.length);
+		var lock = s[stripe];
+		Metered m = metered;
+		if (m != null)
+			return m.write(lock, stripe);
 		lock.lock();
 		return lock;
 	}
 
+	/** Stripe locks with {@link LockMetrics}: the handle releases with the metrics it was acquired with */
+	private static final class Metered {
+		final LockMetrics metrics;
+		final CloseableLock[] unlock;
+
+		Metered (PaddedLock[] s) {
+			metrics = new LockMetrics(s.length);
+			unlock = new CloseableLock[s.length];
+			for (int i = 0; i < s.length; i++){
+				var lock = s[i];
+				int stripe = i;
+				unlock[i] = ()->{
+					if (lock.getHoldCount() == 1)
+						metrics.holdEnd(stripe);
+					lock.unlock();
+				};
+			}
+		}//new
+
+		CloseableLock write (PaddedLock lock, int stripe) {
+			if (lock.tryLock())
+				metrics.acquired(stripe);
+			else {
+				long start = System.nanoTime();
+				lock.lock();
+				metrics.contended(stripe, System.nanoTime() - start, 0);
+			}
+			if (lock.getHoldCount() == 1)
+				metrics.holdStart(stripe);
+			return unlock[stripe];
+		}
+	}
+
+	/**
+	 Opt-in per-stripe write lock counters (reads don't lock).
+	 @return current metrics (the same if already enabled)
+	 @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#enableLockMetrics()
+	 */
+	public synchronized LockMetrics enableLockMetrics () {
+		Metered m = metered;
+		if (m == null)
+			metered = m = new Metered(s);
+		return m.metrics;
+	}
+
+	public synchronized void disableLockMetrics () {
+		metered = null;
+	}
+
+	/** @return current (live) metrics, null if not {@link #enableLockMetrics() enabled} */
+	public @Nullable LockMetrics lockMetrics () {
+		Metered m = metered;
+		return m != null ? m.metrics : null;
+	}
+
+	/** @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#registerLockMetricsMBean(String) */
+	public ObjectName registerLockMetricsMBean (String name) {
+		enableLockMetrics();
+		return LockMetrics.registerMBean(name, this::lockMetrics);
+	}
+
 	@Override public int size (){ return m.size(); }
 	@Override public boolean isEmpty (){ return m.isEmpty(); }
 
@@ -178,6 +252,43 @@ public class StripedNonBlockingHashMapLong<E> implements ConcurrentMap<Long,E>,
 				put(e.getKey(), e.getValue());
 	}
 
+	/** Entries per {@link #writeTo} block */
+	static final int SNAPSHOT_BLOCK = 64 * 1024;
+
+	/**
+	 Binary snapshot (see {@link Snapshot}): blocks of {@value #SNAPSHOT_BLOCK} keys, values by Java serialization.
+	 Non-blocking and weakly consistent like the iterators: the keys are taken first, removed ones are skipped.
+	 The stream is not closed.
+	 */
+	public void writeTo (OutputStream out) throws IOException {
+		long[] keys = m.keySetLong();
+		int blocks = (keys.length + SNAPSHOT_BLOCK - 1) / SNAPSHOT_BLOCK;
+		Snapshot.write(out, blocks, true, (block, o)->{
+			int from = block * SNAPSHOT_BLOCK, to = Math.min(from + SNAPSHOT_BLOCK, keys.length), n = 0;
+			Object[] values = new Object[to - from];
+			for (int i = from; i < to; i++)
+				if ((values[i - from] = m.get(keys[i])) != null)
+					n++;
+			o.writeInt(n);
+			for (int i = from; i < to; i++){
+				if (values[i - from] != null){
+					o.writeLong(keys[i]);
+					o.writeObject(values[i - from]);
+				}
+			}
+		});
+	}
+
+	/** {@link #put}s the entries of a {@link #writeTo} snapshot; blocks are decoded in parallel */
+	public void readFrom (InputStream in) throws IOException {
+		Snapshot.read(in, true, true, (block, blocks, i)->{
+			for (int j = 0, n = i.readInt(); j < n; j++){
+				long key = i.readLong();
+				put(key, Snapshot.<E>readObject(i));
+			}
+		});
+	}
+
 	/** @see NonBlockingHashMapLong.IteratorLong */
 	public static class StripedLongIterator implements SmartLongIterator {
 		private final StripedNonBlockingHashMapLong<?> owner;
@@ -0,0 +1,306 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.util.LongLongConsumer;
+import com.trivago.fastutilconcurrentwrapper.util.SpinLockWord;
+import it.unimi.dsi.fastutil.longs.Long2LongFunction;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ {@link ConcurrentLongLongMap} whose buckets are its own {@link LongLongTable}s instead of fastutil maps:
+ every operation locks the bucket and works on its table. Subclasses provide the tables.
+
+ @see ConcurrentOffHeapLongLongMap
+ @see ConcurrentIncrementalLongLongMap
+*/
+abstract class TableLongLongMap<T extends LongLongTable> extends ConcurrentLongLongMap {
+	/** Set by the subclass constructor */
+	T[] tables;
+	final float loadFactor;
+
+	TableLongLongMap (int numBuckets, float loadFactor, long defaultValue, PrimitiveMapBuilder.MapMode mapMode) {
+		super(numBuckets, defaultValue, mapMode);
+		this.loadFactor = checkLoadFactor(loadFactor);
+	}//new
+
+	/** {@link PrimitiveMapBuilder.MapMode#COMPACT_SPIN} tables that hold their own lock words */
+	TableLongLongMap (float loadFactor, long defaultValue, SpinLockWord[] buckets) {
+		super(defaultValue, buckets);
+		this.loadFactor = checkLoadFactor(loadFactor);
+	}//new
+
+	static float checkLoadFactor (float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("Load factor must be greater than 0 and smaller than 1, but: "+ loadFactor);
+		return loadFactor;
+	}
+
+	/** Empty tables of a {@link #restripe}: see {@link #expectedSize} */
+	abstract T[] newTables (int numBuckets);
+
+	/** Keys a new bucket gets from the current tables when restriped to {@code numBuckets} */
+	int expectedSize (int bucket, int numBuckets) {
+		T[] t = tables;
+		return t[bucket % t.length].size() * t.length / numBuckets;
+	}
+
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		T[] old = tables;
+		tables = newTables(numBuckets);
+		return old;
+	}
+
+	@Override
+	protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+		@SuppressWarnings("unchecked")
+		T old = (T) oldBuckets[oldBucket];
+		old.forEach((key, value)->tables[getBucket(key)].put(key, value));
+		old.release();
+	}
+
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		T t = tables[bucket];
+		out.writeInt(t.size());
+		if (t.containsNullKey()){
+			out.writeLong(0);
+			out.writeLong(t.zeroValue());
+		}
+		for (int pos = 0; (pos = t.next(pos)) >= 0; pos++){
+			out.writeLong(t.keyAt(pos));
+			out.writeLong(t.valueAt(pos));
+		}
+	}
+
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		@Nullable T t = bucket >= 0 ? tables[bucket] : null;
+		for (int i = 0, n = in.readInt(); i < n; i++){
+			long key = in.readLong();
+			long value = in.readLong();
+			if (t != null)
+				t.put(key, value);
+			else
+				put(key, value);
+		}
+	}
+
+	@Override
+	public boolean containsKey (long key) {
+		try (var lock = readKey(key)){
+			return tables[lock.bucket()].containsKey(key);
+		}
+	}
+
+	@Override
+	public long get (long key) {
+		try (var lock = readKey(key)){
+			return tables[lock.bucket()].getOrDefault(key, defaultValue);
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void getAll (long[] keys, long[] out) {
+		checkBatch(keys.length, out.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys);
+			for (int bucket = 0; bucket < tables.length; bucket++){
+				int from = g.from(bucket), to = g.to(bucket);
+				if (from == to)
+					continue;
+				try (var ___ = readAt(bucket)){
+					T t = tables[bucket];
+					for (int i = from; i < to; i++){
+						int k = g.keyIndex(i);
+						out[k] = t.getOrDefault(keys[k], defaultValue);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public long put (long key, long value) {
+		try (var lock = writeKey(key)){
+			return tables[lock.bucket()].put(key, value);
+		}
+	}
+
+	@Override
+	public long remove (long key) {
+		try (var lock = writeKey(key)){
+			return tables[lock.bucket()].remove(key);
+		}
+	}
+
+	@Override
+	public boolean remove (long key, long value) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot < 0 || t.value(slot) != value)
+				return false;
+			t.removeAt(slot);
+			return true;
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void putAll (long[] keys, long[] values, boolean parallel) {
+		checkBatch(keys.length, values.length);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					T t = tables[bucket];
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						int k = g.keyIndex(i);
+						t.put(keys[k], values[k]);
+					}
+				}
+				return 0;
+			});
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public int removeAll (long[] keys, boolean parallel) {
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys, parallel);
+			return forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					T t = tables[bucket];
+					int size = t.size();
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+						t.remove(keys[g.keyIndex(i)]);
+					return size - t.size();
+				}
+			});
+		}
+	}
+
+	@Override
+	public long computeIfAbsent (long key, Long2LongFunction mappingFunction) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot >= 0)
+				return t.value(slot);
+			if (!mappingFunction.containsKey(key))
+				return 0;
+			long newValue = mappingFunction.get(key);
+			t.insert(-slot - 1, key, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeIfPresent (long key, BiFunction<Long,Long,Long> mappingFunction) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot < 0)
+				return 0;
+			Long newValue = mappingFunction.apply(key, t.value(slot));
+			if (newValue == null){
+				t.removeAt(slot);
+				return 0;
+			}
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeLong (long key, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			long newValue = remappingFunction.applyAsLong(key, slot >= 0 ? t.value(slot) : defaultValue);
+			if (slot >= 0)
+				t.setValue(slot, newValue);
+			else
+				t.insert(-slot - 1, key, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeIfPresentLong (long key, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot < 0)
+				return defaultValue;
+			long newValue = remappingFunction.applyAsLong(key, t.value(slot));
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long mergeLong (long key, long value, LongBinaryOperator remappingFunction) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot < 0){
+				t.insert(-slot - 1, key, value);
+				return value;
+			}
+			long newValue = remappingFunction.applyAsLong(t.value(slot), value);
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long addTo (long key, long increment) {
+		try (var lock = writeKey(key)){
+			T t = tables[lock.bucket()];
+			int slot = t.locate(key);
+			if (slot < 0){
+				t.insert(-slot - 1, key, increment);
+				return 0;
+			}
+			long prev = t.value(slot);
+			t.setValue(slot, prev + increment);
+			return prev;
+		}
+	}
+
+	/** Same contract as the fastutil buckets: the lock is released every maxHold entries; the 0 key comes first */
+	@Override
+	protected void forEachAt (int bucket, int maxHold, LongLongConsumer action) {
+		T t = tables[bucket];// stable: a restripe waits for lockLayout
+		forEachAt(bucket, maxHold, t, ()->action.accept(0, t.zeroValue()), pos->action.accept(t.keyAt(pos), t.valueAt(pos)));
+	}
+
+	@Override
+	protected int bucketSize (int bucket) {
+		return tables[bucket].size();
+	}
+
+	/** Every bucket shrinks back to its initial capacity */
+	@SuppressWarnings("try")
+	@Override
+	public void clear () {
+		try (var __ = lockLayout()){
+			for (int i = 0; i < tables.length; i++){
+				try (var ___ = writeAt(i)){
+					tables[i].clear();
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
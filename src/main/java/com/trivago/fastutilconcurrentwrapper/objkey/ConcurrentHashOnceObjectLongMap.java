@@ -0,0 +1,526 @@
+package com.trivago.fastutilconcurrentwrapper.objkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketTable;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
+import com.trivago.fastutilconcurrentwrapper.util.CFUtil;
+import com.trivago.fastutilconcurrentwrapper.util.ObjLongToLongFunction;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ObjLongConsumer;
+
+/**
+ Hash once: the key's {@link CFUtil#hash} picks its bucket ({@code hash % numBuckets}: the low bits) and its slot in the bucket's
+ open addressing table (the high bits) ⇒ one {@code hashCode()} per operation instead of two (the bucket's and fastutil's).
+
+ - Every slot keeps its key's hash: a probe calls {@code equals} on a hash match only, a grow and a {@link #restripe}
+ move keys without {@code hashCode()}.
+ - Batches hash every key once too: an {@code int[]} of hashes per batch.
+ - A key's {@code hashCode()} must not change while it is in the map (like every hash map).
+
+ @see it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap
+*/
+public class ConcurrentHashOnceObjectLongMap<K> extends ConcurrentObjectLongMap<K> {
+	/** Slots of one table */
+	public static final int MAX_CAPACITY = 1 << 30;
+
+	Table[] tables;
+	private final float loadFactor;
+
+	public ConcurrentHashOnceObjectLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+	}//new
+
+	/** @throws UnsupportedOperationException OPTIMISTIC, LOCK_FREE, COPY_ON_WRITE and LEFT_RIGHT mapMode */
+	public ConcurrentHashOnceObjectLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue,
+		PrimitiveMapBuilder.MapMode mapMode
+	){
+		super(numBuckets, defaultValue, mapMode);
+		if (mapMode == PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+			throw new UnsupportedOperationException(mapMode +" has no optimistic read of hash-once tables");
+		if (mapMode == PrimitiveMapBuilder.MapMode.LOCK_FREE || mapMode == PrimitiveMapBuilder.MapMode.COPY_ON_WRITE
+				|| mapMode == PrimitiveMapBuilder.MapMode.LEFT_RIGHT)
+			throw new UnsupportedOperationException(mapMode +" needs fastutil buckets: hash-once tables are not supported");
+		if (!(loadFactor > 0 && loadFactor < 1))
+			throw new IllegalArgumentException("Load factor must be greater than 0 and smaller than 1, but: "+ loadFactor);
+		this.loadFactor = loadFactor;
+		this.tables = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			tables[i] = new Table(initialCapacity, loadFactor);
+	}//new
+
+	/**
+	 One bucket: linear probing from the hash's high bits. Lock must be held!
+	 The null key has no slot: its "slot" is {@link #n}, its value is the last of {@link #values}.
+	 */
+	static final class Table implements BucketTable {
+		/** null = free */
+		@Nullable Object[] keys;
+		/** {@link #n} slots, then the value of the null key */
+		long[] values;
+		/** {@link CFUtil#hash} of the slot's key */
+		int[] hashes;
+		/** Capacity: a power of 2 */
+		int n;
+		private int mask;
+		/** {@code 32 - log2(n)}: {@code hash >>> shift} is the home slot */
+		private int shift;
+		private int maxFill;
+		/** Keys in the slots: all except null */
+		int used;
+		boolean containsNullKey;
+
+		final int initialCapacity;
+		private final float loadFactor;
+
+		Table (int expectedSize, float loadFactor) {
+			this.loadFactor = loadFactor;
+			this.initialCapacity = Math.min(HashCommon.arraySize(Math.max(expectedSize, 2), loadFactor), MAX_CAPACITY);
+			allocate(initialCapacity);
+		}//new
+
+		private void allocate (int capacity) {
+			keys = new Object[capacity];
+			values = new long[capacity + 1];
+			hashes = new int[capacity];
+			n = capacity;
+			mask = capacity - 1;
+			shift = Integer.numberOfLeadingZeros(capacity) + 1;
+			maxFill = Math.min(HashCommon.maxFill(capacity, loadFactor), capacity - 1);
+		}
+
+		@Override public int size (){ return used + (containsNullKey ? 1 : 0); }
+		@Override public boolean containsNullKey (){ return containsNullKey; }
+
+		long value (int slot){ return values[slot]; }
+		void setValue (int slot, long value){ values[slot] = value; }
+
+		/** @return slot of the key, or {@code -freeSlot - 1} if absent */
+		int find (@Nullable Object key, int hash) {
+			if (key == null)
+				return containsNullKey ? n : -n - 1;
+			int slot = hash >>> shift;
+			for (Object k; (k = keys[slot]) != null; slot = (slot + 1) & mask)
+				if (hashes[slot] == hash && (k == key || k.equals(key)))
+					return slot;
+			return -slot - 1;
+		}
+
+		long getOrDefault (@Nullable Object key, int hash, long defaultValue) {
+			int slot = find(key, hash);
+			return slot >= 0 ? values[slot] : defaultValue;
+		}
+
+		/** @param free {@code -find(key, hash) - 1} */
+		void insert (int free, @Nullable Object key, int hash, long value) {
+			if (key == null){
+				containsNullKey = true;
+				values[n] = value;
+				return;
+			}
+			if (used >= maxFill){
+				grow();
+				free = -find(key, hash) - 1;
+			}
+			keys[free] = key;
+			values[free] = value;
+			hashes[free] = hash;
+			used++;
+		}
+
+		/** Twice the capacity: the kept hashes place the keys */
+		private void grow () {
+			if (n >= MAX_CAPACITY)
+				throw new IllegalStateException("Bucket is full (%d keys): use more buckets".formatted(used));
+			Object[] oldKeys = keys;
+			long[] oldValues = values;
+			int[] oldHashes = hashes;
+			int oldN = n;
+			allocate(n * 2);
+			values[n] = oldValues[oldN];
+			for (int i = 0; i < oldN; i++){
+				Object key = oldKeys[i];
+				if (key != null){
+					int slot = oldHashes[i] >>> shift;
+					while (keys[slot] != null)
+						slot = (slot + 1) & mask;
+					keys[slot] = key;
+					values[slot] = oldValues[i];
+					hashes[slot] = oldHashes[i];
+				}
+			}
+		}
+
+		/** The key was {@link #find found} */
+		void removeAt (int slot) {
+			if (slot == n){
+				containsNullKey = false;
+				return;
+			}
+			used--;
+			// shift back the keys that can't be found anymore: see Object2LongOpenHashMap#shiftKeys
+			for (int pos = slot, last;;){
+				pos = ((last = pos) + 1) & mask;
+				Object curr;
+				for (;;){
+					if ((curr = keys[pos]) == null){
+						keys[last] = null;
+						return;
+					}
+					int home = hashes[pos] >>> shift;
+					if (last <= pos ? last >= home || home > pos : last >= home && home > pos)
+						break;
+					pos = (pos + 1) & mask;
+				}
+				keys[last] = curr;
+				values[last] = values[pos];
+				hashes[last] = hashes[pos];
+			}
+		}
+
+		/** @return previous value, 0 if absent */
+		long put (@Nullable Object key, int hash, long value) {
+			int slot = find(key, hash);
+			if (slot < 0){
+				insert(-slot - 1, key, hash, value);
+				return 0;
+			}
+			long prev = values[slot];
+			values[slot] = value;
+			return prev;
+		}
+
+		/** @return removed value, 0 if absent */
+		long remove (@Nullable Object key, int hash) {
+			int slot = find(key, hash);
+			if (slot < 0)
+				return 0;
+			long prev = values[slot];
+			removeAt(slot);
+			return prev;
+		}
+
+		/** First slot with a key from {@code slot} on (the null key has none), -1 if none */
+		@Override
+		public int next (int slot) {
+			for (; slot < n; slot++)
+				if (keys[slot] != null)
+					return slot;
+			return -1;
+		}
+
+		/** Back to the initial capacity */
+		@Override
+		public void clear () {
+			if (n == initialCapacity)
+				Arrays.fill(keys, null);
+			else
+				allocate(initialCapacity);
+			used = 0;
+			containsNullKey = false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K> K key (Table t, int slot) {
+		return (K) t.keys[slot];
+	}
+
+	private static int[] hashes (Object[] keys) {
+		int[] hashes = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			hashes[i] = CFUtil.hash(keys[i]);
+		return hashes;
+	}
+
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		Table[] old = tables;
+		tables = new Table[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			tables[i] = new Table(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+		return old;
+	}
+
+	/** Kept hashes: no {@code hashCode()} */
+	@Override
+	protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+		Table t = (Table) oldBuckets[oldBucket];
+		if (t.containsNullKey())
+			tables[bucketOfHash(0)].put(null, 0, t.value(t.n));
+		for (int slot = 0; (slot = t.next(slot)) >= 0; slot++)
+			tables[bucketOfHash(t.hashes[slot])].put(t.keys[slot], t.hashes[slot], t.value(slot));
+	}
+
+	@Override
+	protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+		Table t = tables[bucket];
+		out.writeInt(t.size());
+		if (t.containsNullKey()){
+			out.writeObject(null);
+			out.writeLong(t.value(t.n));
+		}
+		for (int slot = 0; (slot = t.next(slot)) >= 0; slot++){
+			out.writeObject(t.keys[slot]);
+			out.writeLong(t.value(slot));
+		}
+	}
+
+	@Override
+	protected void readBucket (ObjectInput in, int bucket) throws IOException {
+		Table t = bucket >= 0 ? tables[bucket] : null;
+		for (int i = 0, n = in.readInt(); i < n; i++){
+			K key = Snapshot.<K>readObject(in);
+			long value = in.readLong();
+			if (t != null)
+				t.put(key, CFUtil.hash(key), value);
+			else
+				put(key, value);
+		}
+	}
+
+	@Override
+	public boolean containsKey (K key) {
+		int hash = CFUtil.hash(key);
+		try (var lock = readHash(hash)){
+			return tables[lock.bucket()].find(key, hash) >= 0;
+		}
+	}
+
+	@Override
+	public long get (K key) {
+		int hash = CFUtil.hash(key);
+		try (var lock = readHash(hash)){
+			return tables[lock.bucket()].getOrDefault(key, hash, defaultValue);
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void getAll (K[] keys, long[] out) {
+		checkBatch(keys.length, out.length);
+		int[] hashes = hashes(keys);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys.length, false, i->bucketOfHash(hashes[i]));
+			for (int bucket = 0; bucket < tables.length; bucket++){
+				int from = g.from(bucket), to = g.to(bucket);
+				if (from == to)
+					continue;
+				try (var ___ = readAt(bucket)){
+					Table t = tables[bucket];
+					for (int i = from; i < to; i++){
+						int k = g.keyIndex(i);
+						out[k] = t.getOrDefault(keys[k], hashes[k], defaultValue);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public long put (K key, long value) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			return tables[lock.bucket()].put(key, hash, value);
+		}
+	}
+
+	@Override
+	public long remove (K key) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			return tables[lock.bucket()].remove(key, hash);
+		}
+	}
+
+	@Override
+	public boolean remove (K key, long value) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot < 0 || t.value(slot) != value)
+				return false;
+			t.removeAt(slot);
+			return true;
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public void putAll (K[] keys, long[] values, boolean parallel) {
+		checkBatch(keys.length, values.length);
+		int[] hashes = hashes(keys);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys.length, parallel, i->bucketOfHash(hashes[i]));
+			forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					Table t = tables[bucket];
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						int k = g.keyIndex(i);
+						t.put(keys[k], hashes[k], values[k]);
+					}
+				}
+				return 0;
+			});
+		}
+	}
+
+	@SuppressWarnings("try")
+	@Override
+	public int removeAll (K[] keys, boolean parallel) {
+		int[] hashes = hashes(keys);
+		try (var __ = lockLayout()){
+			BucketGroups g = groupByBucket(keys.length, parallel, i->bucketOfHash(hashes[i]));
+			return forEachBucket(g, parallel, bucket->{
+				try (var ___ = writeAt(bucket)){
+					Table t = tables[bucket];
+					int size = t.size();
+					for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+						int k = g.keyIndex(i);
+						t.remove(keys[k], hashes[k]);
+					}
+					return size - t.size();
+				}
+			});
+		}
+	}
+
+	@Override
+	public long computeIfAbsent (K key, Object2LongFunction<K> mappingFunction) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot >= 0)
+				return t.value(slot);
+			if (!mappingFunction.containsKey(key))
+				return 0;
+			long newValue = mappingFunction.getLong(key);
+			t.insert(-slot - 1, key, hash, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeIfPresent (K key, BiFunction<K,Long,Long> mappingFunction) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot < 0)
+				return 0;
+			Long newValue = mappingFunction.apply(key, t.value(slot));
+			if (newValue == null){
+				t.removeAt(slot);
+				return 0;
+			}
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeLong (K key, ObjLongToLongFunction<? super K> remappingFunction) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			long newValue = remappingFunction.applyAsLong(key, slot >= 0 ? t.value(slot) : defaultValue);
+			if (slot >= 0)
+				t.setValue(slot, newValue);
+			else
+				t.insert(-slot - 1, key, hash, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long computeIfPresentLong (K key, ObjLongToLongFunction<? super K> remappingFunction) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot < 0)
+				return defaultValue;
+			long newValue = remappingFunction.applyAsLong(key, t.value(slot));
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long mergeLong (K key, long value, LongBinaryOperator remappingFunction) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot < 0){
+				t.insert(-slot - 1, key, hash, value);
+				return value;
+			}
+			long newValue = remappingFunction.applyAsLong(t.value(slot), value);
+			t.setValue(slot, newValue);
+			return newValue;
+		}
+	}
+
+	@Override
+	public long addTo (K key, long increment) {
+		int hash = CFUtil.hash(key);
+		try (var lock = writeHash(hash, key)){
+			Table t = tables[lock.bucket()];
+			int slot = t.find(key, hash);
+			if (slot < 0){
+				t.insert(-slot - 1, key, hash, increment);
+				return 0;
+			}
+			long prev = t.value(slot);
+			t.setValue(slot, prev + increment);
+			return prev;
+		}
+	}
+
+	/** Same contract as the fastutil buckets: the lock is released every maxHold entries; the null key comes first */
+	@Override
+	protected void forEachAt (int bucket, int maxHold, ObjLongConsumer<? super K> action) {
+		Table t = tables[bucket];// stable: a restripe waits for lockLayout
+		forEachAt(bucket, maxHold, t, ()->action.accept(null, t.value(t.n)), slot->action.accept(key(t, slot), t.value(slot)));
+	}
+
+	@Override
+	protected int bucketSize (int bucket) {
+		return tables[bucket].size();
+	}
+
+	/** Every bucket shrinks back to its initial capacity */
+	@SuppressWarnings("try")
+	@Override
+	public void clear () {
+		try (var __ = lockLayout()){
+			for (int i = 0; i < tables.length; i++){
+				try (var ___ = writeAt(i)){
+					tables[i].clear();
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
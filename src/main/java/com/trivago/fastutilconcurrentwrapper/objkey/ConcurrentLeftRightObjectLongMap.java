@@ -0,0 +1,80 @@
+package com.trivago.fastutilconcurrentwrapper.objkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import org.jspecify.annotations.Nullable;
+
+/**
+ {@link PrimitiveMapBuilder.MapMode#LEFT_RIGHT}: {@link #get} and {@link #containsKey} read the published copy of the bucket
+ without any lock (wait-free). A writer changes {@link #maps} in place; on unlock it becomes the published copy and the
+ change is applied to the other one ({@link #copies}) as soon as its last reader has left.
+*/
+public class ConcurrentLeftRightObjectLongMap<K> extends ConcurrentObjectLongMap<K> {
+	/** The published copy of every bucket: the same entries as {@link #maps} when no write is in progress */
+	protected Object2LongOpenHashMap<K>[] copies;
+
+	@SuppressWarnings({"rawtypes","unchecked"})
+	public ConcurrentLeftRightObjectLongMap (
+		int numBuckets,
+		int initialCapacity,
+		float loadFactor,
+		long defaultValue
+	){
+		super(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.LEFT_RIGHT);
+		this.copies = new Object2LongOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			copies[i] = maps[i].clone();
+		for (int i = 0; i < numBuckets; i++)
+			writeAt(i).close();// publishes the empty buckets
+	}//new
+
+	@SuppressWarnings({"rawtypes","unchecked"})
+	@Override
+	protected Object[] newBuckets (int numBuckets) {
+		Object[] old = super.newBuckets(numBuckets);
+		copies = new Object2LongOpenHashMap[numBuckets];
+		for (int i = 0; i < numBuckets; i++)
+			copies[i] = maps[i].clone();
+		return old;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void syncCopy (int bucket, boolean all, long key, @Nullable Object objectKey) {
+		Object2LongOpenHashMap<K> written = maps[bucket], copy = copies[bucket];
+		if (all){
+			copy.clear();
+			copy.putAll(written);
+		} else {
+			K k = (K) objectKey;
+			if (written.containsKey(k))
+				copy.put(k, written.getOrDefault(k, defaultValue));
+			else
+				copy.removeLong(k);
+		}
+		maps[bucket] = copy;
+		copies[bucket] = written;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean containsKey (K key) {
+		var reader = arrive(key);
+		if (reader == null)
+			return super.containsKey(key);
+		try (reader){
+			return ((Object2LongOpenHashMap<K>) reader.map()).containsKey(key);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public long get (K key) {
+		var reader = arrive(key);
+		if (reader == null)
+			return super.get(key);
+		try (reader){
+			return ((Object2LongOpenHashMap<K>) reader.map()).getOrDefault(key, defaultValue);
+		}
+	}
+}
\ No newline at end of file
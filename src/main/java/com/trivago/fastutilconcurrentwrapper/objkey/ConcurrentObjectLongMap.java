@@ -2,89 +2,369 @@ package com.trivago.fastutilconcurrentwrapper.objkey;
 
 import com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap;
 import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.support.BucketGroups;
+import com.trivago.fastutilconcurrentwrapper.support.BucketSpliterator;
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
+import com.trivago.fastutilconcurrentwrapper.util.ObjLongToLongFunction;
+import it.unimi.dsi.fastutil.objects.AbstractObject2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ConcurrentObjectLongMap<K> extends PrimitiveConcurrentMap<K,Long> {
-    protected final Object2LongOpenHashMap<K>[] maps;
+    protected Object2LongOpenHashMap<K>[] maps;
     protected final long defaultValue;
+    private final float loadFactor;
 
-    @SuppressWarnings("unchecked")
-		public ConcurrentObjectLongMap (
+    public ConcurrentObjectLongMap (
         int numBuckets,
         int initialCapacity,
         float loadFactor,
         long defaultValue
     ){
-        super(numBuckets);
+        this(numBuckets, initialCapacity, loadFactor, defaultValue, PrimitiveMapBuilder.MapMode.BLOCKING);
+    }
+
+    @SuppressWarnings({"rawtypes","unchecked"})
+    protected ConcurrentObjectLongMap (
+        int numBuckets,
+        int initialCapacity,
+        float loadFactor,
+        long defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
         this.maps = new Object2LongOpenHashMap[numBuckets];
         this.defaultValue = defaultValue;
+        this.loadFactor = loadFactor;
         for (int i = 0; i < numBuckets; i++)
-            maps[i] = new Object2LongOpenHashMap<>(initialCapacity, loadFactor);
+            maps[i] = newMap(initialCapacity, loadFactor);
+    }
+
+    /** For subclasses with their own bucket storage: no {@link #maps}, every operation must be overridden */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    protected ConcurrentObjectLongMap (
+        int numBuckets,
+        long defaultValue,
+        PrimitiveMapBuilder.MapMode mapMode
+    ){
+        super(numBuckets, mapMode);
+        this.maps = new Object2LongOpenHashMap[0];
+        this.defaultValue = defaultValue;
+        this.loadFactor = 0;
     }
 
     @Override protected final Object2LongOpenHashMap<K> mapAt (int index){ return maps[index]; }
 
+    /** Bucket map: e.g. one with a bounded lookup for optimistic reads */
+    protected Object2LongOpenHashMap<K> newMap (int expected, float loadFactor) {
+        return new Object2LongOpenHashMap<>(expected, loadFactor);
+    }
+
+    @SuppressWarnings({"rawtypes","unchecked"})
+    @Override
+    protected Object[] newBuckets (int numBuckets) {
+        Object2LongOpenHashMap<K>[] old = maps;
+        maps = new Object2LongOpenHashMap[numBuckets];
+        for (int i = 0; i < numBuckets; i++)
+            maps[i] = newMap(old[i % old.length].size() * old.length / numBuckets, loadFactor);
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void moveBucket (Object[] oldBuckets, int oldBucket) {
+        for (var it = ((Object2LongOpenHashMap<K>) oldBuckets[oldBucket]).object2LongEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            maps[getBucket(e.getKey())].put(e.getKey(), e.getLongValue());
+        }
+    }
+
+    @Override
+    protected boolean snapshotObjects (){ return true; }
+
+    @Override
+    protected void writeBucket (int bucket, ObjectOutput out) throws IOException {
+        Object2LongOpenHashMap<K> map = maps[bucket];
+        out.writeInt(map.size());
+        for (var it = map.object2LongEntrySet().fastIterator(); it.hasNext(); ){
+            var e = it.next();
+            out.writeObject(e.getKey());
+            out.writeLong(e.getLongValue());
+        }
+    }
+
+    @Override
+    protected void readBucket (ObjectInput in, int bucket) throws IOException {
+        Object2LongOpenHashMap<K> map = bucket >= 0 ? maps[bucket] : null;
+        for (int i = 0, n = in.readInt(); i < n; i++){
+            K key = Snapshot.<K>readObject(in);
+            long value = in.readLong();
+            if (map != null)
+                map.put(key, value);
+            else
+                put(key, value);
+        }
+    }
+
     public boolean containsKey(K key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].containsKey(key);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].containsKey(key);
         }
     }
 
     public long get (K key) {
-        int bucket = getBucket(key);
-        try (var __ = readAt(bucket)){
-            return maps[bucket].getOrDefault(key, defaultValue);
+        try (var lock = readKey(key)){
+            return maps[lock.bucket()].getOrDefault(key, defaultValue);
+        }
+    }
+
+    /**
+     Batch {@link #get}: {@code out[i] = get(keys[i])}.
+     Keys are grouped by bucket ⇒ one read lock per bucket instead of one per key; no allocation.
+     */
+    @SuppressWarnings("try")
+    public void getAll (K[] keys, long[] out) {
+        checkBatch(keys.length, out.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys);
+            for (int bucket = 0; bucket < maps.length; bucket++){
+                int from = g.from(bucket), to = g.to(bucket);
+                if (from == to)
+                    continue;
+                try (var ___ = readAt(bucket)){
+                    Object2LongOpenHashMap<K> map = maps[bucket];
+                    for (int i = from; i < to; i++){
+                        int k = g.keyIndex(i);
+                        out[k] = map.getOrDefault(keys[k], defaultValue);
+                    }
+                }
+            }
         }
     }
 
     public long put (K key, long value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].put(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].put(key, value);
         }
     }
 
     public long getDefaultValue (){ return defaultValue; }
 
     public long remove (K key) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].removeLong(key);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].removeLong(key);
         }
     }
 
     public boolean remove (K key, long value) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].remove(key, value);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].remove(key, value);
+        }
+    }
+
+    /** Batch {@link #put}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key */
+    public void putAll (K[] keys, long[] values) {
+        putAll(keys, values, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public void putAll (K[] keys, long[] values, boolean parallel) {
+        checkBatch(keys.length, values.length);
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Object2LongOpenHashMap<K> map = maps[bucket];
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++){
+                        int k = g.keyIndex(i);
+                        map.put(keys[k], values[k]);
+                    }
+                }
+                return 0;
+            });
+        }
+    }
+
+    /**
+     Batch {@link #remove}: keys are grouped by bucket ⇒ one write lock hold per bucket instead of one per key
+     @return number of removed keys
+     */
+    public int removeAll (K[] keys) {
+        return removeAll(keys, false);
+    }
+
+    /** @param parallel different buckets are written by different ForkJoin workers */
+    @SuppressWarnings("try")
+    public int removeAll (K[] keys, boolean parallel) {
+        try (var __ = lockLayout()){
+            BucketGroups g = groupByBucket(keys, parallel);
+            return forEachBucket(g, parallel, bucket->{
+                try (var ___ = writeAt(bucket)){
+                    Object2LongOpenHashMap<K> map = maps[bucket];
+                    int size = map.size();
+                    for (int i = g.from(bucket), to = g.to(bucket); i < to; i++)
+                        map.removeLong(keys[g.keyIndex(i)]);
+                    return size - map.size();
+                }
+            });
         }
     }
 
     public long computeIfAbsent (K key, Object2LongFunction<K> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfAbsent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfAbsent(key, mappingFunction);
         }
     }
 
     public long computeIfPresent (K key, BiFunction<K,Long,Long> mappingFunction) {
-        int bucket = getBucket(key);
-        try (var __ = writeAt(bucket)){
-            return maps[bucket].computeIfPresent(key, mappingFunction);
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].computeIfPresent(key, mappingFunction);
+        }
+    }
+
+    /**
+     Primitive {@link java.util.Map#compute} without boxing.
+     An absent key is passed to the function with {@link #getDefaultValue()}; the result is always stored.
+     @return new value
+     */
+    public long computeLong (K key, ObjLongToLongFunction<? super K> remappingFunction) {
+        try (var lock = writeKey(key)){
+            Object2LongOpenHashMap<K> map = maps[lock.bucket()];
+            long newValue = remappingFunction.applyAsLong(key, map.getOrDefault(key, defaultValue));
+            map.put(key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     Primitive {@link #computeIfPresent} without boxing.
+     @return new value or {@link #getDefaultValue()} if the key is absent
+     */
+    public long computeIfPresentLong (K key, ObjLongToLongFunction<? super K> remappingFunction) {
+        try (var lock = writeKey(key)){
+            Object2LongOpenHashMap<K> map = maps[lock.bucket()];
+            if (!map.containsKey(key))
+                return defaultValue;
+            long newValue = remappingFunction.applyAsLong(key, map.getLong(key));
+            map.put(key, newValue);
+            return newValue;
         }
     }
 
+    /**
+     Primitive {@link java.util.Map#merge} without boxing: value if the key is absent, otherwise {@code remappingFunction(oldValue, value)}.
+     @return new value
+     */
+    public long mergeLong (K key, long value, LongBinaryOperator remappingFunction) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].mergeLong(key, value, remappingFunction);
+        }
+    }
+
+    /**
+     Adds the increment to the key's value (to 0 if the key is absent).
+     @return previous value, 0 if the key was absent
+     @see Object2LongOpenHashMap#addTo
+     */
+    public long addTo (K key, long increment) {
+        try (var lock = writeKey(key)){
+            return maps[lock.bucket()].addTo(key, increment);
+        }
+    }
+
+    /**
+     Every entry, bucket by bucket under the bucket's read lock: no boxing, no allocation per entry.
+     The action must not modify this map.
+     */
+    public void forEach (ObjLongConsumer<? super K> action) {
+        forEach(action, Integer.MAX_VALUE);
+    }
+
+    /** @param maxHold the bucket's read lock is released every maxHold entries ⇒ writers don't wait for the whole bucket (see {@link #forEachAt}) */
+    @SuppressWarnings("try")
+    public void forEach (ObjLongConsumer<? super K> action, int maxHold) {
+        try (var __ = lockLayout()){
+            for (int bucket = 0; bucket < numBuckets(); bucket++)
+                forEachAt(bucket, maxHold, action);
+        }
+    }
+
+    /** One bucket of {@link #forEach(ObjLongConsumer, int)} */
+    protected void forEachAt (int bucket, int maxHold, ObjLongConsumer<? super K> action) {
+        forEachAt(bucket, maxHold, b->maps[b].object2LongEntrySet().fastIterator(), e->action.accept(e.getKey(), e.getLongValue()));
+    }
+
+    /** @see #forEach(ObjLongConsumer) */
+    public void forEachKey (Consumer<? super K> action) {
+        forEachKey(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachKey (Consumer<? super K> action, int maxHold) {
+        forEach((key, value)->action.accept(key), maxHold);
+    }
+
+    /** @see #forEach(ObjLongConsumer) */
+    public void forEachValue (LongConsumer action) {
+        forEachValue(action, Integer.MAX_VALUE);
+    }
+
+    public void forEachValue (LongConsumer action, int maxHold) {
+        forEach((key, value)->action.accept(value), maxHold);
+    }
+
+    /**
+     Keys as a stream: {@code keys().parallel()} splits the bucket range between workers, see {@link BucketSpliterator}.
+     Weakly consistent: every bucket is copied under its read lock.
+     */
+    public Stream<K> keys () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<K>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(key)))), false);
+    }
+
+    /** @see #keys() */
+    public LongStream values () {
+        int numBuckets = numBuckets();
+        return StreamSupport.longStream(new BucketSpliterator.OfLong(numBuckets, size(), BucketSpliterator.VALUES,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(value)))), false);
+    }
+
+    /** Immutable entries ({@link AbstractObject2LongMap.BasicEntry}) @see #keys() */
+    public Stream<Object2LongMap.Entry<K>> entries () {
+        int numBuckets = numBuckets();
+        return StreamSupport.stream(new BucketSpliterator.OfRef<Object2LongMap.Entry<K>>(numBuckets, size(), BucketSpliterator.KEYS,
+            (sink, bucket)->forEachBucketOf(bucket, numBuckets, b->forEachAt(b, Integer.MAX_VALUE, (key, value)->sink.accept(new AbstractObject2LongMap.BasicEntry<>(key, value))))), false);
+    }
+
     public static <K> PrimitiveMapBuilder<ConcurrentObjectLongMap<K>,Long> newBuilder () {
         return new PrimitiveMapBuilder<>(){
             @Override
             public ConcurrentObjectLongMap<K> build() {
+                if (hashOnce && !offHeap && mappedFile == null && !incrementalResize)
+                    return new ConcurrentHashOnceObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue != null ? super.defaultValue : 0, mapMode);
+                requireFastutilBuckets();
                 return switch (mapMode){
                     case BUSY_WAITING -> new ConcurrentBusyWaitingObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
                     case BLOCKING -> new ConcurrentObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case ADAPTIVE, READER_BIASED, COMPACT_SPIN -> new ConcurrentObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue, mapMode);
+                    case OPTIMISTIC -> new ConcurrentOptimisticObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case COPY_ON_WRITE -> new ConcurrentCopyOnWriteObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case LEFT_RIGHT -> new ConcurrentLeftRightObjectLongMap<>(buckets, initialCapacity, loadFactor, super.defaultValue);
+                    case LOCK_FREE -> throw new UnsupportedOperationException(mapMode +" is implemented by ConcurrentLongLongMap only");
                 };
             }
         };
@@ -0,0 +1,128 @@
+package com.trivago.fastutilconcurrentwrapper.objkey;
+
+import com.trivago.fastutilconcurrentwrapper.support.OptimisticProbe;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableStampedLock;
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/**
+ {@link SynchronizedObj2ObjLinkedHashMap} with optimistic point reads: {@link #get}, {@link #containsKey}, {@link #firstKey},
+ {@link #lastKey}, {@link #size} and {@link #isEmpty} read the map without locking and {@link CloseableStampedLock#validate validate}
+ the stamp afterwards; on a concurrent write they retry under the read lock ⇒ readers don't contend on one reader count.
+ Point lookups probe the table arrays as read, at most capacity slots: a table being rehashed, trimmed or cleared can
+ have no free slot on the probe path, where fastutil's own lookup would never end.
+ Keys' {@code equals} can see a key of a concurrently rehashed map: it must not have side effects.
+
+ Not reentrant (unlike the superclass): the actions of {@link #forEach}, {@link #forEachEntryWrite} etc. and {@link #withWriteLock}
+ must not call this map.
+
+ @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+*/
+public class StampedObj2ObjLinkedHashMap<K,V> extends SynchronizedObj2ObjLinkedHashMap<K,V> {
+	protected final CloseableStampedLock stampedLock = new CloseableStampedLock();
+
+	public StampedObj2ObjLinkedHashMap (int expected, float f){ super(new Table<>(expected, f), new CloseableReadWriteLock()); }//new
+
+	public StampedObj2ObjLinkedHashMap (){ this(Hash.DEFAULT_INITIAL_SIZE, Hash.DEFAULT_LOAD_FACTOR); }//new
+
+	/** fastutil map with the bounded lookup of {@link OptimisticProbe} */
+	static final class Table<K,V> extends Object2ObjectLinkedOpenHashMap<K,V> {
+		Table (int expected, float f){ super(expected, f); }//new
+
+		int slot (Object k){ return OptimisticProbe.slot(key, containsNullKey, k); }
+
+		/** @param slot found by {@link #slot}: out of bounds if the value array has been replaced by a smaller one */
+		V valueAt (int slot){ return value[slot]; }
+	}
+
+	@Override
+	protected CloseableLock read () {
+		return stampedLock.read();
+	}
+	@Override
+	protected CloseableLock write () {
+		return stampedLock.write();
+	}
+
+	@Override
+	public int size () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			int result = m.size();
+			if (stampedLock.validate(stamp))
+				return result;
+		}
+		return super.size();
+	}
+
+	@Override
+	public boolean isEmpty () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			boolean result = m.isEmpty();
+			if (stampedLock.validate(stamp))
+				return result;
+		}
+		return super.isEmpty();
+	}
+
+	/** @throws java.util.NoSuchElementException the map is empty (confirmed under the read lock) */
+	@Override
+	public K firstKey () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				K result = m.firstKey();
+				if (stampedLock.validate(stamp))
+					return result;
+			} catch (RuntimeException ignore){}// empty or torn read: the read lock decides
+		}
+		return super.firstKey();
+	}
+
+	/** @throws java.util.NoSuchElementException the map is empty (confirmed under the read lock) */
+	@Override
+	public K lastKey () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				K result = m.lastKey();
+				if (stampedLock.validate(stamp))
+					return result;
+			} catch (RuntimeException ignore){}// empty or torn read: the read lock decides
+		}
+		return super.lastKey();
+	}
+
+	@Override
+	public boolean containsKey (Object key) {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				int slot = ((Table<K,V>) m).slot(key);
+				if (slot != OptimisticProbe.TORN && stampedLock.validate(stamp))
+					return slot >= 0;
+			} catch (RuntimeException ignore){}// torn read of a concurrently rehashed map
+		}
+		return super.containsKey(key);
+	}
+
+	@Override
+	public V get (Object key) {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				var t = (Table<K,V>) m;
+				int slot = t.slot(key);
+				if (slot != OptimisticProbe.TORN){
+					V result = slot >= 0 ? t.valueAt(slot) : t.defaultReturnValue();
+					if (stampedLock.validate(stamp))
+						return result;
+				}
+			} catch (RuntimeException ignore){}// torn read of a concurrently rehashed map
+		}
+		return super.get(key);
+	}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.trivago.fastutilconcurrentwrapper.objkey;
 
+import com.trivago.fastutilconcurrentwrapper.support.Snapshot;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
 import com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock;
 import it.unimi.dsi.fastutil.objects.Object2ObjectFunction;
@@ -11,8 +12,12 @@ import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectSortedSet;
 import org.jspecify.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Comparator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -24,13 +29,24 @@ import java.util.function.Function;
 */
 public class SynchronizedObj2ObjLinkedHashMap<K,V> implements Object2ObjectSortedMap<K,V> {
 	protected final Object2ObjectLinkedOpenHashMap<K,V> m;
-	protected final CloseableReadWriteLock lock = new CloseableReadWriteLock();
+	protected final CloseableReadWriteLock lock;
+
+	/** @param lock e.g. a {@link com.trivago.fastutilconcurrentwrapper.util.ReaderBiasedReadWriteLock} for read-mostly maps */
+	public SynchronizedObj2ObjLinkedHashMap (int expected, float f, CloseableReadWriteLock lock) {
+		this(new Object2ObjectLinkedOpenHashMap<>(expected, f), lock);
+	}//new
+
+	/** @param m empty map of a subclass: e.g. one exposing its table */
+	protected SynchronizedObj2ObjLinkedHashMap (Object2ObjectLinkedOpenHashMap<K,V> m, CloseableReadWriteLock lock) {
+		this.m = m;
+		this.lock = Objects.requireNonNull(lock);
+	}//new
 
 	public SynchronizedObj2ObjLinkedHashMap (int expected, float f) {
-		m = new Object2ObjectLinkedOpenHashMap<>(expected, f);
+		this(expected, f, new CloseableReadWriteLock());
 	}//new
 
-	public SynchronizedObj2ObjLinkedHashMap (){ m = new Object2ObjectLinkedOpenHashMap<>(); }//new
+	public SynchronizedObj2ObjLinkedHashMap (){ m = new Object2ObjectLinkedOpenHashMap<>(); lock = new CloseableReadWriteLock(); }//new
 
 	protected CloseableLock read () {
 		return lock.read();
@@ -48,6 +64,38 @@ public class SynchronizedObj2ObjLinkedHashMap<K,V> implements Object2ObjectSorte
 		try (var __ = read()){ return m.isEmpty(); }
 	}
 
+	/**
+	 Binary snapshot (see {@link Snapshot}) in iteration order: one block, encoded under the read lock.
+	 Values (and object keys) by Java serialization. The stream is not closed.
+	 */
+	@SuppressWarnings("try")
+	public void writeTo (OutputStream out) throws IOException {
+		Snapshot.write(out, 1, true, (block, o)->{
+			try (var __ = read()){
+				o.writeInt(m.size());
+				for (var it = m.object2ObjectEntrySet().fastIterator(); it.hasNext(); ){
+					var e = it.next();
+					o.writeObject(e.getKey());
+					o.writeObject(e.getValue());
+				}
+			}
+		});
+	}
+
+	/** {@link #put}s the entries of a {@link #writeTo} snapshot in their order: restored sequentially */
+	@SuppressWarnings("try")
+	public void readFrom (InputStream in) throws IOException {
+		Snapshot.read(in, true, false, (block, blocks, i)->{
+			for (int j = 0, n = i.readInt(); j < n; j++){
+				K key = Snapshot.<K>readObject(i);
+				V value = Snapshot.readObject(i);
+				try (var __ = write()){
+					m.put(key, value);
+				}
+			}
+		});
+	}
+
 	public K[] keyArray (K[] keyArray) {
 		try (var __ = read()){ return m.keySet().toArray(keyArray); }
 	}
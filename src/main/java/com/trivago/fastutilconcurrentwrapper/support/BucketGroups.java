@@ -0,0 +1,85 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.Arrays;
+
+/**
+ Keys of a batch operation grouped by bucket: counting sort of key indexes ⇒ one lock hold per bucket.
+
+ The thread-local instance ({@link #local}) is reused: batches up to {@link #MAX_LOCAL} keys don't allocate.
+ It is valid until the next {@link #local} call in the same thread.
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#groupByBucket(long[])
+*/
+public final class BucketGroups {
+	public static final int MAX_LOCAL = 1 << 16;
+
+	private static final ThreadLocal<BucketGroups> LOCAL = ThreadLocal.withInitial(()->new BucketGroups(8, 256));
+
+	private int numBuckets;
+	/** bucket of every key; filled by the caller */
+	private int[] bucketOf;
+	/** key indexes sorted by bucket */
+	private int[] order;
+	/** keys of bucket b: order[start[b] .. start[b+1]) */
+	private int[] start;
+	private int[] cursor;
+
+	public BucketGroups (@Positive int numBuckets, @PositiveOrZero int size) {
+		this.numBuckets = numBuckets;
+		bucketOf = new int[size];
+		order = new int[size];
+		start = new int[numBuckets + 1];
+		cursor = new int[numBuckets];
+	}//new
+
+	/** Thread-local instance for up to {@link #MAX_LOCAL} keys, a new one for bigger batches */
+	public static BucketGroups local (@Positive int numBuckets, @PositiveOrZero int size) {
+		if (size > MAX_LOCAL)
+			return new BucketGroups(numBuckets, size);
+		BucketGroups g = LOCAL.get();
+		g.ensure(numBuckets, size);
+		return g;
+	}
+
+	private void ensure (int numBuckets, int size) {
+		if (bucketOf.length < size){
+			int capacity = Math.min(Math.max(size, bucketOf.length << 1), MAX_LOCAL);
+			bucketOf = new int[capacity];
+			order = new int[capacity];
+		}
+		if (cursor.length < numBuckets){
+			start = new int[numBuckets + 1];
+			cursor = new int[numBuckets];
+		}
+		this.numBuckets = numBuckets;
+	}
+
+	/** To be filled with the bucket of every key, then {@link #sort} */
+	public int[] bucketOf (){ return bucketOf; }
+
+	public BucketGroups sort (@PositiveOrZero int size) {
+		Arrays.fill(start, 0, numBuckets + 1, 0);
+		for (int i = 0; i < size; i++)
+			start[bucketOf[i] + 1]++;
+		for (int b = 0; b < numBuckets; b++)
+			start[b + 1] += start[b];
+		System.arraycopy(start, 0, cursor, 0, numBuckets);
+		for (int i = 0; i < size; i++)
+			order[cursor[bucketOf[i]]++] = i;
+		return this;
+	}
+
+	public int numBuckets (){ return numBuckets; }
+
+	/** First position of the bucket's keys (inclusive) */
+	public int from (int bucket){ return start[bucket]; }
+
+	/** Last position of the bucket's keys (exclusive) */
+	public int to (int bucket){ return start[bucket + 1]; }
+
+	/** @return index of the key (in the batch arrays) at the position */
+	public int keyIndex (int position){ return order[position]; }
+}
\ No newline at end of file
@@ -0,0 +1,271 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import jakarta.validation.constraints.Positive;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ Spliterator over the buckets {@code [bucket, end)} of a bucketed map: {@link #trySplit} halves the bucket range
+ ⇒ a parallel stream runs on all cores, and every split only takes the locks of its own buckets.
+
+ {@code source} copies one bucket into the buffer (under the bucket's read lock);
+ the stream's action runs after the lock is released ⇒ weakly consistent (like ConcurrentHashMap's iterators),
+ a slow action doesn't block writers.
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#forEachAt
+ @see java.util.concurrent.ConcurrentHashMap#keySet()
+*/
+public abstract class BucketSpliterator {
+	/** keys and entries: distinct, the map can be modified while streaming */
+	public static final int KEYS = Spliterator.DISTINCT | Spliterator.CONCURRENT;
+	public static final int VALUES = Spliterator.CONCURRENT;
+
+	private final int numBuckets;
+	private final long sizeEstimate;
+	private final int characteristics;
+	/** next bucket to buffer */
+	protected int bucket;
+	protected int end;
+	/** buffered elements: {@code buffer[pos .. count)} */
+	protected int pos;
+	protected int count;
+
+	protected BucketSpliterator (@Positive int numBuckets, long sizeEstimate, int characteristics, int from, int to) {
+		this.numBuckets = numBuckets;
+		this.sizeEstimate = sizeEstimate;
+		this.characteristics = characteristics;
+		this.bucket = from;
+		this.end = to;
+	}//new
+
+	/** Copies the bucket into the (emptied) buffer */
+	protected abstract void fill (int bucket);
+
+	/** @return false if there are no more elements, otherwise {@code pos < count} */
+	protected boolean advance () {
+		while (pos == count){
+			if (bucket >= end)
+				return false;
+			pos = count = 0;
+			fill(bucket++);
+		}
+		return true;
+	}
+
+	/**
+	 Gives the upper half of the remaining buckets away (this keeps the buffer and the lower half)
+	 @return first bucket of the upper half, or -1 if there is less than two buckets left
+	 */
+	protected int split () {
+		if (end - bucket < 2)
+			return -1;
+		end = (bucket + end) >>> 1;
+		return end;
+	}
+
+	public long estimateSize () {
+		return sizeEstimate * (end - bucket) / numBuckets + count - pos;
+	}
+
+	public int characteristics () {
+		return characteristics;
+	}
+
+	/** long keys or values */
+	public static final class OfLong extends BucketSpliterator implements Spliterator.OfLong {
+		private final ObjIntConsumer<LongConsumer> source;
+		private long[] buffer = new long[16];
+		private final LongConsumer sink = v->{
+			if (count == buffer.length)
+				buffer = Arrays.copyOf(buffer, count * 2);
+			buffer[count++] = v;
+		};
+
+		/** @param source (sink, bucket) ⇒ every element of the bucket to the sink */
+		public OfLong (@Positive int numBuckets, long sizeEstimate, int characteristics, ObjIntConsumer<LongConsumer> source) {
+			this(numBuckets, sizeEstimate, characteristics, 0, numBuckets, source);
+		}//new
+
+		private OfLong (int numBuckets, long sizeEstimate, int characteristics, int from, int to, ObjIntConsumer<LongConsumer> source) {
+			super(numBuckets, sizeEstimate, characteristics, from, to);
+			this.source = source;
+		}//new
+
+		@Override
+		protected void fill (int bucket) {
+			source.accept(sink, bucket);
+		}
+
+		@Override
+		public boolean tryAdvance (LongConsumer action) {
+			if (!advance())
+				return false;
+			action.accept(buffer[pos++]);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining (LongConsumer action) {
+			while (advance())
+				action.accept(buffer[pos++]);
+		}
+
+		@Override
+		public Spliterator.@Nullable OfLong trySplit () {
+			int to = end, from = split();
+			return from < 0 ? null : new BucketSpliterator.OfLong(super.numBuckets, super.sizeEstimate, characteristics(), from, to, source);
+		}
+	}
+
+	/** int, short, char or byte keys or values */
+	public static final class OfInt extends BucketSpliterator implements Spliterator.OfInt {
+		private final ObjIntConsumer<IntConsumer> source;
+		private int[] buffer = new int[16];
+		private final IntConsumer sink = v->{
+			if (count == buffer.length)
+				buffer = Arrays.copyOf(buffer, count * 2);
+			buffer[count++] = v;
+		};
+
+		/** @see OfLong#OfLong(int, long, int, ObjIntConsumer) */
+		public OfInt (@Positive int numBuckets, long sizeEstimate, int characteristics, ObjIntConsumer<IntConsumer> source) {
+			this(numBuckets, sizeEstimate, characteristics, 0, numBuckets, source);
+		}//new
+
+		private OfInt (int numBuckets, long sizeEstimate, int characteristics, int from, int to, ObjIntConsumer<IntConsumer> source) {
+			super(numBuckets, sizeEstimate, characteristics, from, to);
+			this.source = source;
+		}//new
+
+		@Override
+		protected void fill (int bucket) {
+			source.accept(sink, bucket);
+		}
+
+		@Override
+		public boolean tryAdvance (IntConsumer action) {
+			if (!advance())
+				return false;
+			action.accept(buffer[pos++]);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining (IntConsumer action) {
+			while (advance())
+				action.accept(buffer[pos++]);
+		}
+
+		@Override
+		public Spliterator.@Nullable OfInt trySplit () {
+			int to = end, from = split();
+			return from < 0 ? null : new BucketSpliterator.OfInt(super.numBuckets, super.sizeEstimate, characteristics(), from, to, source);
+		}
+	}
+
+	/** double or float keys or values */
+	public static final class OfDouble extends BucketSpliterator implements Spliterator.OfDouble {
+		private final ObjIntConsumer<DoubleConsumer> source;
+		private double[] buffer = new double[16];
+		private final DoubleConsumer sink = v->{
+			if (count == buffer.length)
+				buffer = Arrays.copyOf(buffer, count * 2);
+			buffer[count++] = v;
+		};
+
+		/** @see OfLong#OfLong(int, long, int, ObjIntConsumer) */
+		public OfDouble (@Positive int numBuckets, long sizeEstimate, int characteristics, ObjIntConsumer<DoubleConsumer> source) {
+			this(numBuckets, sizeEstimate, characteristics, 0, numBuckets, source);
+		}//new
+
+		private OfDouble (int numBuckets, long sizeEstimate, int characteristics, int from, int to, ObjIntConsumer<DoubleConsumer> source) {
+			super(numBuckets, sizeEstimate, characteristics, from, to);
+			this.source = source;
+		}//new
+
+		@Override
+		protected void fill (int bucket) {
+			source.accept(sink, bucket);
+		}
+
+		@Override
+		public boolean tryAdvance (DoubleConsumer action) {
+			if (!advance())
+				return false;
+			action.accept(buffer[pos++]);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining (DoubleConsumer action) {
+			while (advance())
+				action.accept(buffer[pos++]);
+		}
+
+		@Override
+		public Spliterator.@Nullable OfDouble trySplit () {
+			int to = end, from = split();
+			return from < 0 ? null : new BucketSpliterator.OfDouble(super.numBuckets, super.sizeEstimate, characteristics(), from, to, source);
+		}
+	}
+
+	/** Object keys or values, entries */
+	public static final class OfRef<T> extends BucketSpliterator implements Spliterator<T> {
+		private final ObjIntConsumer<Consumer<T>> source;
+		private Object[] buffer = new Object[16];
+		private final Consumer<T> sink = v->{
+			if (count == buffer.length)
+				buffer = Arrays.copyOf(buffer, count * 2);
+			buffer[count++] = v;
+		};
+
+		/** @see OfLong#OfLong(int, long, int, ObjIntConsumer) */
+		public OfRef (@Positive int numBuckets, long sizeEstimate, int characteristics, ObjIntConsumer<Consumer<T>> source) {
+			this(numBuckets, sizeEstimate, characteristics, 0, numBuckets, source);
+		}//new
+
+		private OfRef (int numBuckets, long sizeEstimate, int characteristics, int from, int to, ObjIntConsumer<Consumer<T>> source) {
+			super(numBuckets, sizeEstimate, characteristics, from, to);
+			this.source = source;
+		}//new
+
+		@Override
+		protected void fill (int bucket) {
+			source.accept(sink, bucket);
+		}
+
+		@SuppressWarnings("unchecked")
+		private T next () {
+			T next = (T) buffer[pos];
+			buffer[pos++] = null;// don't retain consumed elements
+			return next;
+		}
+
+		@Override
+		public boolean tryAdvance (Consumer<? super T> action) {
+			if (!advance())
+				return false;
+			action.accept(next());
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining (Consumer<? super T> action) {
+			while (advance())
+				action.accept(next());
+		}
+
+		@Override
+		public @Nullable OfRef<T> trySplit () {
+			int to = end, from = split();
+			return from < 0 ? null : new OfRef<>(super.numBuckets, super.sizeEstimate, characteristics(), from, to, source);
+		}
+	}
+}
\ No newline at end of file
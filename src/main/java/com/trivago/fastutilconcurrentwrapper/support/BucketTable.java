@@ -0,0 +1,31 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+/**
+ Bucket of a map with its own open addressing tables instead of fastutil maps (off-heap, incremental resize, hash-once).
+ Entries are visited by position; the null (or 0) key has no position: it is kept apart. Lock must be held!
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#forEachAt(int, int, BucketTable, Runnable, java.util.function.IntConsumer)
+*/
+public interface BucketTable {
+	/** Keys, the null key included */
+	int size ();
+
+	boolean containsNullKey ();
+
+	/** First position with a key from {@code pos} on, -1 if none */
+	int next (int pos);
+
+	/** @return position of the {@code count}-th key, -1 if there are less */
+	default int skip (int count) {
+		for (int pos = 0; (pos = next(pos)) >= 0; pos++)
+			if (--count == 0)
+				return pos;
+		return -1;
+	}
+
+	/** Back to the initial capacity */
+	void clear ();
+
+	/** Its keys have moved to other tables (restripe): the table must not be used anymore */
+	default void release (){}
+}
\ No newline at end of file
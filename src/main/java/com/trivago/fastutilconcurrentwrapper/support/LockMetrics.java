@@ -0,0 +1,252 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import jakarta.validation.constraints.Positive;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ Per-bucket lock counters of a striped map: acquisitions, contended acquisitions (the first {@code tryLock} failed),
+ wait time, max exclusive hold time and failed spins (BUSY_WAITING).
+ Opt-in: a map without metrics doesn't call it at all.
+
+ Hot-spotting (a few buckets get most acquisitions and waits) ⇒ a better hash or {@code restripe};
+ evenly spread waits ⇒ more buckets; no waits at all ⇒ latency spikes come from somewhere else (e.g. GC).
+
+ Counters of a bucket are 64 bytes apart ⇒ buckets don't share a cache line.
+ Hold time is measured for write locks only: read locks are shared.
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#enableLockMetrics()
+ @see com.trivago.fastutilconcurrentwrapper.longkey.StripedNonBlockingHashMapLong#enableLockMetrics()
+*/
+public final class LockMetrics {
+	private static final int ACQUIRED = 0;
+	private static final int CONTENDED = 1;
+	private static final int WAIT_NANOS = 2;
+	private static final int MAX_HOLD_NANOS = 3;
+	private static final int SPINS = 4;
+	/** written and read by the write lock holder only */
+	private static final int HOLD_START = 5;
+	/** 8 longs = 64 bytes, same size as cache line */
+	private static final int STRIDE = 8;
+
+	private final int numBuckets;
+	private final AtomicLongArray counters;
+
+	public LockMetrics (@Positive int numBuckets) {
+		this.numBuckets = numBuckets;
+		this.counters = new AtomicLongArray(numBuckets * STRIDE);
+	}//new
+
+	public int numBuckets (){ return numBuckets; }
+
+	/** The lock was free: first {@code tryLock} succeeded */
+	public void acquired (int bucket) {
+		counters.getAndIncrement(bucket * STRIDE + ACQUIRED);
+	}
+
+	/** The lock was taken after {@code waitNanos} and {@code spins} failed {@code tryLock} (0 if blocked instead) */
+	public void contended (int bucket, long waitNanos, long spins) {
+		int i = bucket * STRIDE;
+		counters.getAndIncrement(i + ACQUIRED);
+		counters.getAndIncrement(i + CONTENDED);
+		counters.getAndAdd(i + WAIT_NANOS, waitNanos);
+		if (spins > 0)
+			counters.getAndAdd(i + SPINS, spins);
+	}
+
+	/** Write lock (first hold) acquired */
+	public void holdStart (int bucket) {
+		counters.setPlain(bucket * STRIDE + HOLD_START, System.nanoTime());
+	}
+
+	/** Write lock (last hold) is about to be released */
+	public void holdEnd (int bucket) {
+		int i = bucket * STRIDE;
+		long hold = System.nanoTime() - counters.getPlain(i + HOLD_START);
+		if (hold > counters.getPlain(i + MAX_HOLD_NANOS))
+			counters.setRelease(i + MAX_HOLD_NANOS, hold);// single writer: the lock holder
+	}
+
+	/** Zeroes the counters, e.g. after a warm-up. Concurrent updates can survive */
+	public void reset () {
+		for (int b = 0; b < numBuckets; b++)
+			for (int i = b * STRIDE, end = i + HOLD_START; i < end; i++)
+				counters.set(i, 0);
+	}
+
+	/** Counters at this moment (not atomic across buckets) */
+	public Snapshot snapshot () {
+		return new Snapshot(column(ACQUIRED), column(CONTENDED), column(WAIT_NANOS), column(MAX_HOLD_NANOS), column(SPINS));
+	}
+
+	private long[] column (int counter) {
+		long[] a = new long[numBuckets];
+		for (int b = 0; b < numBuckets; b++)
+			a[b] = counters.get(b * STRIDE + counter);
+		return a;
+	}
+
+	@Override
+	public String toString () {
+		return snapshot().toString();
+	}
+
+	/** Immutable per-bucket counters (index = bucket) */
+	public static final class Snapshot {
+		private final long[] acquisitions;
+		private final long[] contended;
+		private final long[] waitNanos;
+		private final long[] maxHoldNanos;
+		private final long[] spins;
+
+		Snapshot (long[] acquisitions, long[] contended, long[] waitNanos, long[] maxHoldNanos, long[] spins) {
+			this.acquisitions = acquisitions;
+			this.contended = contended;
+			this.waitNanos = waitNanos;
+			this.maxHoldNanos = maxHoldNanos;
+			this.spins = spins;
+		}//new
+
+		public int numBuckets (){ return acquisitions.length; }
+
+		public long acquisitions (int bucket){ return acquisitions[bucket]; }
+		public long contended (int bucket){ return contended[bucket]; }
+		public long waitNanos (int bucket){ return waitNanos[bucket]; }
+		public long maxHoldNanos (int bucket){ return maxHoldNanos[bucket]; }
+		public long spins (int bucket){ return spins[bucket]; }
+
+		public long[] acquisitions (){ return acquisitions.clone(); }
+		public long[] contended (){ return contended.clone(); }
+		public long[] waitNanos (){ return waitNanos.clone(); }
+		public long[] maxHoldNanos (){ return maxHoldNanos.clone(); }
+		public long[] spins (){ return spins.clone(); }
+
+		public long totalAcquisitions (){ return sum(acquisitions); }
+		public long totalContended (){ return sum(contended); }
+		public long totalWaitNanos (){ return sum(waitNanos); }
+		public long totalSpins (){ return sum(spins); }
+
+		/** Longest write lock hold of all buckets */
+		public long longestHoldNanos () {
+			long max = 0;
+			for (long v : maxHoldNanos)
+				max = Math.max(max, v);
+			return max;
+		}
+
+		/** Share of acquisitions that had to wait: 0..1 */
+		public double contentionRatio () {
+			long total = totalAcquisitions();
+			return total == 0 ? 0 : (double) totalContended() / total;
+		}
+
+		/** Bucket with the most wait time (most acquisitions if nobody waited), -1 if there were no acquisitions */
+		public int hottestBucket () {
+			long[] by = totalWaitNanos() > 0 ? waitNanos : acquisitions;
+			int hottest = -1;
+			long max = 0;
+			for (int b = 0; b < by.length; b++){
+				if (by[b] > max){
+					max = by[b];
+					hottest = b;
+				}
+			}
+			return hottest;
+		}
+
+		/**
+		 Acquisitions of the busiest bucket / average acquisitions per bucket: 1 = evenly spread,
+		 {@link #numBuckets()} = every acquisition hit one bucket
+		 */
+		public double imbalance () {
+			long total = totalAcquisitions();
+			if (total == 0)
+				return 1;
+			long max = 0;
+			for (long v : acquisitions)
+				max = Math.max(max, v);
+			return (double) max * acquisitions.length / total;
+		}
+
+		private static long sum (long[] a) {
+			long sum = 0;
+			for (long v : a)
+				sum += v;
+			return sum;
+		}
+
+		@Override
+		public String toString () {
+			return "LockMetrics{buckets=%d, acquisitions=%d, contended=%d (%.2f%%), waitMs=%.3f, maxHoldMs=%.3f, spins=%d, hottestBucket=%d, imbalance=%.2f}".formatted(
+				numBuckets(), totalAcquisitions(), totalContended(), contentionRatio() * 100, totalWaitNanos() / 1e6, longestHoldNanos() / 1e6,
+				totalSpins(), hottestBucket(), imbalance()
+			);
+		}
+	}
+
+	/**
+	 Registers a {@link LockMetricsMXBean} in the platform MBean server:
+	 {@code com.trivago.fastutilconcurrentwrapper:type=LockMetrics,name=<name>}
+
+	 @param source current metrics of the map (they are replaced by a restripe), null if disabled
+	 @throws IllegalStateException the name is invalid or already registered
+	 */
+	public static ObjectName registerMBean (String name, Supplier<@Nullable LockMetrics> source) {
+		try {
+			var objectName = new ObjectName("com.trivago.fastutilconcurrentwrapper:type=LockMetrics,name="+ ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(source), objectName);
+			return objectName;
+		} catch (JMException e){
+			throw new IllegalStateException("Can't register LockMetrics MBean: "+ name, e);
+		}
+	}
+
+	/** @see #registerMBean */
+	public static void unregisterMBean (ObjectName objectName) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e){
+			throw new IllegalStateException("Can't unregister LockMetrics MBean: "+ objectName, e);
+		}
+	}
+
+	private static final class MXBean implements LockMetricsMXBean {
+		private static final Snapshot EMPTY = new Snapshot(new long[0], new long[0], new long[0], new long[0], new long[0]);
+		private final Supplier<@Nullable LockMetrics> source;
+
+		MXBean (Supplier<@Nullable LockMetrics> source){ this.source = source; }//new
+
+		private Snapshot snapshot () {
+			LockMetrics metrics = source.get();
+			return metrics != null ? metrics.snapshot() : EMPTY;
+		}
+
+		@Override public boolean isEnabled (){ return source.get() != null; }
+		@Override public int getNumBuckets (){ return snapshot().numBuckets(); }
+		@Override public long getAcquisitions (){ return snapshot().totalAcquisitions(); }
+		@Override public long getContendedAcquisitions (){ return snapshot().totalContended(); }
+		@Override public double getContentionRatio (){ return snapshot().contentionRatio(); }
+		@Override public long getWaitNanos (){ return snapshot().totalWaitNanos(); }
+		@Override public long getMaxHoldNanos (){ return snapshot().longestHoldNanos(); }
+		@Override public long getSpins (){ return snapshot().totalSpins(); }
+		@Override public int getHottestBucket (){ return snapshot().hottestBucket(); }
+		@Override public double getImbalance (){ return snapshot().imbalance(); }
+		@Override public long[] getBucketAcquisitions (){ return snapshot().acquisitions; }
+		@Override public long[] getBucketContendedAcquisitions (){ return snapshot().contended; }
+		@Override public long[] getBucketWaitNanos (){ return snapshot().waitNanos; }
+		@Override public long[] getBucketMaxHoldNanos (){ return snapshot().maxHoldNanos; }
+		@Override public long[] getBucketSpins (){ return snapshot().spins; }
+
+		@Override
+		public void reset () {
+			LockMetrics metrics = source.get();
+			if (metrics != null)
+				metrics.reset();
+		}
+	}
+}
\ No newline at end of file
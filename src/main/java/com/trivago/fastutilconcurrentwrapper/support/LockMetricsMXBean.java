@@ -0,0 +1,30 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+/**
+ JMX view of {@link LockMetrics}: totals and per-bucket arrays (index = bucket)
+ @see LockMetrics#registerMBean
+*/
+public interface LockMetricsMXBean {
+	boolean isEnabled ();
+	int getNumBuckets ();
+
+	long getAcquisitions ();
+	long getContendedAcquisitions ();
+	/** 0..1 */
+	double getContentionRatio ();
+	long getWaitNanos ();
+	long getMaxHoldNanos ();
+	/** BUSY_WAITING only */
+	long getSpins ();
+	int getHottestBucket ();
+	/** 1 = evenly spread */
+	double getImbalance ();
+
+	long[] getBucketAcquisitions ();
+	long[] getBucketContendedAcquisitions ();
+	long[] getBucketWaitNanos ();
+	long[] getBucketMaxHoldNanos ();
+	long[] getBucketSpins ();
+
+	void reset ();
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ Lookups in a fastutil open hash table without its lock (optimistic reads): the same probe as fastutil's {@code get},
+ but over the key array as read once, at most capacity slots.
+
+ fastutil's own probe ends only at the key or a free slot, and reads {@code mask} on every step: a table being rehashed
+ (also shrunk by {@code remove} and {@code trim}) or cleared can have neither on the probe path ⇒ the reader would spin
+ forever, never reaching {@code validate}. Here it ends with {@link #TORN}, and the caller falls back to the lock.
+
+ The key array has {@code capacity + 1} slots: the last one is the 0 (null) key's, kept apart by fastutil
+ ({@code containsNullKey}).
+
+ @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+*/
+public final class OptimisticProbe {
+	/** The key isn't in the table as read */
+	public static final int ABSENT = -1;
+	/** Neither the key nor a free slot within capacity probes: the table was changing, the stamp can't validate */
+	public static final int TORN = -2;
+
+	private OptimisticProbe (){}//new
+
+	/** @return slot of the key in {@code key} (and the value array), {@link #ABSENT} or {@link #TORN} */
+	public static int slot (int[] key, boolean containsNullKey, int k) {
+		int n = key.length - 1;
+		if (k == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(k) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			int cur = key[pos];
+			if (cur == k)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	public static int slot (long[] key, boolean containsNullKey, long k) {
+		int n = key.length - 1;
+		if (k == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = (int) HashCommon.mix(k) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			long cur = key[pos];
+			if (cur == k)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	/** Keys compared by raw bits, as fastutil does */
+	public static int slot (float[] key, boolean containsNullKey, float k) {
+		int bits = Float.floatToRawIntBits(k);
+		int n = key.length - 1;
+		if (bits == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(bits) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			int cur = Float.floatToRawIntBits(key[pos]);
+			if (cur == bits)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	/** Keys compared by raw bits, as fastutil does */
+	public static int slot (double[] key, boolean containsNullKey, double k) {
+		long bits = Double.doubleToRawLongBits(k);
+		int n = key.length - 1;
+		if (bits == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = (int) HashCommon.mix(bits) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			long cur = Double.doubleToRawLongBits(key[pos]);
+			if (cur == bits)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	public static int slot (short[] key, boolean containsNullKey, short k) {
+		int n = key.length - 1;
+		if (k == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(k) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			short cur = key[pos];
+			if (cur == k)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	public static int slot (char[] key, boolean containsNullKey, char k) {
+		int n = key.length - 1;
+		if (k == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(k) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			char cur = key[pos];
+			if (cur == k)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	public static int slot (byte[] key, boolean containsNullKey, byte k) {
+		int n = key.length - 1;
+		if (k == 0)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(k) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			byte cur = key[pos];
+			if (cur == k)
+				return pos;
+			if (cur == 0)
+				return ABSENT;
+		}
+		return TORN;
+	}
+
+	/** {@code k.equals} sees keys of a table being changed: it must not have side effects */
+	public static int slot (Object[] key, boolean containsNullKey, Object k) {
+		int n = key.length - 1;
+		if (k == null)
+			return containsNullKey ? n : ABSENT;
+		int mask = n - 1;
+		for (int pos = HashCommon.mix(k.hashCode()) & mask, probes = 0; probes < n; probes++, pos = (pos + 1) & mask){
+			Object cur = key[pos];
+			if (cur == null)
+				return ABSENT;
+			if (k.equals(cur))
+				return pos;
+		}
+		return TORN;
+	}
+}
\ No newline at end of file
@@ -87,7 +87,7 @@ public class ReadWriteLockCollection<E> implements ObjectCollection<E>, Serializ
 			@Override
 			public E next () {
 				try (var __ = read()){
-					if (!hasNext())
+					if (!it().hasNext())// not hasNext(): no nested read lock
 							throw new NoSuchElementException("hasNext returned false");
 					return it().next();
 				}
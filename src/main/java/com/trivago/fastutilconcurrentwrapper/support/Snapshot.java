@@ -0,0 +1,164 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
+import com.trivago.fastutilconcurrentwrapper.util.JBytes;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ Binary snapshot of a map: {@code "FCWS", version, blocks}, then every block as {@code length, bytes}
+ (usually a block = a bucket: entry count, then key, value, key, value…).
+
+ A block is encoded into a reused {@link BAOS} (primitives are written with a VarHandle, no allocation per entry)
+ and copied to the stream afterwards ⇒ a bucket lock is never held during I/O.
+ Blocks are decoded by {@link ForkJoinPool#commonPool()} workers while the next blocks are read: restore runs on all cores,
+ at most a few blocks are buffered.
+ Keys or values of type Object go through Java serialization: one {@link ObjectOutputStream} per block.
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#writeTo
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveConcurrentMap#readFrom
+*/
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Snapshot {
+	/** "FCWS" */
+	public static final int MAGIC = 0x46435753;
+	public static final int VERSION = 1;
+
+	/** Encodes one block (e.g. under the bucket's read lock) */
+	@FunctionalInterface
+	public interface BlockWriter {
+		void write (int block, ObjectOutput out) throws IOException;
+	}
+
+	/** Decodes one block: can run in parallel with other blocks */
+	@FunctionalInterface
+	public interface BlockReader {
+		/** @param blocks number of blocks in the snapshot */
+		void read (int block, int blocks, ObjectInput in) throws IOException;
+	}
+
+	/** @param objects Java serialization for keys/values of type Object */
+	public static void write (OutputStream out, @PositiveOrZero int blocks, boolean objects, BlockWriter writer) throws IOException {
+		var block = new BAOS(64 * 1024);
+		block.writeInt(MAGIC);
+		block.writeInt(VERSION);
+		block.writeInt(blocks);
+		block.writeTo(out);
+		for (int b = 0; b < blocks; b++){
+			block.reset();
+			block.writeInt(0);// length placeholder
+			if (objects){
+				var oos = new ObjectOutputStream(block);
+				writer.write(b, oos);
+				oos.flush();
+			} else
+				writer.write(b, block);
+			JBytes.DirectByteArrayAccess.setInt(block.array(), 0, block.size() - 4);
+			block.writeTo(out);
+		}
+		out.flush();
+	}
+
+	/**
+	 @param parallel blocks are decoded by ForkJoin workers (otherwise in order by the calling thread)
+	 @throws StreamCorruptedException not a snapshot, or a block has another size than the reader expects (e.g. other key/value types)
+	 */
+	public static void read (InputStream in, boolean objects, boolean parallel, BlockReader reader) throws IOException {
+		var data = new DataInputStream(in);
+		if (data.readInt() != MAGIC)
+			throw new StreamCorruptedException("Not a map snapshot");
+		int version = data.readInt();
+		if (version != VERSION)
+			throw new StreamCorruptedException("Unsupported snapshot version: "+ version);
+		int blocks = data.readInt();
+		if (blocks < 0)
+			throw new StreamCorruptedException("Corrupted snapshot: blocks="+ blocks);
+
+		if (!parallel){
+			for (int b = 0; b < blocks; b++)
+				decode(readBlock(data, b), b, blocks, objects, reader);
+			return;
+		}
+		var inFlight = new Semaphore(2 * ForkJoinPool.getCommonPoolParallelism() + 1);// bounded memory
+		List<Future<?>> tasks = new ArrayList<>(blocks);
+		try {
+			for (int b = 0; b < blocks; b++){
+				byte[] bytes = readBlock(data, b);
+				inFlight.acquire();
+				int block = b;
+				tasks.add(ForkJoinPool.commonPool().submit(()->{
+					try {
+						decode(bytes, block, blocks, objects, reader);
+					} catch (IOException e){
+						throw new UncheckedIOException(e);
+					} finally {
+						inFlight.release();
+					}
+				}));
+			}
+			for (Future<?> task : tasks)
+				task.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			tasks.forEach(task->task.cancel(false));
+			throw new InterruptedIOException("Snapshot restore interrupted");
+		} catch (ExecutionException e){
+			tasks.forEach(task->task.cancel(false));
+			if (e.getCause() instanceof UncheckedIOException u)
+				throw u.getCause();
+			throw new IOException("Snapshot restore failed", e.getCause());
+		}
+	}
+
+	private static byte[] readBlock (DataInputStream data, int block) throws IOException {
+		int length = data.readInt();
+		if (length < 0)
+			throw new StreamCorruptedException("Corrupted snapshot: block %d length %d".formatted(block, length));
+		byte[] bytes = data.readNBytes(length);
+		if (bytes.length != length)
+			throw new EOFException("Truncated snapshot: block %d".formatted(block));
+		return bytes;
+	}
+
+	private static void decode (byte[] bytes, int block, int blocks, boolean objects, BlockReader reader) throws IOException {
+		var bais = new BAIS(bytes);
+		try {
+			reader.read(block, blocks, objects ? new ObjectInputStream(bais) : bais);
+		} catch (IndexOutOfBoundsException e){// BAIS: end of block
+			throw new StreamCorruptedException("Corrupted snapshot: block %d is too short".formatted(block));
+		}
+		if (bais.available() != 0)
+			throw new StreamCorruptedException("Corrupted snapshot: %d bytes left in block %d".formatted(bais.available(), block));
+	}
+
+	/** Object key or value of a block written with {@code objects = true} */
+	@SuppressWarnings("unchecked")
+	public static <T> T readObject (ObjectInput in) throws IOException {
+		try {
+			return (T) in.readObject();
+		} catch (ClassNotFoundException e){
+			throw new IOException("Snapshot class not found: "+ e.getMessage(), e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package com.trivago.fastutilconcurrentwrapper.support;
+
+import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableStampedLock;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.Collection;
+
+/**
+ {@link ReadWriteLockCollection} with optimistic reads: {@link #contains}, {@link #size} and {@link #isEmpty} read the collection
+ without locking and {@link CloseableStampedLock#validate validate} the stamp afterwards; on a concurrent write they retry under
+ the read lock ⇒ readers don't contend on one reader count.
+
+ The backing collection must tolerate racy reads: a read overlapping a write may throw (it is retried), but must not loop forever
+ or have side effects ⇒ array based collections (ArrayList, fastutil's open hash sets), not linked structures.
+ Not reentrant (unlike the superclass): e.g. the action of {@link #forEach} must not call this collection.
+
+ @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+*/
+public class StampedLockCollection<E> extends ReadWriteLockCollection<E> {
+	@Serial private static final long serialVersionUID = 2416301945163279341L;
+	/** Not serializable: a new one after deserialization */
+	transient CloseableStampedLock stampedLock = new CloseableStampedLock();
+
+	public StampedLockCollection (Collection<E> c) {
+		super(c);
+	}//new
+
+	@Serial
+	private void readObject (ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		stampedLock = new CloseableStampedLock();
+	}
+
+	@Override
+	protected CloseableLock read () {
+		return stampedLock.read();
+	}
+	@Override
+	protected CloseableLock write () {
+		return stampedLock.write();
+	}
+
+	@Override
+	public int size () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				int result = c.size();
+				if (stampedLock.validate(stamp))
+					return result;
+			} catch (RuntimeException ignore){}// torn read of a concurrently written collection
+		}
+		return super.size();
+	}
+
+	@Override
+	public boolean isEmpty () {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				boolean result = c.isEmpty();
+				if (stampedLock.validate(stamp))
+					return result;
+			} catch (RuntimeException ignore){}// torn read of a concurrently written collection
+		}
+		return super.isEmpty();
+	}
+
+	@Override
+	public boolean contains (Object o) {
+		long stamp = stampedLock.tryOptimisticRead();
+		if (stamp != 0){
+			try {
+				boolean result = c.contains(o);
+				if (stampedLock.validate(stamp))
+					return result;
+			} catch (RuntimeException ignore){}// torn read of a concurrently written collection
+		}
+		return super.contains(o);
+	}
+}
\ No newline at end of file
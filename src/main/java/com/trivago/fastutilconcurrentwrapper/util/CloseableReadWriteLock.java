@@ -1,5 +1,8 @@
 package com.trivago.fastutilconcurrentwrapper.util;
 
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -9,9 +12,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class CloseableReadWriteLock extends ReentrantReadWriteLock implements CloseableLock {
 	public static class Padded extends CloseableReadWriteLock {
 		/*
-		 * Padding from 40 into 64 bytes, same size as cache line. Might be beneficial to add a fourth
-		 * long here, to minimize chance of interference between consecutive locks, but I couldn't
-		 * observe any benefit from that.
+		 * Padding from 40 into 64 bytes, same size as cache line (compressed oops: 12 header, 16 for
+		 * readerLock/writerLock/sync/write, 8 for modCount/spinLimit). modCount is written by every
+		 * writer and spinLimit racily by adaptive waiters: the padding keeps these writes away from the
+		 * neighbouring lock of an array allocated in one go (the objects aren't line-aligned, so two
+		 * locks can still share a line at most partly). The reader count itself lives in the Sync object.
 		 */
 		long unused1;
 		long unused2;
@@ -21,6 +26,16 @@ public class CloseableReadWriteLock extends ReentrantReadWriteLock implements Cl
 	private final CloseableLock write = ()->
 			writeLock().unlock();
 
+	private static final int NCPU = Runtime.getRuntime().availableProcessors();
+	/** Spinning on one CPU only delays the holder */
+	private static final int MIN_SPINS = NCPU > 1 ? 8 : 0;
+	private static final int MAX_SPINS = NCPU > 1 ? 1 << 12 : 0;
+
+	/** Write lock acquisitions: guarded by the lock itself */
+	private int modCount;
+	/** Self-tuning spin budget of {@link #adaptiveRead()}/{@link #adaptiveWrite()}: racy, it's only a hint */
+	private int spinLimit = Math.min(64, MAX_SPINS);
+
 	@Override
 	public void close () {
 		readLock().unlock();
@@ -33,8 +48,93 @@ public class CloseableReadWriteLock extends ReentrantReadWriteLock implements Cl
 
 	public CloseableLock write () {
 		writeLock().lock();
+		writeAcquired(true);
 		return write;
 	}
 
+	/** Non-blocking {@link #read()} */
+	public @Nullable CloseableLock tryRead () {
+		return readLock().tryLock() ? this : null;
+	}
+
+	/** Non-blocking {@link #write()} */
+	public @Nullable CloseableLock tryWrite () {
+		if (!writeLock().tryLock())
+			return null;
+		if (writeAcquired(false))
+			return write;
+		writeLock().unlock();
+		return null;
+	}
+
+	/**
+	 The write lock was just acquired (by {@link #write()}, {@link #tryWrite()}, {@link #spinWrite()} or {@link #adaptiveWrite()}):
+	 counts the {@link #modCount()}.
+	 @param wait false: {@link #tryWrite()} ⇒ may give up
+	 @return false ⇒ the write lock is released again, tryWrite fails
+	 */
+	protected boolean writeAcquired (boolean wait) {
+		modCount++;
+		return true;
+	}
+
+	/** Busy-waiting {@link #read()} */
+	public CloseableLock spinRead () {
+		while (!readLock().tryLock())
+			Thread.onSpinWait();
+		return this;
+	}
+
+	/** Busy-waiting {@link #write()} */
+	public CloseableLock spinWrite () {
+		while (!writeLock().tryLock())
+			Thread.onSpinWait();
+		writeAcquired(true);
+		return write;
+	}
+
+	/**
+	 Spins up to a self-tuning number of {@code tryLock}, yields once, then parks (like {@link #read()}).
+	 The budget grows when the lock was freed while spinning and halves when it wasn't ⇒
+	 busy-waiting latency on an idle machine, parking when the CPUs are oversubscribed or the holder was descheduled.
+	 @see java.util.concurrent.locks.ReentrantLock
+	 */
+	public CloseableLock adaptiveRead () {
+		if (!readLock().tryLock() && !spinThenTry(readLock()))
+			readLock().lock();
+		return this;
+	}
+
+	/** @see #adaptiveRead() */
+	public CloseableLock adaptiveWrite () {
+		if (!writeLock().tryLock() && !spinThenTry(writeLock()))
+			writeLock().lock();
+		writeAcquired(true);
+		return write;
+	}
+
+	private boolean spinThenTry (Lock lock) {
+		int limit = spinLimit;
+		for (int spins = 1; spins <= limit; spins++){
+			Thread.onSpinWait();
+			if (lock.tryLock()){// spinning paid off: aim at twice the spins it took
+				spinLimit = Math.min(MAX_SPINS, Math.max(MIN_SPINS, limit + (2 * spins - limit) / 8 + 1));
+				return true;
+			}
+		}
+		spinLimit = Math.max(MIN_SPINS, limit >> 1);
+		Thread.yield();// let a descheduled holder run
+		return lock.tryLock();
+	}
+
+	/** Current spin budget of {@link #adaptiveRead()}/{@link #adaptiveWrite()} */
+	public int spinLimit (){ return spinLimit; }
+
+	/**
+	 Changes on every {@link #write()}, {@link #spinWrite()}, {@link #adaptiveWrite()} and {@link #tryWrite()} ⇒ the guarded data could have been modified.
+	 Must be read under the lock.
+	 */
+	public int modCount (){ return modCount; }
+
 	public CloseableReadWriteLock (){ super(false); }//new unfair
 }
\ No newline at end of file
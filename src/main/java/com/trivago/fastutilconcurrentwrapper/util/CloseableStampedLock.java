@@ -0,0 +1,63 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ Same {@link #read()}/{@link #write()} contract as {@link CloseableReadWriteLock}, plus optimistic reads:
+ {@link #tryOptimisticRead()} + {@link #validate(long)} don't write to the lock word ⇒ readers don't bounce its cache line.
+
+ Not reentrant!
+
+ @see CloseableReadWriteLock
+ @see java.util.concurrent.locks.StampedLock#tryOptimisticRead()
+*/
+public class CloseableStampedLock extends StampedLock implements CloseableLock {
+	public static class Padded extends CloseableStampedLock {
+		/*
+		 * Padding from 48 into 64 bytes, same size as cache line.
+		 * @see com.google.common.util.concurrent.Striped.PaddedLock
+		 */
+		long unused1;
+		long unused2;
+	}
+
+	private final CloseableLock write = this::tryUnlockWrite;
+
+	/** Write lock acquisitions: guarded by the lock itself */
+	private int modCount;
+
+	/** Releases one hold of the read lock (without stamp) */
+	@Override
+	public void close () {
+		tryUnlockRead();
+	}
+
+	public CloseableLock read () {
+		readLock();
+		return this;
+	}
+
+	public CloseableLock write () {
+		writeLock();
+		modCount++;
+		return write;
+	}
+
+	/** Non-blocking {@link #read()} */
+	public @Nullable CloseableLock tryRead () {
+		return tryReadLock() != 0 ? this : null;
+	}
+
+	/** Non-blocking {@link #write()} */
+	public @Nullable CloseableLock tryWrite () {
+		if (tryWriteLock() == 0)
+			return null;
+		modCount++;
+		return write;
+	}
+
+	/** @see CloseableReadWriteLock#modCount() */
+	public int modCount (){ return modCount; }
+}
\ No newline at end of file
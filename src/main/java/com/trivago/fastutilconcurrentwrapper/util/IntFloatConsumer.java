@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (int key, float value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface IntFloatConsumer {
+	void accept (int key, float value);
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (int key, float value) → float without boxing
+ @see java.util.function.BiFunction
+ @see java.util.function.LongBinaryOperator
+*/
+@FunctionalInterface
+public interface IntFloatToFloatFunction {
+	float applyAsFloat (int key, float value);
+}
\ No newline at end of file
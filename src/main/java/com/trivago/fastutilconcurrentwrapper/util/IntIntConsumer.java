@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (int key, int value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface IntIntConsumer {
+	void accept (int key, int value);
+}
\ No newline at end of file
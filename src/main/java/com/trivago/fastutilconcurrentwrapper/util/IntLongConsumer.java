@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (int key, long value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface IntLongConsumer {
+	void accept (int key, long value);
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (int key, long value) → long without boxing
+ @see java.util.function.BiFunction
+ @see java.util.function.LongBinaryOperator
+*/
+@FunctionalInterface
+public interface IntLongToLongFunction {
+	long applyAsLong (int key, long value);
+}
\ No newline at end of file
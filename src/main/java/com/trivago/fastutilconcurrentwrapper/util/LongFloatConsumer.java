@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, float value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface LongFloatConsumer {
+	void accept (long key, float value);
+}
\ No newline at end of file
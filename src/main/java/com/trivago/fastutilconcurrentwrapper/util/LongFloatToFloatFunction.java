@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, float value) → float without boxing
+ @see java.util.function.BiFunction
+ @see java.util.function.LongBinaryOperator
+*/
+@FunctionalInterface
+public interface LongFloatToFloatFunction {
+	float applyAsFloat (long key, float value);
+}
\ No newline at end of file
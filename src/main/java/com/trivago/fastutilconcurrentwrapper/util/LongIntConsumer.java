@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, int value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface LongIntConsumer {
+	void accept (long key, int value);
+}
\ No newline at end of file
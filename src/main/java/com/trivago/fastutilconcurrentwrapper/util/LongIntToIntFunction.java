@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, int value) → int without boxing
+ @see java.util.function.BiFunction
+ @see java.util.function.LongBinaryOperator
+*/
+@FunctionalInterface
+public interface LongIntToIntFunction {
+	int applyAsInt (long key, int value);
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, long value) without boxing
+ @see java.util.function.BiConsumer
+*/
+@FunctionalInterface
+public interface LongLongConsumer {
+	void accept (long key, long value);
+}
\ No newline at end of file
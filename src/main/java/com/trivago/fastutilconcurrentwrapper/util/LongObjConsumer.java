@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (long key, V value) without boxing the key
+ @see java.util.function.BiConsumer
+ @see java.util.function.ObjLongConsumer
+*/
+@FunctionalInterface
+public interface LongObjConsumer<V> {
+	void accept (long key, V value);
+}
\ No newline at end of file
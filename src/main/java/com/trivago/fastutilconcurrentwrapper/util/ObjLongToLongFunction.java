@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ (K key, long value) → long without boxing
+ @see java.util.function.ToLongBiFunction
+ @see java.util.function.ObjLongConsumer
+*/
+@FunctionalInterface
+public interface ObjLongToLongFunction<K> {
+	long applyAsLong (K key, long value);
+}
\ No newline at end of file
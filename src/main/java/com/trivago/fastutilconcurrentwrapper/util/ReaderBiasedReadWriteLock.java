@@ -0,0 +1,187 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ Reader-biased {@link CloseableReadWriteLock} (Dice, Kogan: BRAVO). While the lock is biased, a reader doesn't touch the
+ shared reader count: it CASes the lock into its slot of a global visible-readers table (hashed by thread and lock) ⇒
+ readers of one lock write to different cache lines. A writer takes the underlying write lock, revokes the bias and waits
+ until the table holds no reader of this lock. The bias comes back with a slow read after {@value #INHIBIT_MULTIPLIER}×
+ the revocation time ⇒ write-heavy locks stay unbiased and behave like {@link CloseableReadWriteLock}.
+ A reader whose slot is taken (by another thread or lock) uses the underlying read lock.
+ A nested read of a fast reader counts against its slot (a per-thread hold count) even if the bias is revoked:
+ the underlying read lock would queue it behind the writer that waits for the outer read.
+
+ Same {@link #read()}/{@link #write()}/{@link #close()} contract as {@link CloseableReadWriteLock}, reentrant the same way.
+ {@link #getReadLockCount()} and {@link #getReadHoldCount()} count the slow readers only.
+ The raw {@link #readLock()}/{@link #writeLock()} bypass the bias: a raw write lock doesn't wait for the biased readers.
+
+ @see com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder.MapMode#READER_BIASED
+*/
+public class ReaderBiasedReadWriteLock extends CloseableReadWriteLock.Padded {
+	/** Slots of all biased locks: 4096 × 4..8 bytes */
+	private static final AtomicReferenceArray<Object> VISIBLE_READERS = new AtomicReferenceArray<>(1 << 12);
+	private static final int SLOT_SHIFT = 32 - 12;
+	/** Slots owned by the current thread */
+	private static final ThreadLocal<FastHolds> FAST_HOLDS = ThreadLocal.withInitial(FastHolds::new);
+	/** Bias is inhibited for N × the time the last revocation took */
+	static final int INHIBIT_MULTIPLIER = 9;
+
+	private final int hash = System.identityHashCode(this);
+	/** Fast reads allowed: set by a slow reader, cleared by a writer */
+	private volatile boolean readerBias = true;
+	/** Written under the write lock, read under the read lock */
+	private long inhibitUntil = System.nanoTime();
+
+	/** Slots of a thread and their read holds: a thread holds a few locks at a time ⇒ linear search */
+	private static final class FastHolds {
+		int[] slots = new int[4];
+		int[] counts = new int[4];
+		int size;
+
+		/** @return the index of the hold, -1: the thread doesn't own the slot */
+		int indexOf (int slot) {
+			for (int i = size; --i >= 0; )
+				if (slots[i] == slot)
+					return i;
+			return -1;
+		}
+
+		void add (int slot) {
+			if (size == slots.length){
+				slots = Arrays.copyOf(slots, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			slots[size] = slot;
+			counts[size++] = 1;
+		}
+
+		/** @return the last hold is released: the slot can be cleared */
+		boolean release (int index) {
+			if (--counts[index] > 0)
+				return false;
+			size--;
+			slots[index] = slots[size];
+			counts[index] = counts[size];
+			return true;
+		}
+	}
+
+	private int slot () {
+		return ((System.identityHashCode(Thread.currentThread()) ^ hash) * 0x9E3779B9) >>> SLOT_SHIFT;
+	}
+
+	/**
+	 @return the reader is visible in its slot and the bias still holds ⇒ a writer will wait for it;
+	 or the thread already holds the slot for this lock (a nested read)
+	 */
+	private boolean tryFastRead () {
+		int slot = slot();
+		FastHolds holds = FAST_HOLDS.get();
+		int held = holds.indexOf(slot);
+		if (held >= 0){// the slot is ours: for this lock or another one
+			if (VISIBLE_READERS.getPlain(slot) != this)
+				return false;
+			holds.counts[held]++;
+			return true;
+		}
+		if (!readerBias || !VISIBLE_READERS.compareAndSet(slot, null, this))
+			return false;
+		if (readerBias){// after the CAS: a writer that revokes now scans the slot
+			holds.add(slot);
+			return true;
+		}
+		VISIBLE_READERS.setRelease(slot, null);
+		return false;
+	}
+
+	/** Slow reader (the read lock is held): restores the bias when the inhibition is over */
+	private void slowRead () {
+		if (!readerBias && !isWriteLockedByCurrentThread() && System.nanoTime() - inhibitUntil >= 0)
+			readerBias = true;
+	}
+
+	/**
+	 Write lock is held: no new fast reader, waits for the visible ones
+	 @param wait false: gives up at the first visible reader and restores the bias (no reader is left behind unbiased)
+	 @return no visible reader is left
+	 */
+	private boolean revokeBias (boolean wait) {
+		if (!readerBias)
+			return true;
+		readerBias = false;
+		long start = System.nanoTime();
+		for (int i = 0; i < VISIBLE_READERS.length(); i++)
+			while (VISIBLE_READERS.get(i) == this){
+				if (!wait){
+					readerBias = true;
+					return false;
+				}
+				Thread.onSpinWait();
+			}
+		long now = System.nanoTime();
+		inhibitUntil = now + (now - start) * INHIBIT_MULTIPLIER;
+		return true;
+	}
+
+	/** Releases one read hold: the thread's slot if it holds this lock, otherwise the underlying read lock */
+	@Override
+	public void close () {
+		int slot = slot();
+		FastHolds holds = FAST_HOLDS.get();
+		int held = holds.indexOf(slot);
+		if (held < 0 || VISIBLE_READERS.getPlain(slot) != this)
+			super.close();
+		else if (holds.release(held))
+			VISIBLE_READERS.setRelease(slot, null);
+	}
+
+	@Override
+	public CloseableLock read () {
+		if (!tryFastRead()){
+			super.read();
+			slowRead();
+		}
+		return this;
+	}
+
+	@Override
+	public @Nullable CloseableLock tryRead () {
+		if (tryFastRead())
+			return this;
+		if (super.tryRead() == null)
+			return null;
+		slowRead();
+		return this;
+	}
+
+	@Override
+	public CloseableLock spinRead () {
+		if (!tryFastRead()){
+			super.spinRead();
+			slowRead();
+		}
+		return this;
+	}
+
+	@Override
+	public CloseableLock adaptiveRead () {
+		if (!tryFastRead()){
+			super.adaptiveRead();
+			slowRead();
+		}
+		return this;
+	}
+
+	/** A write waits for the biased readers before it counts as a modification; tryWrite fails on a biased reader */
+	@Override
+	protected boolean writeAcquired (boolean wait) {
+		return revokeBias(wait) && super.writeAcquired(wait);
+	}
+
+	/** Fast reads are allowed (no writer since the inhibition ended) */
+	public boolean isReaderBiased (){ return readerBias; }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+/**
+ One read-write spin lock whose word is a field of the object it guards (e.g. a bucket table): the lock and the data
+ are reached through the same reference, no lock array or lock object in between.
+ Same word and protocol as {@link SpinReadWriteLocks}; the implementation keeps a {@code volatile long} and accesses it
+ through a static final {@link java.lang.invoke.VarHandle}.
+
+ Not reentrant! A nested read deadlocks with a waiting writer.
+*/
+public interface SpinLockWord {
+	/** Volatile read of the lock word */
+	long word ();
+
+	boolean casWord (long expected, long word);
+
+	/** Release: the unlock */
+	void addWord (long delta);
+
+	/** @return spins it took (0 ⇒ uncontended) */
+	default int read () {
+		for (int spins = 0;; spins = SpinReadWriteLocks.backOff(spins)){
+			long w = word();
+			if ((w & SpinReadWriteLocks.WRITER) == 0 && casWord(w, w + 1))
+				return spins;
+		}
+	}
+
+	/** Non-blocking {@link #read}: fails if a writer holds or waits for the lock */
+	default boolean tryRead () {
+		for (;;){
+			long w = word();
+			if ((w & SpinReadWriteLocks.WRITER) != 0)
+				return false;
+			if (casWord(w, w + 1))
+				return true;
+		}
+	}
+
+	default void unlockRead () {
+		addWord(-1L);
+	}
+
+	/** @return spins it took (0 ⇒ uncontended) */
+	default int write () {
+		int spins = 0;
+		for (;; spins = SpinReadWriteLocks.backOff(spins)){// claim: no new readers, no other writer
+			long w = word();
+			if ((w & SpinReadWriteLocks.WRITER) == 0 && casWord(w, w + SpinReadWriteLocks.MOD + SpinReadWriteLocks.WRITER))
+				break;
+		}
+		while ((word() & SpinReadWriteLocks.READERS) != 0)// the readers leave
+			spins = SpinReadWriteLocks.backOff(spins);
+		return spins;
+	}
+
+	/** Non-blocking {@link #write}: fails if the lock is held */
+	default boolean tryWrite () {
+		long w = word();
+		return (w & (SpinReadWriteLocks.WRITER | SpinReadWriteLocks.READERS)) == 0
+			&& casWord(w, w + SpinReadWriteLocks.MOD + SpinReadWriteLocks.WRITER);
+	}
+
+	default void unlockWrite () {
+		addWord(-SpinReadWriteLocks.WRITER);
+	}
+
+	/** @see SpinReadWriteLocks#modCount */
+	default int modCount () {
+		return (int) (word() >>> 32);
+	}
+}
\ No newline at end of file
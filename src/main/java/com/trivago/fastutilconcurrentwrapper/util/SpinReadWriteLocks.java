@@ -0,0 +1,122 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import jakarta.validation.constraints.Positive;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ An array of read-write spin locks: lock {@code i} is one {@code long} word of a {@code long[]}, {@link #STRIDE} words apart
+ (a cache line per lock). No lock objects, no queue, no pointer hop: 64 bytes per lock instead of a
+ {@link CloseableReadWriteLock.Padded} with its Sync and lock views.
+
+ Word: write lock acquisitions ({@link #modCount}) in the high 32 bits, the writer bit, then the reader count.
+ A writer sets the writer bit (no new readers) and spins until the readers have left ⇒ readers can't starve writers.
+ Waiting spins, then yields: for short critical sections.
+
+ Not reentrant! A nested read deadlocks with a waiting writer.
+ A lock whose word lives in the object it guards: {@link SpinLockWord}.
+
+ @see java.util.concurrent.locks.StampedLock
+*/
+public class SpinReadWriteLocks {
+	/** 8 longs = 64 bytes, same size as cache line */
+	public static final int STRIDE = 8;
+	static final long WRITER = 1L << 31;
+	static final long READERS = WRITER - 1;
+	static final long MOD = 1L << 32;
+	/** Spins before every {@link Thread#yield()}: a descheduled holder gets the CPU */
+	static final int SPINS = 64;
+	private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] words;
+	private final int length;
+
+	public SpinReadWriteLocks (@Positive int length) {
+		if (length < 1 || length > Integer.MAX_VALUE / STRIDE - 1)
+			throw new IllegalArgumentException("length must be between 1 and %d, but: %d".formatted(Integer.MAX_VALUE / STRIDE - 1, length));
+		this.length = length;
+		this.words = new long[(length + 1) * STRIDE];// + a line: the first lock doesn't share the array header's line
+	}//new
+
+	public int length (){ return length; }
+
+	private static int index (int lock){ return (lock + 1) * STRIDE; }
+
+	static int backOff (int spins) {
+		if (++spins % SPINS == 0)
+			Thread.yield();
+		else
+			Thread.onSpinWait();
+		return spins;
+	}
+
+	/** @return spins it took (0 ⇒ uncontended) */
+	public int read (int lock) {
+		int i = index(lock);
+		for (int spins = 0;; spins = backOff(spins)){
+			long w = (long) WORD.getVolatile(words, i);
+			if ((w & WRITER) == 0 && WORD.compareAndSet(words, i, w, w + 1))
+				return spins;
+		}
+	}
+
+	/** Non-blocking {@link #read}: fails if a writer holds or waits for the lock */
+	public boolean tryRead (int lock) {
+		int i = index(lock);
+		for (;;){
+			long w = (long) WORD.getVolatile(words, i);
+			if ((w & WRITER) != 0)
+				return false;
+			if (WORD.compareAndSet(words, i, w, w + 1))
+				return true;
+		}
+	}
+
+	public void unlockRead (int lock) {
+		WORD.getAndAddRelease(words, index(lock), -1L);
+	}
+
+	/** @return spins it took (0 ⇒ uncontended) */
+	public int write (int lock) {
+		int i = index(lock), spins = 0;
+		for (;; spins = backOff(spins)){// claim: no new readers, no other writer
+			long w = (long) WORD.getVolatile(words, i);
+			if ((w & WRITER) == 0 && WORD.compareAndSet(words, i, w, w + MOD + WRITER))
+				break;
+		}
+		while (((long) WORD.getVolatile(words, i) & READERS) != 0)// the readers leave
+			spins = backOff(spins);
+		return spins;
+	}
+
+	/** Non-blocking {@link #write}: fails if the lock is held */
+	public boolean tryWrite (int lock) {
+		int i = index(lock);
+		long w = (long) WORD.getVolatile(words, i);
+		return (w & (WRITER | READERS)) == 0 && WORD.compareAndSet(words, i, w, w + MOD + WRITER);
+	}
+
+	public void unlockWrite (int lock) {
+		WORD.getAndAddRelease(words, index(lock), -WRITER);
+	}
+
+	/** Changes on every {@link #write}/{@link #tryWrite} ⇒ the guarded data could have been modified. Must be read under the lock */
+	public int modCount (int lock) {
+		return (int) ((long) WORD.getVolatile(words, index(lock)) >>> 32);
+	}
+
+	/** Held or claimed by a writer */
+	public boolean isWriteLocked (int lock) {
+		return ((long) WORD.getVolatile(words, index(lock)) & WRITER) != 0;
+	}
+
+	public int readers (int lock) {
+		return (int) ((long) WORD.getVolatile(words, index(lock)) & READERS);
+	}
+
+	@Override
+	public String toString () {
+		return "SpinReadWriteLocks{length=%d}".formatted(length);
+	}
+}
\ No newline at end of file
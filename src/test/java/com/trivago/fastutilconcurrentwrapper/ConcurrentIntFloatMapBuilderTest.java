@@ -2,6 +2,7 @@ package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentBusyWaitingIntFloatMap;
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntFloatMap;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentOptimisticIntFloatMap;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -47,4 +48,24 @@ public class ConcurrentIntFloatMapBuilderTest {
         assertEquals(10.1f, v);
         assertEquals(map.get(2), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentIntFloatMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.8f);
+
+        ConcurrentIntFloatMap map = b.build();
+
+        map.put(1, 10.1f);
+        float v = map.get(1);
+
+			  assertInstanceOf(ConcurrentOptimisticIntFloatMap.class, map);
+			  assertSame(ConcurrentOptimisticIntFloatMap.class, map.getClass());
+        assertEquals(10.1f, v);
+        assertEquals(map.get(2), map.getDefaultValue());
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentBusyWaitingIntIntMap;
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentOptimisticIntIntMap;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -47,4 +48,24 @@ public class ConcurrentIntIntMapBuilderTest {
         assertEquals(10, v);
         assertEquals(map.get(2), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentIntIntMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.8f);
+
+        ConcurrentIntIntMap map = b.build();
+
+        map.put(1, 10);
+        int v = map.get(1);
+
+			  assertInstanceOf(ConcurrentOptimisticIntIntMap.class, map);
+			  assertSame(ConcurrentOptimisticIntIntMap.class, map.getClass());
+        assertEquals(10, v);
+        assertEquals(map.get(2), map.getDefaultValue());
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentBusyWaitingIntLongMap;
 import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntLongMap;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentOptimisticIntLongMap;
 import lombok.val;
 import org.junit.jupiter.api.Test;
 
@@ -49,4 +50,25 @@ public class ConcurrentIntLongMapBuilderTest {
 		assertEquals(-1, map.get(2));
 		assertEquals(map.get(2), map.getDefaultValue());
 	}
+
+	@Test
+	public void buildsOptimisticMap() {
+		val b = ConcurrentIntLongMap.newBuilder()
+				.withBuckets(2)
+				.withDefaultValue(DEFAULT_VALUE)
+				.withInitialCapacity(100)
+				.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+				.withLoadFactor(0.9f);
+
+		ConcurrentIntLongMap map = b.build();
+
+		map.put(1, 10L);
+		long v = map.get(1);
+
+		assertInstanceOf(ConcurrentOptimisticIntLongMap.class, map);
+		assertEquals(10L, v);
+		assertEquals(-1, map.getDefaultValue());
+		assertEquals(-1, map.get(2));
+		assertEquals(map.get(2), map.getDefaultValue());
+	}
 }
\ No newline at end of file
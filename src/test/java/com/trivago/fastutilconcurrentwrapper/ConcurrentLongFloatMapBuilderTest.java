@@ -2,6 +2,7 @@ package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentBusyWaitingLongFloatMap;
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongFloatMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOptimisticLongFloatMap;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -47,4 +48,24 @@ public class ConcurrentLongFloatMapBuilderTest {
         assertEquals(10.1f, v);
         assertEquals(map.get(2L), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentLongFloatMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.8f);
+
+        ConcurrentLongFloatMap map = b.build();
+
+        map.put(1L, 10.1f);
+        float v = map.get(1L);
+
+			  assertInstanceOf(ConcurrentOptimisticLongFloatMap.class, map);
+			  assertSame(ConcurrentOptimisticLongFloatMap.class, map.getClass());
+        assertEquals(10.1f, v);
+        assertEquals(map.get(2L), map.getDefaultValue());
+    }
 }
\ No newline at end of file
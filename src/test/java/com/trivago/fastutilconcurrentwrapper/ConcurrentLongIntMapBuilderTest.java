@@ -2,6 +2,7 @@ package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentBusyWaitingLongIntMap;
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOptimisticLongIntMap;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,4 +47,31 @@ public class ConcurrentLongIntMapBuilderTest {
         assertEquals(10, v);
         assertEquals(map.get(2L), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentLongIntMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.9f);
+
+        ConcurrentLongIntMap map = b.build();
+
+        map.put(1L, 10);
+        long v = map.get(1L);
+
+			  assertInstanceOf(ConcurrentOptimisticLongIntMap.class, map);
+        assertEquals(10, v);
+        assertEquals(map.get(2L), map.getDefaultValue());
+    }
+
+    @Test
+    public void lockFreeIsNotSupported() {
+        var b = ConcurrentLongIntMap.newBuilder()
+                .withMode(PrimitiveMapBuilder.MapMode.LOCK_FREE);
+
+        assertThrows(UnsupportedOperationException.class, b::build);
+    }
 }
\ No newline at end of file
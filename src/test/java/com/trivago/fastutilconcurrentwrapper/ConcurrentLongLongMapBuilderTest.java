@@ -1,7 +1,9 @@
 package com.trivago.fastutilconcurrentwrapper;
 
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentBusyWaitingLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLockFreeLongLongMap;
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOptimisticLongLongMap;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,4 +48,42 @@ public class ConcurrentLongLongMapBuilderTest {
         assertEquals(10L, v);
         assertEquals(map.get(2L), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentLongLongMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.9f);
+
+        ConcurrentLongLongMap map = b.build();
+
+        map.put(1L, 10L);
+        long v = map.get(1L);
+
+			  assertInstanceOf(ConcurrentOptimisticLongLongMap.class, map);
+        assertEquals(10L, v);
+        assertEquals(map.get(2L), map.getDefaultValue());
+    }
+
+    @Test
+    public void buildsLockFreeMap() {
+        var b = ConcurrentLongLongMap.newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.LOCK_FREE)
+                .withLoadFactor(0.9f);
+
+        ConcurrentLongLongMap map = b.build();
+
+        map.put(1L, 10L);
+        long v = map.get(1L);
+
+			  assertInstanceOf(ConcurrentLockFreeLongLongMap.class, map);
+        assertEquals(10L, v);
+        assertEquals(map.get(2L), map.getDefaultValue());
+    }
 }
\ No newline at end of file
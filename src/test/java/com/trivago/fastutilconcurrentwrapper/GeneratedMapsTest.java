@@ -0,0 +1,210 @@
+package com.trivago.fastutilconcurrentwrapper;
+
+import com.trivago.fastutilconcurrentwrapper.charkey.ConcurrentCharByteMap;
+import com.trivago.fastutilconcurrentwrapper.charkey.ConcurrentCopyOnWriteCharByteMap;
+import com.trivago.fastutilconcurrentwrapper.floatkey.ConcurrentFloatIntMap;
+import com.trivago.fastutilconcurrentwrapper.floatkey.ConcurrentLeftRightFloatIntMap;
+import com.trivago.fastutilconcurrentwrapper.floatkey.ConcurrentOptimisticFloatIntMap;
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentBusyWaitingLongDoubleMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongDoubleMap;
+import com.trivago.fastutilconcurrentwrapper.objkey.ConcurrentObjectObjectMap;
+import com.trivago.fastutilconcurrentwrapper.objkey.ConcurrentOptimisticObjectObjectMap;
+import com.trivago.fastutilconcurrentwrapper.shortkey.ConcurrentShortObjectMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Maps generated from src/main/templates */
+public class GeneratedMapsTest {
+
+  @Test
+  void longDouble() {
+    ConcurrentLongDoubleMap map = ConcurrentLongDoubleMap.newBuilder()
+        .withBuckets(4)
+        .withInitialCapacity(16)
+        .withMode(PrimitiveMapBuilder.MapMode.BUSY_WAITING)
+        .build();
+    assertInstanceOf(ConcurrentBusyWaitingLongDoubleMap.class, map);
+    assertEquals(0.0, map.get(1));
+    assertEquals(0.0, map.addTo(1, 1.5));
+    assertEquals(1.5, map.put(1, 2.5));
+    assertEquals(5.0, map.mergeDouble(1, 2, (a, b)->a * b));
+    assertEquals(7.0, map.computeIfPresent(1, (k, v)->v + 2));
+
+    long[] keys = {1, 2, 3, 42};
+    map.putAll(keys, new double[]{0.1, 0.2, 0.3, 0.4}, true);
+    double[] out = new double[keys.length];
+    map.getAll(keys, out);
+    assertArrayEquals(new double[]{0.1, 0.2, 0.3, 0.4}, out);
+    assertEquals(2, map.removeAll(new long[]{2, 3, 100}));
+    assertEquals(2, map.size());
+
+    double[] sum = new double[1];
+    map.forEach((key, value)->sum[0] += key * value, 1);
+    assertEquals(0.1 + 42 * 0.4, sum[0], 1e-9);
+    assertEquals(0.5, map.values().parallel().sum(), 1e-9);
+    assertEquals(43, map.keys().sum());
+  }
+
+  @Test
+  void charByte() {
+    var map = new ConcurrentCharByteMap(3, 16, 0.8f, (byte) -1);
+    assertEquals(-1, map.get('a'));
+    assertEquals(0, map.put('a', (byte) 1));// fastutil's default return value
+    assertEquals(1, map.addTo('a', (byte) 2));
+    assertEquals(3, map.computeIfAbsent('a', k->(byte) 9));
+    assertEquals(9, map.computeIfAbsent('b', k->(byte) 9));
+    assertTrue(map.remove('b', (byte) 9));
+    assertFalse(map.containsKey('b'));
+    assertEquals(3, map.remove('a'));
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  void floatKeysUseFastutilEquality() {
+    var map = new ConcurrentFloatIntMap(8, 16, 0.8f, 0);
+    map.put(Float.NaN, 1);
+    map.put(0.0f, 2);
+    map.put(-0.0f, 3);
+    assertEquals(1, map.get(Float.NaN));
+    assertEquals(2, map.get(0.0f));
+    assertEquals(3, map.get(-0.0f));
+    map.getAll(new float[]{Float.NaN, -0.0f}, new int[2]);
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  void optimisticReadFindsTheLockedBucket() {
+    ConcurrentFloatIntMap map = ConcurrentFloatIntMap.newBuilder()
+        .withBuckets(8)
+        .withDefaultValue(-1)
+        .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+        .build();
+    assertInstanceOf(ConcurrentOptimisticFloatIntMap.class, map);
+    for (int i = 0; i < 100; i++)
+      map.put(i * 0.5f, i);
+    for (int i = 0; i < 100; i++) {// the bucket of the optimistic read is the bucket of the write
+      assertEquals(i, map.get(i * 0.5f));
+      assertTrue(map.containsKey(i * 0.5f));
+    }
+    assertEquals(-1, map.get(0.25f));
+    map.restripe(16);
+    assertEquals(99, map.get(49.5f));
+  }
+
+  @Test
+  void objectKeysAndValues() {
+    ConcurrentObjectObjectMap<String,String> map = ConcurrentObjectObjectMap.<String,String>newBuilder()
+        .withBuckets(2)
+        .withDefaultValue("?")
+        .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+        .build();
+    assertInstanceOf(ConcurrentOptimisticObjectObjectMap.class, map);
+    assertEquals("?", map.get("a"));
+    assertEquals("A", map.computeIfAbsent("a", String::toUpperCase));
+    assertEquals("AB", map.merge("a", "B", String::concat));
+    assertEquals("AB", map.remove("a"));
+    assertNull(map.remove("a"));
+
+    var shortKeys = new ConcurrentShortObjectMap<String>(2, 16, 0.8f, null);
+    shortKeys.putAll(new short[]{1, 2}, new String[]{"x", "y"});
+    assertEquals("y", shortKeys.get((short) 2));
+    assertNull(shortKeys.get((short) 3));
+
+    map.putAll(new String[]{"a", "b", "c"}, new String[]{"1", "2", "3"});
+    assertEquals("abc", map.keys().parallel().sorted().collect(Collectors.joining()));
+    assertEquals(6, map.values().mapToInt(Integer::parseInt).sum());
+    assertTrue(map.entries().allMatch(e->e.getValue().equals(String.valueOf(e.getKey().charAt(0) - 'a' + 1))));
+    assertEquals(3, shortKeys.keys().parallel().sum());
+
+    map.restripe(8);
+    shortKeys.restripe(6);
+    assertEquals("2", map.get("b"));
+    assertEquals("abc", map.keys().sorted().collect(Collectors.joining()));
+    assertEquals("x", shortKeys.get((short) 1));
+    assertEquals(2, shortKeys.size());
+  }
+
+  @Test
+  void lockFreeIsNotSupported() {
+    var b = ConcurrentCharByteMap.newBuilder().withMode(PrimitiveMapBuilder.MapMode.LOCK_FREE);
+    assertThrows(UnsupportedOperationException.class, b::build);
+  }
+
+  @Test
+  void copyOnWrite() {
+    var map = ConcurrentCharByteMap.newBuilder()
+        .withBuckets(2)
+        .withDefaultValue((byte) -1)
+        .withMode(PrimitiveMapBuilder.MapMode.COPY_ON_WRITE)
+        .build();
+    assertInstanceOf(ConcurrentCopyOnWriteCharByteMap.class, map);
+    assertEquals(-1, map.get('a'));
+    map.putAll(new char[]{'a', 'b', 'c'}, new byte[]{1, 2, 3});
+    assertEquals(2, map.get('b'));
+    assertEquals(2, map.remove('b'));
+    assertFalse(map.containsKey('b'));
+    map.restripe(4);
+    assertTrue(map.containsKey('c'));
+    assertEquals(1, map.get('a'));
+    assertEquals(2, map.size());
+  }
+
+  /** The changed key is passed to the other copy as raw bits (float) or as the Object itself */
+  @Test
+  void leftRight() {
+    var floats = ConcurrentFloatIntMap.newBuilder().withBuckets(2).withDefaultValue(-1)
+        .withMode(PrimitiveMapBuilder.MapMode.LEFT_RIGHT).build();
+    assertInstanceOf(ConcurrentLeftRightFloatIntMap.class, floats);
+    for (int round = 0; round < 2; round++) {// a write swaps the copies
+      floats.put(Float.NaN, 1);
+      floats.put(-0.0f, 2);
+      floats.put(1.5f, 3);
+      floats.remove(1.5f);
+      assertEquals(1, floats.get(Float.NaN));
+      assertEquals(2, floats.get(-0.0f));
+      assertEquals(-1, floats.get(0.0f));
+      assertFalse(floats.containsKey(1.5f));
+    }
+    var objects = ConcurrentObjectObjectMap.<String,String>newBuilder().withBuckets(3)
+        .withMode(PrimitiveMapBuilder.MapMode.LEFT_RIGHT).build();
+    objects.put("a", "A");
+    objects.put("b", "B");
+    objects.remove("b");
+    objects.put("c", "C");
+    objects.restripe(6);
+    assertEquals("A", objects.get("a"));
+    assertNull(objects.get("b"));
+    assertTrue(objects.containsKey("c"));
+  }
+
+  @Test
+  void snapshot() throws IOException {
+    var bytes = new ConcurrentCharByteMap(3, 16, 0.8f, (byte) -1);
+    for (char c = 'a'; c <= 'z'; c++)
+      bytes.put(c, (byte) c);
+    var out = new BAOS();
+    bytes.writeTo(out);
+    var restored = new ConcurrentCharByteMap(5, 16, 0.8f, (byte) -1);
+    restored.readFrom(new BAIS(out.toByteArray()));
+    assertEquals(26, restored.size());
+    assertEquals((byte) 'q', restored.get('q'));
+
+    var objects = new ConcurrentObjectObjectMap<String,String>(4, 16, 0.8f, null);
+    for (int i = 0; i < 1000; i++)
+      objects.put("k"+ i, "v"+ i);
+    out.reset();
+    objects.writeTo(out);
+    var copy = new ConcurrentObjectObjectMap<String,String>(4, 16, 0.8f, null);
+    copy.readFrom(new BAIS(out.toByteArray()));
+    assertEquals(1000, copy.size());
+    assertEquals("v999", copy.get("k999"));
+    // other key/value types: the blocks don't match
+    assertThrows(IOException.class, ()->new ConcurrentLongDoubleMap(4, 16, 0.8f, 0).readFrom(new BAIS(out.toByteArray())));
+  }
+}
\ No newline at end of file
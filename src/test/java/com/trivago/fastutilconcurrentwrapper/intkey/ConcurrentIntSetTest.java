@@ -0,0 +1,44 @@
+package com.trivago.fastutilconcurrentwrapper.intkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ @see ConcurrentIntSet
+*/
+class ConcurrentIntSetTest {
+
+	@Test
+	void addRemoveContains () {
+		ConcurrentIntSet set = ConcurrentIntSet.newBuilder()
+			.withBuckets(3)
+			.withInitialCapacity(16)
+			.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+			.build();
+		assertTrue(set.add(-1));
+		assertFalse(set.add(-1));
+		assertTrue(set.contains(-1));
+		assertFalse(set.contains(1));
+		assertTrue(set.remove(-1));
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	void batchAndForEach () {
+		var set = new ConcurrentIntSet(4, 16, 0.8f, PrimitiveMapBuilder.MapMode.BUSY_WAITING);
+		assertEquals(4, set.addAll(new int[]{10, 20, 30, 40}, true));
+		boolean[] out = new boolean[3];
+		set.contains(new int[]{20, 25, 40}, out);
+		assertArrayEquals(new boolean[]{true, false, true}, out);
+
+		var sum = new LongAdder();
+		set.forEach(sum::add, true);
+		assertEquals(100, sum.sum());
+		assertEquals(1, set.removeAll(new int[]{10, 11}));
+		assertEquals(3, set.size());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.trivago.fastutilconcurrentwrapper.intkey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The whole {@link SynchronizedInt2ObjLinkedHashMapTest} with optimistic reads */
+class StampedInt2ObjLinkedHashMapTest extends SynchronizedInt2ObjLinkedHashMapTest {
+	@BeforeEach  @Override
+	void setUp() {
+		map = new StampedInt2ObjLinkedHashMap<>();
+	}
+
+	@Test
+	void firstAndLastOfEmpty() {
+		assertThrows(NoSuchElementException.class, () -> map.firstIntKey());
+		assertThrows(NoSuchElementException.class, () -> map.lastIntKey());
+		map.put(3, "3");
+		map.put(1, "1");
+		assertEquals(3, map.firstIntKey());
+		assertEquals(1, map.lastIntKey());
+	}
+
+	/** Reads overlapping rehashes, trims and clears end and see a consistent map: a key is absent or has its value */
+	@Test  @Timeout(60)
+	void readsWhileRehashing() throws InterruptedException {
+		var m = new StampedInt2ObjLinkedHashMap<String>(4, 0.75f);
+		var done = new AtomicBoolean();
+		var error = new AtomicBoolean();
+		Thread[] readers = new Thread[3];
+		for (int t = 0; t < readers.length; t++){
+			readers[t] = new Thread(() -> {
+				while (!done.get()){
+					for (int k = 1; k < 2_000; k += 7){
+						String v = m.get(k);
+						if (v != null && !v.equals(Integer.toString(k)))
+							error.set(true);
+					}
+					if (m.size() < 0 || m.containsKey(0))
+						error.set(true);
+				}
+			});
+			readers[t].setDaemon(true);// a reader stuck in a probe must not keep the JVM alive
+			readers[t].start();
+		}
+		for (int round = 0; round < 30; round++){
+			for (int k = 1; k <= 2_000; k++)
+				m.put(k, Integer.toString(k));
+			assertEquals(1, m.firstIntKey());
+			assertEquals(2_000, m.lastIntKey());
+			m.withWriteLock(x -> { x.clear(); return x.trim(); });// shrinks ⇒ the next round rehashes again
+		}
+		done.set(true);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		for (Thread t : readers){
+			t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			assertFalse(t.isAlive(), "reader stuck in a lookup");
+		}
+		assertFalse(error.get());
+		assertTrue(m.isEmpty());
+	}
+}
\ No newline at end of file
@@ -1,5 +1,8 @@
 package com.trivago.fastutilconcurrentwrapper.intkey;
 
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
+import com.trivago.fastutilconcurrentwrapper.util.ReaderBiasedReadWriteLock;
 import it.unimi.dsi.fastutil.ints.Int2ObjectFunction;
 import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSortedSet;
@@ -7,6 +10,7 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -17,7 +21,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 class SynchronizedInt2ObjLinkedHashMapTest {
-	private SynchronizedInt2ObjLinkedHashMap<String> map;
+	SynchronizedInt2ObjLinkedHashMap<String> map;
 
 	@BeforeEach
 	void setUp() {
@@ -32,6 +36,17 @@ class SynchronizedInt2ObjLinkedHashMapTest {
 		assertEquals(0, customMap.size());
 	}
 
+	@Test
+	void testConstructorWithLock() {
+		var lock = new ReaderBiasedReadWriteLock();
+		var biased = new SynchronizedInt2ObjLinkedHashMap<String>(16, 0.75f, lock);
+		biased.put(1, "one");
+		assertEquals("one", biased.get(1));
+		assertEquals(1, lock.modCount());
+		assertEquals(0, lock.getReadLockCount());
+		assertThrows(NullPointerException.class, () -> new SynchronizedInt2ObjLinkedHashMap<String>(16, 0.75f, null));
+	}
+
 	@Test
 	void testSize() {
 		assertEquals(0, map.size());
@@ -359,4 +374,16 @@ class SynchronizedInt2ObjLinkedHashMapTest {
 		assertThrows(UnsupportedOperationException.class, () -> map.headMap(1));
 		assertThrows(UnsupportedOperationException.class, () -> map.tailMap(1));
 	}
+
+	@Test
+	void snapshotKeepsOrder () throws IOException {
+		for (int k = 100; k > 0; k--)
+			map.put(k * 7, "v"+ k);
+		var out = new BAOS();
+		map.writeTo(out);
+		var restored = new SynchronizedInt2ObjLinkedHashMap<String>();
+		restored.readFrom(new BAIS(out.toByteArray()));
+		assertArrayEquals(map.keyArray(), restored.keyArray());
+		assertEquals("v1", restored.get(restored.lastIntKey()));
+	}
 }
\ No newline at end of file
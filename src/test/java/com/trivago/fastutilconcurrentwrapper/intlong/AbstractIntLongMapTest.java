@@ -203,4 +203,59 @@ abstract class AbstractIntLongMapTest extends AbstractMapTest {
 
     assertEquals(result, map.getDefaultValue());
   }
+
+  @Test
+  void getAllFillsValuesInKeyOrder() {
+    int[] keys = new int[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = nextInt();
+      if (i % 3 != 0)
+        map.put(keys[i], keys[i] * 7L);
+    }
+    long[] out = new long[keys.length];
+
+    map.getAll(keys, out);
+
+    for (int i = 0; i < keys.length; i++)
+      assertEquals(i % 3 != 0 ? keys[i] * 7L : defaultValue, out[i]);
+  }
+
+  @Test
+  void putAllAndRemoveAll() {
+    int[] keys = {10, 20, 30, 10};
+    long[] values = {1, 2, 3, 4};
+    map.putAll(keys, values, true);
+
+    assertEquals(3, map.size());
+    assertEquals(4, map.get(10));// the last one wins
+    assertEquals(3, map.get(30));
+    assertEquals(2, map.removeAll(new int[]{20, 30, 40}));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void primitiveComputeAndMerge() {
+    assertEquals(defaultValue + 5, map.computeLong(5, (k, v)->v + k));
+    assertEquals(defaultValue, map.computeIfPresentLong(6, (k, v)->v + 1));
+    assertFalse(map.containsKey(6));
+    assertEquals(defaultValue + 6, map.computeIfPresentLong(5, (k, v)->v + 1));
+
+    assertEquals(7, map.mergeLong(7, 7, Long::sum));
+    assertEquals(10, map.mergeLong(7, 3, Long::sum));
+    assertEquals(2, map.size());
+  }
+
+  @Test
+  void forEachKeysAndValues() {
+    for (int key = 1; key <= 100; key++)
+      map.put(key, (key * 2));
+    long[] sums = new long[3];
+    map.forEach((key, value)->{
+      assertEquals(key * 2, value);
+      sums[0]++;
+    }, 9);
+    map.forEachKey(key->sums[1] += key);
+    map.forEachValue(value->sums[2] += value, 1);
+    assertArrayEquals(new long[]{100, 5050, 10_100}, sums);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.trivago.fastutilconcurrentwrapper.intlong;
+
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntLongMap;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentOptimisticIntLongMap;
+
+public class ConcurrentOptimisticIntLongMapTest extends AbstractIntLongMapTest {
+  @Override
+	ConcurrentIntLongMap createMap () {
+    return new ConcurrentOptimisticIntLongMap(16, 16, 0.9F, defaultValue);
+  }
+}
\ No newline at end of file
@@ -202,4 +202,59 @@ abstract class AbstractLongIntMapTest extends AbstractMapTest {
 
         assertEquals(result, map.getDefaultValue());
     }
+
+    @Test
+    void getAllFillsValuesInKeyOrder() {
+        long[] keys = new long[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = nextLong();
+            if (i % 3 != 0)
+                map.put(keys[i], i);
+        }
+        int[] out = new int[keys.length];
+
+        map.getAll(keys, out);
+
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(i % 3 != 0 ? i : defaultValue, out[i]);
+    }
+
+    @Test
+    void putAllAndRemoveAll() {
+        long[] keys = {10, 20, 30, 10};
+        int[] values = {1, 2, 3, 4};
+        map.putAll(keys, values);
+
+        assertEquals(3, map.size());
+        assertEquals(4, map.get(10));// the last one wins
+        assertEquals(3, map.get(30));
+        assertEquals(2, map.removeAll(new long[]{20, 30, 40}, true));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void primitiveComputeAndMerge() {
+        assertEquals(defaultValue + 5, map.computeInt(5, (k, v)->v + (int) k));
+        assertEquals(defaultValue, map.computeIfPresentInt(6, (k, v)->v + 1));
+        assertFalse(map.containsKey(6));
+        assertEquals(defaultValue + 6, map.computeIfPresentInt(5, (k, v)->v + 1));
+
+        assertEquals(7, map.mergeInt(7, 7, Integer::sum));
+        assertEquals(10, map.mergeInt(7, 3, Integer::sum));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void forEachKeysAndValues() {
+        for (long key = 1; key <= 100; key++)
+            map.put(key, (int) (key * 2));
+        long[] sums = new long[3];
+        map.forEach((key, value)->{
+            assertEquals(key * 2, value);
+            sums[0]++;
+        }, 9);
+        map.forEachKey(key->sums[1] += key);
+        map.forEachValue(value->sums[2] += value, 1);
+        assertArrayEquals(new long[]{100, 5050, 10_100}, sums);
+    }
 }
\ No newline at end of file
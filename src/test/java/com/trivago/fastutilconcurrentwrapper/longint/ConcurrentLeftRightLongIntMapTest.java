@@ -0,0 +1,112 @@
+package com.trivago.fastutilconcurrentwrapper.longint;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLeftRightLongIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongIntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentLeftRightLongIntMapTest extends AbstractLongIntMapTest {
+    @Override
+    ConcurrentLongIntMap createMap() {
+        return ConcurrentLongIntMap.newBuilder()
+            .withBuckets(16)
+            .withInitialCapacity(16)
+            .withLoadFactor(0.9F)
+            .withDefaultValue(defaultValue)
+            .withMode(PrimitiveMapBuilder.MapMode.LEFT_RIGHT)
+            .build();
+    }
+
+    @Test
+    void builder() {
+        assertInstanceOf(ConcurrentLeftRightLongIntMap.class, createMap());
+    }
+
+    /** get/containsKey read the published copy while a writer changes the other one */
+    @Test
+    void readersDoNotWaitForWriters() {
+        var map = new ConcurrentLeftRightLongIntMap(1, 16, 0.75F, -1);
+        map.put(1, 10);
+        map.computeIfPresent(1, (key, value)->{
+            map.put(2, 20);// same bucket, reentrant write: the whole bucket is synced on unlock
+            try {
+                assertEquals(10, CompletableFuture.supplyAsync(()->map.get(1)).get(10, TimeUnit.SECONDS));
+                assertFalse(CompletableFuture.supplyAsync(()->map.containsKey(2)).get(10, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+            return value + 1;
+        });
+        assertEquals(11, map.get(1));
+        assertEquals(20, map.get(2));
+        map.put(3, 30);// the other copy is written now
+        assertEquals(11, map.get(1));
+        assertEquals(20, map.get(2));
+    }
+
+    /** Random single-key and batch writes against fastutil: both copies of every bucket must end up with the same entries */
+    @Test
+    void copiesStayInSync() {
+        var map = new ConcurrentLeftRightLongIntMap(4, 4, 0.75F, -1);
+        var fastutil = new Long2IntOpenHashMap();
+        var rnd = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            long key = rnd.nextInt(2_000);
+            switch (rnd.nextInt(5)) {
+                case 0 -> assertEquals(fastutil.remove(key), map.remove(key), "remove "+ key);
+                case 1 -> assertEquals(fastutil.addTo(key, i), map.addTo(key, i), "addTo "+ key);
+                case 2 -> {
+                    map.putAll(new long[]{key, key + 1}, new int[]{i, -i});
+                    fastutil.put(key, i);
+                    fastutil.put(key + 1, -i);
+                }
+                default -> assertEquals(fastutil.put(key, i), map.put(key, i), "put "+ key);
+            }
+            if (i == 25_000)
+                map.restripe(16);
+        }
+        for (int round = 0; round < 2; round++) {// every write swaps the copies: check both
+            for (long key = 0; key <= 2_000; key++) {
+                assertEquals(fastutil.getOrDefault(key, -1), map.get(key), "get "+ key);
+                assertEquals(fastutil.containsKey(key), map.containsKey(key), "containsKey "+ key);
+            }
+            for (int bucketKey = 0; bucketKey < 64; bucketKey++)
+                map.put(10_000 + bucketKey, 0);
+        }
+        assertEquals(fastutil.size() + 64, map.size());
+    }
+
+    /** A reader never sees a value go back in time */
+    @Test
+    void readsWhileWriting() throws InterruptedException {
+        var map = new ConcurrentLeftRightLongIntMap(2, 16, 0.75F, -1);
+        var failure = new AtomicReference<String>();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(()->{
+                int[] seen = new int[16];
+                for (int i = 0; i < 300_000 && failure.get() == null; i++) {
+                    int key = i & 15, value = map.get(key);
+                    if (value < seen[key] && value != -1 || value == -1 && seen[key] > 0)
+                        failure.set("key %d: %d after %d".formatted(key, value, seen[key]));
+                    seen[key] = Math.max(seen[key], value);
+                }
+            });
+            readers[r].start();
+        }
+        for (int value = 1; value <= 20_000; value++)
+            map.put(value & 15, value);
+        for (Thread reader : readers)
+            reader.join();
+        assertNull(failure.get());
+        assertEquals(19_985, map.get(1));
+    }
+}
\ No newline at end of file
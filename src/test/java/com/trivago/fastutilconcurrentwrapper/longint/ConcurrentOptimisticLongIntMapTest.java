@@ -0,0 +1,12 @@
+package com.trivago.fastutilconcurrentwrapper.longint;
+
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOptimisticLongIntMap;
+
+
+public class ConcurrentOptimisticLongIntMapTest extends AbstractLongIntMapTest {
+    @Override
+    ConcurrentLongIntMap createMap() {
+        return new ConcurrentOptimisticLongIntMap(16, 16, 0.9F, defaultValue);
+    }
+}
\ No newline at end of file
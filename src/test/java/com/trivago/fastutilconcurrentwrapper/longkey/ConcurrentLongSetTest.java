@@ -0,0 +1,95 @@
+package com.trivago.fastutilconcurrentwrapper.longkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ @see ConcurrentLongSet
+*/
+class ConcurrentLongSetTest {
+
+	@Test
+	void addRemoveContains () {
+		var set = new ConcurrentLongSet(4, 16, 0.8f);
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(1));
+		assertFalse(set.add(1));
+		assertTrue(set.add(0));
+		assertTrue(set.add(Long.MIN_VALUE));
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(Long.MIN_VALUE));
+		assertFalse(set.contains(2));
+		assertEquals(3, set.size());
+		assertTrue(set.remove(1));
+		assertFalse(set.remove(1));
+		assertEquals(2, set.size());
+		set.clear();
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	void batch () {
+		ConcurrentLongSet set = ConcurrentLongSet.newBuilder()
+			.withBuckets(8)
+			.withInitialCapacity(16)
+			.withMode(PrimitiveMapBuilder.MapMode.BUSY_WAITING)
+			.build();
+		assertEquals(3, set.addAll(new long[]{1, 2, 3, 3}));
+		assertEquals(2, set.addAll(new long[]{3, 4, 5}, true));
+
+		long[] keys = {5, 6, 1, 42};
+		boolean[] out = new boolean[keys.length];
+		set.contains(keys, out);
+		assertArrayEquals(new boolean[]{true, false, true, false}, out);
+
+		assertEquals(2, set.removeAll(new long[]{1, 42, 5}, true));
+		assertEquals(3, set.size());
+		assertThrows(IllegalArgumentException.class, ()->set.contains(keys, new boolean[1]));
+	}
+
+	@Test
+	void parallelForEach () {
+		var set = new ConcurrentLongSet(16, 16, 0.8f);
+		long expected = 0;
+		for (long i = 0; i < 10_000; i++){
+			set.add(i);
+			expected += i;
+		}
+		var sum = new LongAdder();
+		set.forEach(sum::add, true);
+		assertEquals(expected, sum.sum());
+
+		List<Long> seq = new ArrayList<>();
+		set.forEach(seq::add);
+		assertEquals(10_000, seq.size());
+	}
+
+	@Test
+	void lockFreeIsNotSupported () {
+		assertThrows(UnsupportedOperationException.class, ()->new ConcurrentLongSet(1, 1, 0.8f, PrimitiveMapBuilder.MapMode.LOCK_FREE));
+	}
+
+	@Test
+	void snapshot () throws IOException {
+		var set = new ConcurrentLongSet(4, 16, 0.8f);
+		for (long k = -500; k < 500; k++)
+			set.add(k * 31);
+		var out = new BAOS();
+		set.writeTo(out);
+		for (var restored : new ConcurrentLongSet[]{new ConcurrentLongSet(4, 16, 0.8f), new ConcurrentLongSet(7, 16, 0.8f)}){
+			restored.readFrom(new BAIS(out.toByteArray()));
+			assertEquals(1000, restored.size());
+			for (long k = -500; k < 500; k++)
+				assertTrue(restored.contains(k * 31));
+		}
+	}
+}
\ No newline at end of file
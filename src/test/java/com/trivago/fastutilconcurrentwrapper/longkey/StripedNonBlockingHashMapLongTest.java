@@ -1,9 +1,14 @@
 package com.trivago.fastutilconcurrentwrapper.longkey;
 
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
+import com.trivago.fastutilconcurrentwrapper.support.LockMetrics;
+import com.trivago.fastutilconcurrentwrapper.util.CFUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -313,4 +318,45 @@ class StripedNonBlockingHashMapLongTest {
 		assertEquals(0, cache.size());
 		assertEquals("", cache.iterator().stream().sorted().map(cache::get).collect(Collectors.joining(", ")));
 	}
+
+	@Test
+	void lockMetrics () throws InterruptedException {
+		StripedNonBlockingHashMapLong<String> map = spawn();
+		assertNull(map.lockMetrics());
+		LockMetrics metrics = map.enableLockMetrics();
+		for (int t = 0; t < threadCount; t++)
+			executor.execute(()->{
+				for (int i = 0; i < 1000; i++)
+					map.withLock(42, e->e.setValue(e.getValue() == null ? "1" : String.valueOf(Integer.parseInt(e.getValue()) + 1)));
+			});
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals("10000", map.get(42));
+		map.put(1, "x");
+
+		LockMetrics.Snapshot snapshot = metrics.snapshot();
+		assertEquals(16, snapshot.numBuckets());
+		assertEquals(10_001, snapshot.totalAcquisitions());
+		assertEquals(10_000, snapshot.acquisitions(CFUtil.bucket(42L, 16)));
+		assertTrue(snapshot.longestHoldNanos() > 0);
+		assertEquals(CFUtil.bucket(42L, 16), snapshot.hottestBucket());
+
+		map.disableLockMetrics();
+		map.put(2, "y");
+		assertEquals(10_001, metrics.snapshot().totalAcquisitions());
+	}
+
+	@Test
+	void snapshot () throws IOException {
+		StripedNonBlockingHashMapLong<String> map = spawn();
+		for (long k = 0; k < 3 * StripedNonBlockingHashMapLong.SNAPSHOT_BLOCK / 2; k++)
+			map.put(k, "v"+ k);
+		var out = new BAOS();
+		map.writeTo(out);
+		StripedNonBlockingHashMapLong<String> restored = spawn();
+		restored.readFrom(new BAIS(out.toByteArray()));
+		assertEquals(map.size(), restored.size());
+		assertEquals("v0", restored.get(0));
+		assertEquals("v70000", restored.get(70_000));
+	}
 }
\ No newline at end of file
@@ -1,10 +1,22 @@
 package com.trivago.fastutilconcurrentwrapper.longlong;
 
 import com.trivago.fastutilconcurrentwrapper.AbstractMapTest;
+import com.trivago.fastutilconcurrentwrapper.io.BAIS;
+import com.trivago.fastutilconcurrentwrapper.io.BAOS;
 import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.support.LockMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 abstract class AbstractLongLongMapTest extends AbstractMapTest {
@@ -92,6 +104,43 @@ abstract class AbstractLongLongMapTest extends AbstractMapTest {
     assertEquals(entries, size);
   }
 
+  @Test
+  void sizeDoesNotWaitForWriters() throws Exception {
+    for (long key = 1; key <= 100; key++)
+      map.put(key, key);
+    // the mapping function runs under the bucket's write lock
+    map.computeIfAbsent(1_000, key->{
+      try {
+        return CompletableFuture.supplyAsync(map::size).get(10, TimeUnit.SECONDS);
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    });
+    assertEquals(100, map.get(1_000));
+    assertEquals(101, map.size());
+    assertEquals(101, map.exactSize());
+
+    Thread writer = new Thread(()->{
+      for (long key = 10_000; key < 30_000; key++) {
+        map.put(key, key);
+        map.remove(key);
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      int size = map.size();// every bucket is counted before or after its write: one extra key per bucket at most
+      assertTrue(size >= 101 && size <= 101 + 16, "size "+ size);
+    }
+    writer.join();
+    if (restripeable())
+      map.restripe(32);
+    assertEquals(101, map.size());
+    assertEquals(101, map.exactSize());
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.size());
+  }
+
   @Test  @Override
   protected void gettingExistingValueReturnsCorrectValue() {
     long key = nextLong();
@@ -203,4 +252,243 @@ abstract class AbstractLongLongMapTest extends AbstractMapTest {
 
     assertEquals(result, map.getDefaultValue());
   }
+
+  @Test
+  void getAllFillsValuesInKeyOrder() {
+    long[] keys = new long[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = nextLong();
+      if (i % 3 != 0)
+        map.put(keys[i], keys[i] + 1);
+    }
+    long[] out = new long[keys.length];
+
+    map.getAll(keys, out);
+
+    for (int i = 0; i < keys.length; i++)
+      assertEquals(i % 3 != 0 ? keys[i] + 1 : defaultValue, out[i]);
+    assertThrows(IllegalArgumentException.class, ()->map.getAll(keys, new long[1]));
+  }
+
+  @Test
+  void putAllAndRemoveAll() {
+    for (boolean parallel : new boolean[]{false, true}) {
+      long[] keys = new long[5000];
+      long[] values = new long[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = i + 1;
+        values[i] = nextLong() >>> 1;
+      }
+      map.putAll(keys, values, parallel);
+
+      assertEquals(keys.length, map.size());
+      for (int i = 0; i < keys.length; i++)
+        assertEquals(values[i], map.get(keys[i]));
+
+      long[] removed = {1, 2, 3, 3, -1};
+      assertEquals(3, map.removeAll(removed, parallel));
+      assertFalse(map.containsKey(2));
+      assertEquals(keys.length - 3, map.removeAll(keys, parallel));
+      assertTrue(map.isEmpty());
+    }
+  }
+
+  @Test
+  void primitiveComputeAndMerge() {
+    assertEquals(defaultValue + 5, map.computeLong(5, Long::sum));
+    assertEquals(defaultValue + 10, map.computeLong(5, Long::sum));
+    assertEquals(defaultValue, map.computeIfPresentLong(6, Long::sum));
+    assertFalse(map.containsKey(6));
+    assertEquals(defaultValue + 10 - 5, map.computeIfPresentLong(5, (k, v)->v - k));
+
+    assertEquals(7, map.mergeLong(7, 7, Long::sum));
+    assertEquals(10, map.mergeLong(7, 3, Long::sum));
+    assertEquals(10, map.get(7));
+    assertEquals(2, map.size());
+  }
+
+  @Test
+  void forEachVisitsEveryEntryOnce() {
+    for (long key = 0; key < 1000; key++)
+      map.put(key, key * 3);
+    for (int maxHold : new int[]{Integer.MAX_VALUE, 1, 7}) {
+      int[] seen = new int[1000];
+      map.forEach((key, value)->{
+        assertEquals(key * 3, value);
+        seen[(int) key]++;
+      }, maxHold);
+      for (int count : seen)
+        assertEquals(1, count);
+    }
+    long[] sums = new long[2];
+    map.forEachKey(key->sums[0] += key);
+    map.forEachValue(value->sums[1] += value, 10);
+    assertEquals(499_500, sums[0]);
+    assertEquals(3 * 499_500, sums[1]);
+    assertThrows(IllegalArgumentException.class, ()->map.forEachKey(key->{}, 0));
+  }
+
+  @Test
+  void forEachWithMaxHoldWhileWriting() throws InterruptedException {
+    for (long key = 0; key < 2000; key++)
+      map.put(key, key);
+    Thread writer = new Thread(()->{
+      for (long key = 10_000; key < 30_000; key++) {
+        map.put(key, key);
+        map.remove(key - 1000);
+      }
+    });
+    writer.start();
+    try {
+      for (int i = 0; i < 20; i++)
+        map.forEach((key, value)->assertEquals(key, value), 3);
+    } finally {
+      writer.join();
+    }
+    assertEquals(3000, map.size());
+  }
+
+  @Test
+  void streamsSplitByBucketRange() {
+    for (long key = 0; key < 1000; key++)
+      map.put(key, key * 3);
+    assertEquals(499_500, map.keys().parallel().sum());
+    assertEquals(3 * 499_500, map.values().parallel().sum());
+    assertEquals(1000, map.keys().parallel().distinct().count());
+    assertTrue(map.entries().parallel().allMatch(e->e.getLongValue() == e.getLongKey() * 3));
+    assertEquals(1000, map.entries().count());
+    assertEquals(5, map.keys().limit(5).count());
+
+    var spliterator = map.keys().spliterator();
+    assertTrue(spliterator.estimateSize() <= 1000);
+    map.clear();
+    assertEquals(0, map.keys().count());
+  }
+
+  /** LOCK_FREE maps can't {@link ConcurrentLongLongMap#restripe} */
+  boolean restripeable () {
+    return true;
+  }
+
+  @Test
+  void restripeWhileWriting() throws InterruptedException {
+    if (!restripeable()) {
+      assertThrows(UnsupportedOperationException.class, ()->map.restripe(32));
+      return;
+    }
+    for (long key = 0; key < 2000; key++)
+      map.put(key, key);
+    Thread writer = new Thread(()->{
+      for (long key = 10_000; key < 30_000; key++) {
+        map.put(key, key);
+        map.remove(key - 1000);
+      }
+    });
+    writer.start();
+    try {
+      map.restripe(32);
+      map.restripe(64);
+      map.forEach((key, value)->assertEquals(key, value), 3);
+    } finally {
+      writer.join();
+    }
+    assertEquals(3000, map.size());
+    for (long key = 0; key < 2000; key++)
+      assertEquals(key, map.get(key));
+    for (long key = 29_000; key < 30_000; key++)
+      assertEquals(key, map.get(key));
+    assertEquals(defaultValue, map.get(28_999));
+    assertEquals(3000, map.keys().parallel().count());
+
+    map.restripe(64);// no-op
+    assertThrows(IllegalArgumentException.class, ()->map.restripe(96));
+    assertThrows(IllegalArgumentException.class, ()->map.restripe(16));
+  }
+
+  @Test
+  void snapshotRoundTrip() throws IOException {
+    for (long key = -1000; key < 5000; key++)
+      map.put(key, key * 7);
+    var out = new BAOS();
+    map.writeTo(out);
+
+    ConcurrentLongLongMap same = createMap();
+    same.readFrom(new BAIS(out.toByteArray()));
+    var other = new ConcurrentLongLongMap(3, 16, 0.75F, defaultValue);// other buckets
+    other.readFrom(new BAIS(out.toByteArray()));
+    for (ConcurrentLongLongMap restored : new ConcurrentLongLongMap[]{same, other}) {
+      assertEquals(6000, restored.size());
+      for (long key = -1000; key < 5000; key++)
+        assertEquals(key * 7, restored.get(key), "key "+ key);
+    }
+
+    byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 5);
+    assertThrows(IOException.class, ()->createMap().readFrom(new BAIS(truncated)));
+    assertThrows(StreamCorruptedException.class, ()->createMap().readFrom(new BAIS(new byte[64])));
+  }
+
+  @Test
+  void lockMetrics() throws Exception {
+    assertNull(map.lockMetrics());
+    if (!restripeable()) {
+      assertThrows(UnsupportedOperationException.class, map::enableLockMetrics);
+      return;
+    }
+    LockMetrics metrics = map.enableLockMetrics();
+    assertSame(metrics, map.enableLockMetrics());
+    for (long key = 0; key < 100; key++)
+      map.put(key, key);
+    for (long key = 0; key < 100; key++)
+      map.containsKey(key);
+    LockMetrics.Snapshot snapshot = metrics.snapshot();
+    assertTrue(snapshot.totalAcquisitions() >= 100);// optimistic reads don't lock
+    assertTrue(snapshot.longestHoldNanos() > 0);
+    assertEquals(0, snapshot.totalContended());
+    assertTrue(snapshot.hottestBucket() >= 0);
+    assertTrue(snapshot.imbalance() >= 1);
+
+    ObjectName name = map.registerLockMetricsMBean(getClass().getSimpleName());
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(true, server.getAttribute(name, "Enabled"));
+      assertTrue((Long) server.getAttribute(name, "Acquisitions") >= 100);
+      assertEquals(snapshot.numBuckets(), ((long[]) server.getAttribute(name, "BucketAcquisitions")).length);
+      server.invoke(name, "reset", null, null);
+      assertEquals(0, metrics.snapshot().totalAcquisitions());
+      assertThrows(IllegalStateException.class, ()->map.registerLockMetricsMBean(getClass().getSimpleName()));
+
+      map.restripe(32);
+      assertNotSame(metrics, map.lockMetrics());
+      assertEquals(32, server.getAttribute(name, "NumBuckets"));
+      map.disableLockMetrics();
+      assertNull(map.lockMetrics());
+      assertEquals(false, server.getAttribute(name, "Enabled"));
+    } finally {
+      LockMetrics.unregisterMBean(name);
+    }
+    assertEquals(99, map.get(99));
+  }
+
+  @Test
+  void lockMetricsUnderContention() throws InterruptedException {
+    if (!restripeable())
+      return;
+    LockMetrics metrics = map.enableLockMetrics();
+    Thread[] writers = new Thread[4];
+    for (int t = 0; t < writers.length; t++) {
+      writers[t] = new Thread(()->{
+        for (int i = 0; i < 20_000; i++)
+          map.computeLong(1, (k, v)->v + 1);
+      });
+      writers[t].start();
+    }
+    for (Thread writer : writers)
+      writer.join();
+    assertEquals(defaultValue + 80_000, map.get(1));
+    LockMetrics.Snapshot snapshot = metrics.snapshot();
+    assertTrue(snapshot.totalAcquisitions() >= 80_000);
+    assertTrue(Math.abs(snapshot.numBuckets() - snapshot.imbalance()) < 0.01, snapshot.toString());// one hot key
+    if (snapshot.totalContended() > 0)
+      assertTrue(snapshot.totalWaitNanos() > 0 || snapshot.totalSpins() > 0);
+  }
 }
\ No newline at end of file
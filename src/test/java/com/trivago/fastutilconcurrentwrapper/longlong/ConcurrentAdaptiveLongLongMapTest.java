@@ -0,0 +1,60 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableReadWriteLock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentAdaptiveLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.ADAPTIVE)
+        .build();
+  }
+
+  @Test
+  void oversubscribedHotKey() throws InterruptedException {
+    var map = createMap();
+    Thread[] threads = new Thread[4 * Runtime.getRuntime().availableProcessors()];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(()->{
+        for (int i = 0; i < 10_000; i++)
+          map.addTo(7, 1);
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    assertEquals(threads.length * 10_000L, map.get(7));
+  }
+
+  @Test
+  void spinLimitAdapts() throws InterruptedException {
+    var lock = new CloseableReadWriteLock();
+    int initial = lock.spinLimit();
+    try (var __ = lock.adaptiveWrite()) {
+      Thread reader = new Thread(()->{
+        try (var ___ = lock.adaptiveRead()) {
+          assertEquals(0, lock.getWriteHoldCount());
+        }
+      });
+      reader.start();
+      Thread.sleep(50);// the reader gives up spinning and parks
+      assertTrue(lock.hasQueuedThreads());
+      reader.join(10);
+    }
+    assertTrue(lock.spinLimit() <= initial);
+    try (var __ = lock.adaptiveRead(); var ___ = lock.adaptiveRead()) {
+      assertEquals(2, lock.getReadHoldCount());
+    }
+    assertFalse(lock.isWriteLocked());
+  }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentCompactSpinLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN)
+        .build();
+  }
+
+  @Test
+  void concurrentIncrements() throws InterruptedException {
+    var map = createMap();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(()->{
+        for (int i = 0; i < 20_000; i++) {
+          long k = i % 100;
+          map.computeLong(k, (key, v)->v + 1);
+          map.get(k);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    assertEquals(100, map.size());
+    for (long k = 0; k < 100; k++)
+      assertEquals(defaultValue + 200 * threads.length, map.get(k));
+    map.restripe(32);
+    assertEquals(100, map.size());
+  }
+}
\ No newline at end of file
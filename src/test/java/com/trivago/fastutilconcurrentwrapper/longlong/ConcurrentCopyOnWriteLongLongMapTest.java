@@ -0,0 +1,85 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentCopyOnWriteIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentCopyOnWriteLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentCopyOnWriteLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.COPY_ON_WRITE)
+        .build();
+  }
+
+  @Test
+  void builder() {
+    assertInstanceOf(ConcurrentCopyOnWriteLongLongMap.class, createMap());
+    assertInstanceOf(ConcurrentCopyOnWriteIntIntMap.class, ConcurrentIntIntMap.newBuilder().withMode(PrimitiveMapBuilder.MapMode.COPY_ON_WRITE).build());
+    var b = ConcurrentLongLongMap.newBuilder().withMode(PrimitiveMapBuilder.MapMode.COPY_ON_WRITE);
+    assertThrows(UnsupportedOperationException.class, b.withOffHeap(true)::build);
+    assertThrows(UnsupportedOperationException.class, b.withOffHeap(false).withIncrementalResize(true)::build);
+    assertThrows(UnsupportedOperationException.class, ()->new ConcurrentLongSet(2, 16, 0.75F, PrimitiveMapBuilder.MapMode.COPY_ON_WRITE));
+  }
+
+  /** get/containsKey see the last published bucket while a writer holds the bucket's write lock */
+  @Test
+  void readersDoNotWaitForWriters() {
+    var map = new ConcurrentCopyOnWriteLongLongMap(1, 16, 0.75F, -1);
+    map.put(1, 10);
+    map.computeIfPresent(1, (key, value)->{
+      map.put(2, 20);// same bucket, same (reentrant) write: not published yet
+      try {
+        assertEquals(10, CompletableFuture.supplyAsync(()->map.get(1)).get(10, TimeUnit.SECONDS));
+        assertFalse(CompletableFuture.supplyAsync(()->map.containsKey(2)).get(10, TimeUnit.SECONDS));
+      } catch (Exception e) {
+        throw new AssertionError(e);
+      }
+      return value + 1;
+    });
+    assertEquals(11, map.get(1));
+    assertEquals(20, map.get(2));
+    assertEquals(2, map.size());
+  }
+
+  /** A reader never misses a key that was put before: not while other keys are written, not while buckets move */
+  @Test
+  void readsDuringWritesAndRestripe() throws InterruptedException {
+    var map = new ConcurrentCopyOnWriteLongLongMap(2, 16, 0.75F, -1);
+    for (long key = 0; key < 1_000; key++)
+      map.put(key, key);
+    var failure = new AtomicReference<String>();
+    Thread reader = new Thread(()->{
+      for (int round = 0; round < 200 && failure.get() == null; round++)
+        for (long key = 0; key < 1_000; key++)
+          if (map.get(key) != key || !map.containsKey(key))
+            failure.set("key "+ key);
+    });
+    reader.start();
+    for (long key = 1_000; key < 5_000; key++)
+      map.put(key, key);
+    map.removeAll(new long[]{1_000, 1_001, 1_002});
+    map.restripe(8);
+    map.restripe(32);
+    reader.join();
+    assertNull(failure.get());
+    assertEquals(4_997, map.size());
+    assertEquals(4_999, map.get(4_999));
+    assertEquals(-1, map.get(1_001));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentFusedLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentIncrementalLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentFusedLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.75F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN)
+        .withFusedBuckets(true)
+        .build();
+  }
+
+  @Test
+  void builder() {
+    assertInstanceOf(ConcurrentFusedLongLongMap.class, createMap());
+    var b = ConcurrentLongLongMap.newBuilder().withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN).withIncrementalResize(true);
+    assertInstanceOf(ConcurrentIncrementalLongLongMap.class, b.build());
+    assertFalse(b.build() instanceof ConcurrentFusedLongLongMap);// spin locks in a long[]
+    assertThrows(UnsupportedOperationException.class, b.withFusedBuckets(true).withMode(PrimitiveMapBuilder.MapMode.BLOCKING)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN).withOffHeap(true)::build);
+  }
+
+  /** Restripe creates new buckets (and their locks) while writers wait on the old ones */
+  @Test
+  void restripeUnderLoad() throws InterruptedException {
+    var map = createMap();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      long base = t * 1_000_000L;
+      threads[t] = new Thread(()->{
+        for (long k = 1; k <= 20_000; k++) {
+          map.put(base + k, k);
+          assertEquals(k, map.get(base + k));
+        }
+      });
+      threads[t].start();
+    }
+    map.restripe(32);
+    map.restripe(128);
+    for (Thread thread : threads)
+      thread.join();
+    assertEquals(20_000 * threads.length, map.size());
+    for (int t = 0; t < threads.length; t++)
+      for (long k = 1; k <= 20_000; k++)
+        assertEquals(k, map.get(t * 1_000_000L + k));
+    var metrics = map.enableLockMetrics();
+    assertEquals(7, map.get(7));
+    assertEquals(1, Arrays.stream(metrics.snapshot().acquisitions()).sum());
+  }
+}
\ No newline at end of file
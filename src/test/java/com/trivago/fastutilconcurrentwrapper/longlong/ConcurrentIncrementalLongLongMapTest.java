@@ -0,0 +1,87 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentIncrementalLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentIncrementalLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.BLOCKING)
+        .withIncrementalResize(true)
+        .build();
+  }
+
+  @Test
+  void builder() {
+    assertInstanceOf(ConcurrentIncrementalLongLongMap.class, createMap());
+    var b = ConcurrentLongLongMap.newBuilder().withIncrementalResize(true);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.LOCK_FREE)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.BLOCKING).withOffHeap(true)::build);
+    assertThrows(UnsupportedOperationException.class, ConcurrentIntIntMap.newBuilder().withIncrementalResize(true)::build);
+  }
+
+  /** Random writes against fastutil while buckets grow: reads must see both tables */
+  @Test
+  void sameAsFastutilWhileGrowing() {
+    var incremental = new ConcurrentIncrementalLongLongMap(1, 4, 0.75F, -1);
+    var fastutil = new ConcurrentLongLongMap(1, 4, 0.75F, -1);
+    var rnd = new Random(42);
+    boolean sawGrowing = false;
+    for (int i = 0; i < 300_000; i++){
+      long key = rnd.nextInt(20_000) - 100;// collisions and the 0 key
+      switch (rnd.nextInt(4)){
+        case 0 -> assertEquals(fastutil.remove(key), incremental.remove(key), "remove "+ key);
+        case 1 -> assertEquals(fastutil.get(key), incremental.get(key), "get "+ key);
+        default -> assertEquals(fastutil.addTo(key, i), incremental.addTo(key, i), "addTo "+ key);
+      }
+      if (i % 1000 == 0){
+        sawGrowing |= incremental.growingBuckets() > 0;
+        assertEquals(fastutil.size(), incremental.size());
+      }
+    }
+    assertTrue(sawGrowing);
+    assertEquals(fastutil.size(), incremental.size());
+    for (long key = -100; key < 19_900; key++)
+      assertEquals(fastutil.get(key), incremental.get(key), "get "+ key);
+    long[] sum = new long[2];
+    incremental.forEach((key, value)->{
+      sum[0] += key;
+      sum[1] += value;
+    }, 7);
+    fastutil.forEach((key, value)->{
+      sum[0] -= key;
+      sum[1] -= value;
+    });
+    assertArrayEquals(new long[2], sum);
+  }
+
+  @Test
+  void iterationWhileGrowing() {
+    var map = new ConcurrentIncrementalLongLongMap(1, 4, 0.5F, 0);
+    for (long key = 1; key <= 1_000; key++)
+      map.put(key, key);
+    for (long key = 1_001; map.growingBuckets() == 0; key++)
+      map.put(key, key);
+    assertEquals(1, map.growingBuckets());
+    int size = map.size();
+    assertEquals(size, map.keys().count());
+    assertEquals((long) size * (size + 1) / 2, map.keys().sum());
+    map.clear();
+    assertEquals(0, map.growingBuckets());
+    assertTrue(map.isEmpty());
+  }
+}
\ No newline at end of file
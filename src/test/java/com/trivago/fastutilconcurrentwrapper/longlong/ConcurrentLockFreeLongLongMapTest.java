@@ -0,0 +1,83 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLockFreeLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentLockFreeLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return new ConcurrentLockFreeLongLongMap(16, 16, 0.9F, defaultValue);
+  }
+
+  @Override
+  boolean restripeable () {
+    return false;
+  }
+
+  @Test
+  void zeroKey() {
+    var map = createMap();
+    assertFalse(map.containsKey(0));
+    assertEquals(0, map.put(0, 42));
+    assertEquals(42, map.get(0));
+    assertEquals(1, map.size());
+    assertEquals(42, map.remove(0));
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  void reservedValues() {
+    var map = createMap();
+    assertThrows(IllegalArgumentException.class, ()->map.put(1, ConcurrentLockFreeLongLongMap.NO_VALUE));
+    assertThrows(IllegalArgumentException.class, ()->map.put(1, ConcurrentLockFreeLongLongMap.MOVED));
+    assertFalse(map.containsKey(1));
+  }
+
+  @Test
+  void growsAndPurgesTombstones() {
+    var map = new ConcurrentLockFreeLongLongMap(2, 4, 0.75F, -1);
+    for (long i = 1; i <= 10_000; i++)
+      assertEquals(0, map.put(i, i * 3));
+    assertEquals(10_000, map.size());
+    for (long i = 1; i <= 10_000; i++)
+      assertEquals(i * 3, map.get(i));
+    for (int round = 0; round < 5; round++){
+      for (long i = 1; i <= 10_000; i += 2)
+        assertEquals(i * 3, map.remove(i));
+      for (long i = 1; i <= 10_000; i += 2)
+        assertEquals(0, map.put(i, i * 3));
+    }
+    assertEquals(10_000, map.size());
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(-1, map.get(7));
+  }
+
+  @Test
+  void concurrentCountersWhileResizing() throws InterruptedException {
+    var map = new ConcurrentLockFreeLongLongMap(4, 8, 0.8F, 0);
+    int threads = 8, keys = 20_000;
+    List<Thread> list = new ArrayList<>();
+    for (int t = 0; t < threads; t++){
+      list.add(new Thread(()->{
+        for (long k = 1; k <= keys; k++){
+          map.computeIfAbsent(k, key->0);
+          map.computeIfPresent(k, (key, v)->v + 1);
+        }
+      }));
+    }
+    list.forEach(Thread::start);
+    for (Thread t : list)
+      t.join();
+    assertEquals(keys, map.size());
+    for (long k = 1; k <= keys; k++)
+      assertEquals(threads, map.get(k), "key "+ k);
+  }
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongCounterMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.util.CloseableLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentLongLongCounterMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return new ConcurrentLongLongCounterMap(16, 16, 0.9F, defaultValue);
+  }
+
+  @Test
+  void addToReturnsPreviousValue() {
+    var map = new ConcurrentLongLongCounterMap(4, 16, 0.9F, -1);
+    assertEquals(0, map.sum(1));
+    assertEquals(-1, map.get(1));
+    assertEquals(0, map.addTo(1, 5));
+    assertEquals(5, map.addTo(1, 2));
+    map.add(1, 3);
+    assertEquals(10, map.sum(1));
+    assertEquals(10, map.get(1));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void hotKeysFromManyThreads() throws InterruptedException {
+    var map = new ConcurrentLongLongCounterMap(2, 16, 0.9F, 0);
+    int threads = 8, increments = 50_000;
+    List<Thread> list = new ArrayList<>();
+    for (int t = 0; t < threads; t++){
+      list.add(new Thread(()->{
+        for (int i = 0; i < increments; i++){
+          map.add(i & 3, 1);// 4 hot keys
+          if (i % 1000 == 0)
+            map.get(i & 3);
+        }
+      }));
+    }
+    list.forEach(Thread::start);
+    for (Thread t : list)
+      t.join();
+
+    assertEquals(4, map.size());
+    long total = 0;
+    for (long key = 0; key < 4; key++)
+      total += map.sum(key);
+    assertEquals((long) threads * increments, total);
+
+    long v = map.sum(2);
+    assertEquals(v, map.put(2, 100));// moves the striped key back
+    assertEquals(100, map.get(2));
+    assertEquals(100, map.remove(2));
+    assertEquals(3, map.size());
+  }
+
+  /** One bucket; exposes whether a key is striped and holds its bucket lock while another thread adds */
+  static class Probe extends ConcurrentLongLongCounterMap {
+    Probe () {
+      super(1, 16, 0.9F, 0);
+    }
+
+    boolean isStriped (long key) {
+      var lock = readKey(key);
+      try (CloseableLock __ = lock) {
+        return striped[lock.bucket()].containsKey(key);
+      }
+    }
+
+    /** Holds the read lock (adding is false) or, after an add of the key, the write lock while {@code adder} adds 1 to {@code key} */
+    void contend (long holderKey, boolean adding, long key) throws InterruptedException {
+      var held = new CountDownLatch(1);
+      var release = new CountDownLatch(1);
+      Thread holder = new Thread(()->{
+        try (CloseableLock __ = adding ? writeKey(holderKey) : readKey(holderKey)) {
+          if (adding)
+            add(holderKey, 1);
+          held.countDown();
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      holder.start();
+      held.await();
+      Thread adder = new Thread(()->add(key, 1));
+      adder.start();
+      while (adder.getState() != Thread.State.WAITING && adder.isAlive())
+        Thread.onSpinWait();// parked on the bucket lock
+      release.countDown();
+      adder.join();
+      holder.join();
+    }
+  }
+
+  @Test  @Timeout(30)
+  void readersDontStripe() throws InterruptedException {
+    var map = new Probe();
+    for (int i = 0; i < 3 * ConcurrentLongLongCounterMap.STRIPE_AFTER; i++)
+      map.contend(1, false, 1);
+    assertFalse(map.isStriped(1));
+    assertEquals(3 * ConcurrentLongLongCounterMap.STRIPE_AFTER, map.sum(1));
+  }
+
+  @Test  @Timeout(30)
+  void neighbourWritersDontStripe() throws InterruptedException {
+    var map = new Probe();
+    for (int i = 0; i < 3 * ConcurrentLongLongCounterMap.STRIPE_AFTER; i++)
+      map.contend(2, true, 1);// same bucket, another key
+    assertFalse(map.isStriped(1));
+    assertFalse(map.isStriped(2));
+    assertEquals(3 * ConcurrentLongLongCounterMap.STRIPE_AFTER, map.sum(1));
+  }
+
+  @Test  @Timeout(30)
+  void sameKeyWritersStripeThenCalmUnstripes() throws InterruptedException {
+    var map = new Probe();
+    for (int i = 1; i < ConcurrentLongLongCounterMap.STRIPE_AFTER; i++)
+      map.contend(1, true, 1);
+    assertFalse(map.isStriped(1));
+    map.contend(1, true, 1);
+    assertTrue(map.isStriped(1));
+    assertEquals(2L * ConcurrentLongLongCounterMap.STRIPE_AFTER, map.sum(1));
+
+    for (int i = 0; i < ConcurrentLongLongCounterMap.UNSTRIPE_AFTER; i++)
+      map.add(1, 1);// uncontended
+    assertFalse(map.isStriped(1));
+    assertEquals(2L * ConcurrentLongLongCounterMap.STRIPE_AFTER + ConcurrentLongLongCounterMap.UNSTRIPE_AFTER, map.get(1));
+  }
+
+  @Test
+  void builder() {
+    var b = ConcurrentLongLongMap.newBuilder().withBuckets(4).withInitialCapacity(16).withStripedCounters(true);
+    for (var mode : List.of(PrimitiveMapBuilder.MapMode.BLOCKING, PrimitiveMapBuilder.MapMode.BUSY_WAITING,
+        PrimitiveMapBuilder.MapMode.ADAPTIVE, PrimitiveMapBuilder.MapMode.READER_BIASED)) {
+      var map = assertInstanceOf(ConcurrentLongLongCounterMap.class, b.withMode(mode).build());
+      assertEquals(0, map.addTo(7, 3));
+      assertEquals(3, map.get(7));
+    }
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.BLOCKING).withOffHeap(true)::build);
+    assertThrows(UnsupportedOperationException.class, ConcurrentIntIntMap.newBuilder().withStripedCounters(true)::build);
+  }
+}
\ No newline at end of file
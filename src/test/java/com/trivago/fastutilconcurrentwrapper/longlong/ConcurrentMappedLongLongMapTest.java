@@ -0,0 +1,98 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentMappedLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentMappedLongLongMapTest extends AbstractLongLongMapTest {
+
+  static Path tempFile() {
+    try {
+      Path path = Files.createTempFile("map", ".bin");
+      Files.delete(path);// a new map file is created on open
+      path.toFile().deleteOnExit();
+      return path;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The directory is one buffer: more buckets would overflow its int size */
+  @Test
+  void bucketLimit() throws IOException {
+    Path path = tempFile();
+    assertThrows(IllegalArgumentException.class, ()->ConcurrentMappedLongLongMap.open(path, 90_000_000, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING));
+    var map = ConcurrentMappedLongLongMap.open(path, 2, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING);
+    assertThrows(IllegalArgumentException.class, ()->map.restripe(90_000_000));
+    map.put(1, 2);
+    assertEquals(2, map.get(1));
+    map.close();
+  }
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.BLOCKING)
+        .withMappedFile(tempFile())
+        .build();
+  }
+
+  @Test
+  void reopen() throws IOException {
+    Path path = tempFile();
+    var map = ConcurrentMappedLongLongMap.open(path, 2, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING);
+    for (long k = 0; k < 10_000; k++)
+      map.put(k, k * 3);
+    for (long k = 0; k < 10_000; k += 2)
+      map.remove(k);
+    map.restripe(4);
+    map.flush();
+    map.close();
+    map.close();// no-op
+
+    // the file's settings win
+    map = ConcurrentMappedLongLongMap.open(path, 8, 4, 0.5F, 0, PrimitiveMapBuilder.MapMode.ADAPTIVE);
+    assertEquals(5_000, map.size());
+    assertEquals(-1, map.get(0));
+    for (long k = 1; k < 10_000; k += 2)
+      assertEquals(k * 3, map.get(k), "key "+ k);
+    map.put(0, 42);
+    for (long k = 10_000; k < 30_000; k++)// grows into new and reused regions
+      map.put(k, k);
+    map.close();
+
+    map = ConcurrentMappedLongLongMap.open(path, 1, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING);
+    assertEquals(25_001, map.size());
+    assertEquals(42, map.get(0));
+    assertEquals(29_999, map.get(29_999));
+    assertEquals(3, map.get(1));
+    map.clear();
+    map.close();
+
+    map = ConcurrentMappedLongLongMap.open(path, 1, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING);
+    assertTrue(map.isEmpty());
+    map.put(7, 7);
+    // not closed (crash): the file is rejected
+    assertThrows(IOException.class, ()->ConcurrentMappedLongLongMap.open(path, 1, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING));
+    map.close();
+  }
+
+  @Test
+  void notAMapFile() throws IOException {
+    Path path = tempFile();
+    Files.write(path, new byte[100]);
+    assertThrows(IOException.class, ()->ConcurrentMappedLongLongMap.open(path, 1, 4, 0.75F, -1, PrimitiveMapBuilder.MapMode.BLOCKING));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.intkey.ConcurrentIntIntMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOffHeapLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentOffHeapLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.BLOCKING)
+        .withOffHeap(true)
+        .build();
+  }
+
+  @Test
+  void builder() {
+    assertInstanceOf(ConcurrentOffHeapLongLongMap.class, createMap());
+    var b = ConcurrentLongLongMap.newBuilder().withOffHeap(true);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)::build);
+    assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.LOCK_FREE)::build);
+    assertInstanceOf(ConcurrentOffHeapLongLongMap.class, b.withMode(PrimitiveMapBuilder.MapMode.ADAPTIVE).build());
+    assertThrows(UnsupportedOperationException.class, ConcurrentIntIntMap.newBuilder().withOffHeap(true)::build);
+  }
+
+  @Test
+  void zeroKey() {
+    var map = createMap();
+    assertFalse(map.containsKey(0));
+    assertEquals(0, map.put(0, 42));
+    assertEquals(42, map.get(0));
+    assertEquals(43, map.mergeLong(0, 1, Long::sum));
+    assertEquals(1, map.size());
+    long[] sum = new long[1];
+    map.forEach((key, value)->sum[0] += value);
+    assertEquals(43, sum[0]);
+    assertEquals(43, map.remove(0));
+    assertTrue(map.isEmpty());
+    assertEquals(defaultValue, map.get(0));
+  }
+
+  /** Random puts and removes against fastutil: grow and the backward shift of remove */
+  @Test
+  void sameAsOnHeap() {
+    var offHeap = new ConcurrentOffHeapLongLongMap(2, 4, 0.75F, -1);
+    var onHeap = new ConcurrentLongLongMap(2, 4, 0.75F, -1);
+    var rnd = new Random(42);
+    for (int i = 0; i < 200_000; i++){
+      long key = rnd.nextInt(5_000) - 100;// collisions and the 0 key
+      if (rnd.nextInt(3) == 0)
+        assertEquals(onHeap.remove(key), offHeap.remove(key), "remove "+ key);
+      else
+        assertEquals(onHeap.addTo(key, i), offHeap.addTo(key, i), "addTo "+ key);
+    }
+    assertEquals(onHeap.size(), offHeap.size());
+    for (long key = -100; key < 4_900; key++)
+      assertEquals(onHeap.get(key), offHeap.get(key), "get "+ key);
+
+    long bytes = offHeap.offHeapBytes();
+    offHeap.clear();
+    assertTrue(offHeap.isEmpty());
+    assertTrue(offHeap.offHeapBytes() < bytes);
+    assertEquals(-1, offHeap.get(1));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentOptimisticLongLongMap;
+import com.trivago.fastutilconcurrentwrapper.support.OptimisticProbe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentOptimisticLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return new ConcurrentOptimisticLongLongMap(16, 16, 0.9F, defaultValue);
+  }
+
+  /** A key array with neither the key nor a free slot (a table being refilled): the probe ends anyway */
+  @Test
+  void probeEndsOnFullTable() {
+    long[] key = {1, 2, 3, 4, 0};// capacity 4 + the 0 key's slot
+    assertEquals(OptimisticProbe.TORN, OptimisticProbe.slot(key, false, 9));
+    assertEquals(4, OptimisticProbe.slot(key, true, 0));
+    assertEquals(OptimisticProbe.ABSENT, OptimisticProbe.slot(key, false, 0));
+    for (long k = 1; k <= 4; k++)
+      assertEquals(k - 1, OptimisticProbe.slot(key, false, k));
+    key[2] = 0;
+    assertNotEquals(OptimisticProbe.TORN, OptimisticProbe.slot(key, false, 9));
+  }
+
+  /** Optimistic reads overlapping grows, shrinks (remove) and clears end and see a key absent or with its value */
+  @Test  @Timeout(60)
+  void readsWhileBucketsShrink() throws InterruptedException {
+    var map = new ConcurrentOptimisticLongLongMap(2, 4, 0.75F, -1);
+    var done = new AtomicBoolean();
+    var error = new AtomicBoolean();
+    Thread[] readers = new Thread[3];
+    for (int t = 0; t < readers.length; t++) {
+      readers[t] = new Thread(() -> {
+        while (!done.get())
+          for (long k = 1; k < 5_000; k += 3) {
+            long v = map.get(k);
+            if (v != -1 && v != k * 2)
+              error.set(true);
+            map.containsKey(k);
+          }
+      });
+      readers[t].setDaemon(true);// a reader stuck in a probe must not keep the JVM alive
+      readers[t].start();
+    }
+    for (int round = 0; round < 20; round++) {
+      for (long k = 1; k < 5_000; k++)
+        map.put(k, k * 2);
+      for (long k = 1; k < 5_000; k++)
+        if (k % 50 != 0)
+          map.remove(k);// fastutil shrinks the table as it empties
+      map.clear();
+    }
+    done.set(true);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    for (Thread t : readers) {
+      t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+      assertFalse(t.isAlive(), "reader stuck in a lookup");
+    }
+    assertFalse(error.get());
+    assertTrue(map.isEmpty());
+  }
+}
\ No newline at end of file
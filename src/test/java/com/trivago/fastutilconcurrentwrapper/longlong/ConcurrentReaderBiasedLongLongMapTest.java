@@ -0,0 +1,74 @@
+package com.trivago.fastutilconcurrentwrapper.longlong;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import com.trivago.fastutilconcurrentwrapper.longkey.ConcurrentLongLongMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentReaderBiasedLongLongMapTest extends AbstractLongLongMapTest {
+
+  @Override
+  ConcurrentLongLongMap createMap() {
+    return ConcurrentLongLongMap.newBuilder()
+        .withBuckets(16)
+        .withInitialCapacity(16)
+        .withLoadFactor(0.9F)
+        .withDefaultValue(defaultValue)
+        .withMode(PrimitiveMapBuilder.MapMode.READER_BIASED)
+        .build();
+  }
+
+  @Test
+  void readMostly() throws InterruptedException {
+    var map = createMap();
+    for (long k = 0; k < 1_000; k++)
+      map.put(k, -k);
+    Thread[] threads = new Thread[8];
+    long[] wrong = new long[threads.length];
+    for (int t = 0; t < threads.length; t++) {
+      int id = t;
+      threads[t] = new Thread(()->{
+        for (int i = 0; i < 50_000; i++) {
+          long k = i % 1_000;
+          if (id == 0 && i % 100 == 0)
+            map.put(k, -k);// same value: the other threads must never see anything else
+          else if (map.get(k) != -k)
+            wrong[id]++;
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    assertArrayEquals(new long[threads.length], wrong);
+    map.restripe(32);
+    assertEquals(1_000, map.size());
+    assertEquals(-999, map.get(999));
+  }
+
+  @Test
+  void getInForEachWhileWriterWaits() throws InterruptedException {
+    var map = ConcurrentLongLongMap.newBuilder()
+        .withBuckets(1)
+        .withMode(PrimitiveMapBuilder.MapMode.READER_BIASED)
+        .build();
+    map.put(1, 10);
+    var writer = new Thread(()->map.put(2, 20));
+    long[] sum = new long[1];
+    map.forEach((k, v)->{
+      if (!writer.isAlive()) {
+        writer.start();
+        try {
+          Thread.sleep(50);// the writer waits for this reader
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      sum[0] += map.get(k);// nested read
+    });
+    writer.join();
+    assertEquals(10, sum[0]);
+    assertEquals(20, map.get(2));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.trivago.fastutilconcurrentwrapper.objkey;
+
+import com.trivago.fastutilconcurrentwrapper.PrimitiveMapBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentHashOnceObjectLongMapTest {
+    /** Counts hashCode() calls */
+    record Key(int id) implements Serializable {
+        static final AtomicInteger HASHES = new AtomicInteger();
+
+        @Override
+        public int hashCode() {
+            HASHES.incrementAndGet();
+            return id;
+        }
+    }
+
+    @Test
+    public void builder() {
+        var b = ConcurrentObjectLongMap.<String>newBuilder().withBuckets(4).withInitialCapacity(16).withHashOnce(true);
+        assertInstanceOf(ConcurrentHashOnceObjectLongMap.class, b.withMode(PrimitiveMapBuilder.MapMode.BLOCKING).build());
+        assertInstanceOf(ConcurrentHashOnceObjectLongMap.class, b.withMode(PrimitiveMapBuilder.MapMode.COMPACT_SPIN).build());
+        assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.COPY_ON_WRITE)::build);
+        assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)::build);
+        assertThrows(UnsupportedOperationException.class, b.withMode(PrimitiveMapBuilder.MapMode.BLOCKING).withOffHeap(true)::build);
+    }
+
+    @Test
+    public void hashCodeOncePerOperation() {
+        var map = new ConcurrentHashOnceObjectLongMap<Key>(8, 4, 0.75f, -1);
+        for (int i = 0; i < 1_000; i++)
+            map.put(new Key(i), i);// grows many times
+        Key.HASHES.set(0);
+        assertEquals(7, map.get(new Key(7)));
+        assertTrue(map.containsKey(new Key(8)));
+        assertEquals(10, map.addTo(new Key(10), 1));
+        assertEquals(-1, map.get(new Key(-5)));
+        assertEquals(4, Key.HASHES.get());
+
+        Key.HASHES.set(0);
+        map.restripe(32);// moves the kept hashes
+        assertEquals(0, Key.HASHES.get());
+
+        Key[] keys = {new Key(1), new Key(2), new Key(3_000)};
+        long[] out = new long[keys.length];
+        map.getAll(keys, out);
+        assertArrayEquals(new long[]{1, 2, -1}, out);
+        assertEquals(keys.length, Key.HASHES.get());
+    }
+
+    @Test
+    public void sameAsFastutil() {
+        var hashOnce = new ConcurrentHashOnceObjectLongMap<String>(4, 4, 0.75f, -1);
+        var fastutil = new ConcurrentObjectLongMap<String>(4, 4, 0.75f, -1);
+        var rnd = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int r = rnd.nextInt(5_000);
+            String key = r == 0 ? null : "k"+ r;
+            switch (rnd.nextInt(6)) {
+                case 0 -> assertEquals(fastutil.remove(key), hashOnce.remove(key), "remove "+ key);
+                case 1 -> assertEquals(fastutil.get(key), hashOnce.get(key), "get "+ key);
+                case 2 -> assertEquals(fastutil.containsKey(key), hashOnce.containsKey(key), "containsKey "+ key);
+                case 3 -> assertEquals(fastutil.put(key, i), hashOnce.put(key, i), "put "+ key);
+                case 4 -> assertEquals(fastutil.computeLong(key, (k, v)->v + 1), hashOnce.computeLong(key, (k, v)->v + 1), "computeLong "+ key);
+                default -> assertEquals(fastutil.addTo(key, i), hashOnce.addTo(key, i), "addTo "+ key);
+            }
+            if (i == 100_000)
+                hashOnce.restripe(16);
+        }
+        assertEquals(fastutil.size(), hashOnce.size());
+        long[] sum = new long[2];
+        fastutil.forEach((k, v)->sum[0] += v);
+        hashOnce.forEach((k, v)->sum[1] += v, 7);
+        assertEquals(sum[0], sum[1]);
+        for (int r = 0; r < 5_000; r++) {
+            String key = r == 0 ? null : "k"+ r;
+            assertEquals(fastutil.get(key), hashOnce.get(key), "get "+ key);
+        }
+    }
+
+    @Test
+    public void batches() {
+        var map = new ConcurrentHashOnceObjectLongMap<String>(4, 4, 0.75f, 0);
+        String[] keys = new String[500];
+        long[] values = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "k"+ i;
+            values[i] = i;
+        }
+        map.putAll(keys, values, true);
+        assertEquals(500, map.size());
+        assertEquals(499, map.get("k499"));
+        assertEquals(250, map.removeAll(java.util.Arrays.copyOf(keys, 250)));
+        assertEquals(250, map.size());
+        assertFalse(map.containsKey("k0"));
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.get("k499"));
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        var map = new ConcurrentHashOnceObjectLongMap<String>(4, 16, 0.75f, -1);
+        for (int i = 0; i < 1_000; i++)
+            map.put("k"+ i, i);
+        map.put(null, 42);
+        var out = new ByteArrayOutputStream();
+        map.writeTo(out);
+        var copy = new ConcurrentHashOnceObjectLongMap<String>(8, 16, 0.75f, -1);
+        copy.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1_001, copy.size());
+        assertEquals(999, copy.get("k999"));
+        assertEquals(42, copy.get(null));
+    }
+}
\ No newline at end of file
@@ -45,4 +45,23 @@ public class ConcurrentObjectLongMapBuilderTest {
         assertEquals(10L, v);
         assertEquals(map.get((short)47), map.getDefaultValue());
     }
+
+    @Test
+    public void buildsOptimisticMap() {
+        var b = ConcurrentObjectLongMap.<Short>newBuilder()
+                .withBuckets(2)
+                .withDefaultValue(DEFAULT_VALUE)
+                .withInitialCapacity(100)
+                .withMode(PrimitiveMapBuilder.MapMode.OPTIMISTIC)
+                .withLoadFactor(0.9f);
+
+        ConcurrentObjectLongMap<Short> map = b.build();
+
+        map.put((short)41, 10L);
+        long v = map.get((short)41);
+
+        assertInstanceOf(ConcurrentOptimisticObjectLongMap.class, map);
+        assertEquals(10L, v);
+        assertEquals(map.get((short)47), map.getDefaultValue());
+    }
 }
\ No newline at end of file
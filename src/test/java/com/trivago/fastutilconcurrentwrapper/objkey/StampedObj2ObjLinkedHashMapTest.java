@@ -0,0 +1,73 @@
+package com.trivago.fastutilconcurrentwrapper.objkey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The whole {@link SynchronizedObj2ObjLinkedHashMapTest} with optimistic reads */
+class StampedObj2ObjLinkedHashMapTest extends SynchronizedObj2ObjLinkedHashMapTest {
+	@BeforeEach  @Override
+	void setUp() {
+		map = new StampedObj2ObjLinkedHashMap<>();
+	}
+
+	@Test
+	void firstAndLastOfEmpty() {
+		assertThrows(NoSuchElementException.class, () -> map.firstKey());
+		assertThrows(NoSuchElementException.class, () -> map.lastKey());
+		map.put("b", 2);
+		map.put("a", 1);
+		assertEquals("b", map.firstKey());
+		assertEquals("a", map.lastKey());
+		assertEquals(2, map.size());
+		assertEquals(1, map.get("a"));
+		assertNull(map.get("c"));
+		assertTrue(map.containsKey("b"));
+		assertFalse(map.containsKey("c"));
+	}
+
+	/** Reads overlapping rehashes, trims and clears end and see a consistent map: a key is absent or has its value */
+	@Test  @Timeout(60)
+	void readsWhileRehashing() throws InterruptedException {
+		var m = new StampedObj2ObjLinkedHashMap<String,Integer>(4, 0.75f);
+		var done = new AtomicBoolean();
+		var error = new AtomicBoolean();
+		Thread[] readers = new Thread[3];
+		for (int t = 0; t < readers.length; t++){
+			readers[t] = new Thread(() -> {
+				while (!done.get()){
+					for (int k = 1; k < 2_000; k += 7){
+						Integer v = m.get(Integer.toString(k));
+						if (v != null && v != k)
+							error.set(true);
+					}
+					if (m.size() < 0)
+						error.set(true);
+				}
+			});
+			readers[t].setDaemon(true);// a reader stuck in a probe must not keep the JVM alive
+			readers[t].start();
+		}
+		for (int round = 0; round < 30; round++){
+			for (int k = 1; k <= 2_000; k++)
+				m.put(Integer.toString(k), k);
+			assertEquals("1", m.firstKey());
+			assertEquals("2000", m.lastKey());
+			m.withWriteLock(x -> { x.clear(); return x.trim(); });// shrinks ⇒ the next round rehashes again
+		}
+		done.set(true);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		for (Thread t : readers){
+			t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			assertFalse(t.isAlive(), "reader stuck in a lookup");
+		}
+		assertFalse(error.get());
+		assertTrue(m.isEmpty());
+	}
+}
\ No newline at end of file
@@ -17,7 +17,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 /** @see SynchronizedObj2ObjLinkedHashMap */
 class SynchronizedObj2ObjLinkedHashMapTest {
-	private SynchronizedObj2ObjLinkedHashMap<String, Integer> map;
+	SynchronizedObj2ObjLinkedHashMap<String, Integer> map;
 
 	@BeforeEach
 	void setUp() {
@@ -22,8 +22,8 @@ import static org.junit.jupiter.api.Assertions.*;
 /**
  @see ReadWriteLockCollection */
 class ReadWriteLockCollectionTest {
-	private List<String> backingList;
-	private ReadWriteLockCollection<String> collection;
+	List<String> backingList;
+	ReadWriteLockCollection<String> collection;
 
 	@BeforeEach
 	void setUp() {
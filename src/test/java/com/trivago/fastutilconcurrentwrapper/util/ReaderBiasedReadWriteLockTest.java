@@ -0,0 +1,133 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ @see ReaderBiasedReadWriteLock */
+class ReaderBiasedReadWriteLockTest {
+	@Test
+	void biasedReadDoesNotCount () {
+		var lock = new ReaderBiasedReadWriteLock();
+		assertTrue(lock.isReaderBiased());
+		try (var __ = lock.read()){
+			assertEquals(0, lock.getReadLockCount());// in its slot
+			try (var ___ = lock.read()){// nested: counts against the slot
+				assertEquals(0, lock.getReadHoldCount());
+			}
+			assertEquals(0, lock.getReadHoldCount());
+			assertNull(lock.tryWrite());// like a read lock held: no upgrade
+			assertTrue(lock.isReaderBiased());// a later writer waits for this reader
+		}
+		assertFalse(lock.isWriteLocked());
+	}
+
+	@Test
+	void writerWaitsForBiasedReader () throws InterruptedException {
+		var lock = new ReaderBiasedReadWriteLock();
+		var written = new AtomicBoolean();
+		var read = lock.read();
+		Thread writer = new Thread(()->{
+			try (var __ = lock.write()){
+				written.set(true);
+			}
+		});
+		writer.start();
+		Thread.sleep(50);
+		assertFalse(written.get());
+		assertFalse(lock.isReaderBiased());// revoked: the writer scans the slots
+		read.close();
+		writer.join();
+		assertTrue(written.get());
+	}
+
+	@Test
+	void nestedReadWhileWriterWaits () throws InterruptedException {
+		var lock = new ReaderBiasedReadWriteLock();
+		var written = new AtomicBoolean();
+		try (var __ = lock.read()){
+			Thread writer = new Thread(()->{
+				try (var ___ = lock.write()){
+					written.set(true);
+				}
+			});
+			writer.start();
+			while (lock.isReaderBiased())// the writer holds the write lock and waits for this reader
+				Thread.onSpinWait();
+			try (var ___ = lock.read()){// the underlying read lock would wait for the writer
+				assertEquals(0, lock.getReadHoldCount());
+			}
+			assertFalse(written.get());
+			try (var ___ = lock.tryRead()){
+				assertNotNull(___);
+			}
+		}
+		while (!written.get())
+			Thread.onSpinWait();
+		assertEquals(0, lock.getReadLockCount());
+	}
+
+	@Test
+	void readUnderWriteLock () {
+		var lock = new ReaderBiasedReadWriteLock();
+		try (var __ = lock.write()){
+			assertFalse(lock.isReaderBiased());
+			try (var ___ = lock.read()){
+				assertEquals(1, lock.getReadHoldCount());
+			}
+			assertFalse(lock.isReaderBiased());// not restored under the write lock
+		}
+		assertEquals(0, lock.getReadLockCount());
+		assertEquals(1, lock.modCount());
+	}
+
+	@Test
+	void biasComesBack () throws InterruptedException {
+		var lock = new ReaderBiasedReadWriteLock();
+		lock.write().close();
+		assertFalse(lock.isReaderBiased());
+		Thread.sleep(10);// the inhibition: 9 × a revocation without readers
+		lock.read().close();
+		assertTrue(lock.isReaderBiased());
+		try (var __ = lock.tryRead()){
+			assertEquals(0, lock.getReadLockCount());
+		}
+	}
+
+	@Test
+	void readersAndWriters () throws InterruptedException {
+		var lock = new ReaderBiasedReadWriteLock();
+		long[] pair = new long[2];// the writers keep both equal
+		var torn = new AtomicLong();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++){
+			boolean writer = t % 4 == 0;
+			threads[t] = new Thread(()->{
+				for (int i = 0; i < 20_000; i++){
+					if (writer && i % 10 == 0){
+						try (var __ = i % 20 == 0 ? lock.write() : lock.spinWrite()){
+							pair[0]++;
+							pair[1]++;
+						}
+					} else {
+						try (var __ = i % 2 == 0 ? lock.read() : lock.adaptiveRead()){
+							if (pair[0] != pair[1])
+								torn.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(0, torn.get());
+		assertEquals(2 * 2_000, pair[0]);
+		assertEquals(0, lock.getReadLockCount());
+		assertFalse(lock.isWriteLocked());
+	}
+}
\ No newline at end of file
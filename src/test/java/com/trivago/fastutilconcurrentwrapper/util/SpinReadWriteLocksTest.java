@@ -0,0 +1,120 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ @see SpinReadWriteLocks */
+class SpinReadWriteLocksTest {
+	@Test
+	void readersShareWriterExcludes () {
+		var locks = new SpinReadWriteLocks(4);
+		assertEquals(4, locks.length());
+		assertEquals(0, locks.read(1));
+		assertTrue(locks.tryRead(1));
+		assertEquals(2, locks.readers(1));
+		assertFalse(locks.tryWrite(1));
+		assertTrue(locks.tryWrite(2));// other lock, other word
+		assertTrue(locks.isWriteLocked(2));
+		assertFalse(locks.tryRead(2));
+		locks.unlockWrite(2);
+		locks.unlockRead(1);
+		locks.unlockRead(1);
+		assertEquals(0, locks.readers(1));
+		assertTrue(locks.tryWrite(1));
+		locks.unlockWrite(1);
+		assertFalse(locks.isWriteLocked(1));
+	}
+
+	@Test
+	void modCountCountsWrites () {
+		var locks = new SpinReadWriteLocks(1);
+		assertEquals(0, locks.modCount(0));
+		locks.write(0);
+		locks.unlockWrite(0);
+		assertTrue(locks.tryWrite(0));
+		locks.unlockWrite(0);
+		locks.read(0);
+		assertEquals(2, locks.modCount(0));
+		locks.unlockRead(0);
+		assertEquals(2, locks.modCount(0));
+	}
+
+	@Test
+	void writerBlocksNewReaders () throws InterruptedException {
+		var locks = new SpinReadWriteLocks(1);
+		var written = new AtomicBoolean();
+		locks.read(0);
+		Thread writer = new Thread(()->{
+			locks.write(0);
+			written.set(true);
+			locks.unlockWrite(0);
+		});
+		writer.start();
+		while (!locks.isWriteLocked(0))
+			Thread.onSpinWait();
+		assertFalse(locks.tryRead(0));// the waiting writer goes first
+		Thread.sleep(20);
+		assertFalse(written.get());
+		locks.unlockRead(0);
+		writer.join();
+		assertTrue(written.get());
+		assertEquals(0, locks.readers(0));
+		assertFalse(locks.isWriteLocked(0));
+	}
+
+	@Test
+	void mutualExclusion () throws InterruptedException {
+		var locks = new SpinReadWriteLocks(2);
+		long[] counter = new long[1];
+		Thread[] threads = new Thread[6];
+		for (int t = 0; t < threads.length; t++){
+			threads[t] = new Thread(()->{
+				for (int i = 0; i < 50_000; i++){
+					locks.write(1);
+					counter[0]++;
+					locks.unlockWrite(1);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(50_000L * threads.length, counter[0]);
+		assertEquals(50_000 * threads.length, locks.modCount(1));
+		assertEquals(0, locks.modCount(0));
+	}
+
+	@Test
+	void invalidLength () {
+		assertThrows(IllegalArgumentException.class, ()->new SpinReadWriteLocks(0));
+		assertThrows(IllegalArgumentException.class, ()->new SpinReadWriteLocks(Integer.MAX_VALUE));
+	}
+
+	/** The same protocol with the word in the guarded object */
+	@Test
+	void lockWordInObject () {
+		var word = new AtomicLong();
+		SpinLockWord lock = new SpinLockWord(){
+			@Override public long word (){ return word.get(); }
+			@Override public boolean casWord (long expected, long w){ return word.compareAndSet(expected, w); }
+			@Override public void addWord (long delta){ word.getAndAdd(delta); }
+		};
+		assertEquals(0, lock.read());
+		assertTrue(lock.tryRead());
+		assertFalse(lock.tryWrite());
+		lock.unlockRead();
+		lock.unlockRead();
+		assertEquals(0, lock.write());
+		assertFalse(lock.tryRead());
+		lock.unlockWrite();
+		assertTrue(lock.tryWrite());
+		lock.unlockWrite();
+		assertEquals(2, lock.modCount());
+		assertEquals(2L << 32, word.get());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.trivago.fastutilconcurrentwrapper.util;
+
+import com.trivago.fastutilconcurrentwrapper.support.StampedLockCollection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The whole {@link ReadWriteLockCollectionTest} with optimistic reads */
+class StampedLockCollectionTest extends ReadWriteLockCollectionTest {
+	@BeforeEach  @Override
+	void setUp() {
+		backingList = new ArrayList<>();
+		collection = new StampedLockCollection<>(backingList);
+	}
+
+	/** contains overlapping the growth of the backing array doesn't fail or see an element that was never added */
+	@Test
+	void containsWhileGrowing() throws InterruptedException {
+		var c = new StampedLockCollection<>(new ArrayList<Integer>());
+		var done = new AtomicBoolean();
+		var error = new AtomicBoolean();
+		var reader = new Thread(() -> {
+			while (!done.get()){
+				if (c.contains(-1) || c.size() < 0)
+					error.set(true);
+			}
+		});
+		reader.start();
+		for (int round = 0; round < 20; round++){
+			for (int i = 0; i < 5_000; i++)
+				c.add(i);
+			c.clear();
+		}
+		done.set(true);
+		reader.join();
+		assertFalse(error.get());
+		assertTrue(c.isEmpty());
+	}
+}
\ No newline at end of file